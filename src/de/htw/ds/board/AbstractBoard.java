@@ -1,5 +1,10 @@
 package de.htw.ds.board;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import de.htw.ds.board.search.TranspositionStore;
 import de.sb.java.TypeMetadata;
 
 
@@ -16,6 +21,11 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	protected final byte fileCount;
 	protected volatile short moveClock;
 	protected volatile short reversibleMoveClock;
+	private volatile AnalysisCache analysisCache;
+	private volatile LongAdder nodeCounter;
+	private volatile SearchStatistics searchStatistics;
+	private volatile TranspositionStore transpositionStore;
+	private volatile PositionRecord positionHistory;
 
 
 	/**
@@ -93,6 +103,34 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	}
 
 
+	/**
+	 * {@inheritDoc} The default implementation filters all candidate moves, considering moves
+	 * capturing if their first motion's sink position is occupied.
+	 */
+	public Collection<AbsoluteMotion[]> getCandidateMoves (final boolean captures) {
+		final List<AbsoluteMotion[]> moves = new ArrayList<>();
+		for (final AbsoluteMotion[] move : this.getCandidateMoves()) {
+			if ((this.getPiece(move[0].getSinkRank(), move[0].getSinkFile()) != null) == captures) moves.add(move);
+		}
+		return moves;
+	}
+
+
+	/**
+	 * {@inheritDoc} The default implementation filters all candidate moves.
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 */
+	public Collection<AbsoluteMotion[]> getCandidateMoves (final byte rank, final byte file) {
+		if (rank < 0 | rank >= this.rankCount | file < 0 | file >= this.fileCount) throw new IllegalArgumentException();
+
+		final List<AbsoluteMotion[]> moves = new ArrayList<>();
+		for (final AbsoluteMotion[] move : this.getCandidateMoves()) {
+			if (move[0].getSourceRank() == rank & move[0].getSourceFile() == file) moves.add(move);
+		}
+		return moves;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -101,6 +139,150 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	}
 
 
+	/**
+	 * Returns the analysis cache consulted by {@linkplain #analyze(int)}.
+	 * @return the analysis cache, or {@code null} for none
+	 */
+	public AnalysisCache getAnalysisCache () {
+		return this.analysisCache;
+	}
+
+
+	/**
+	 * Sets the analysis cache consulted by {@linkplain #analyze(int)}. Note that clones share the
+	 * analysis cache of their original.
+	 * @param analysisCache the analysis cache, or {@code null} for none
+	 */
+	public void setAnalysisCache (final AnalysisCache analysisCache) {
+		this.analysisCache = analysisCache;
+	}
+
+
+	/**
+	 * Returns the node counter incremented for each node visited during analysis.
+	 * @return the node counter, or {@code null} for none
+	 */
+	public LongAdder getNodeCounter () {
+		return this.nodeCounter;
+	}
+
+
+	/**
+	 * Sets the node counter incremented for each node visited during analysis, in addition to the
+	 * process wide {@linkplain SearchStatistics}. Note that clones share the node counter of their
+	 * original, which allows attributing nodes to individual boards even if several of them are
+	 * analyzed concurrently.
+	 * @param nodeCounter the node counter, or {@code null} for none
+	 */
+	public void setNodeCounter (final LongAdder nodeCounter) {
+		this.nodeCounter = nodeCounter;
+	}
+
+
+	/**
+	 * Returns the statistics the analyses of this board are added to.
+	 * @return the search statistics, or {@code null} for none
+	 */
+	public SearchStatistics getSearchStatistics () {
+		return this.searchStatistics;
+	}
+
+
+	/**
+	 * Sets the statistics the analyses of this board are added to, in addition to the process wide
+	 * {@linkplain SearchStatistics}. Note that clones share the search statistics of their
+	 * original, which allows reporting the statistics of individual boards even if several of
+	 * them are analyzed concurrently.
+	 * @param searchStatistics the search statistics, or {@code null} for none
+	 */
+	public void setSearchStatistics (final SearchStatistics searchStatistics) {
+		this.searchStatistics = searchStatistics;
+	}
+
+
+	/**
+	 * Returns the transposition store consulted for each node visited during analysis.
+	 * @return the transposition store, or {@code null} for none
+	 */
+	public TranspositionStore getTranspositionStore () {
+		return this.transpositionStore;
+	}
+
+
+	/**
+	 * Sets the transposition store consulted for each node visited during analysis. Note that
+	 * clones share the transposition store of their original.
+	 * @param transpositionStore the transposition store, or {@code null} for none
+	 */
+	public void setTranspositionStore (final TranspositionStore transpositionStore) {
+		this.transpositionStore = transpositionStore;
+	}
+
+
+	/**
+	 * {@inheritDoc} Note that the position history is maintained by {@linkplain #beginMove()} and
+	 * {@linkplain #endMove()}, and shared with clones.
+	 */
+	public int getRepetitionCount () {
+		final PositionRecord head = this.positionHistory;
+		if (head == null) return 1;
+
+		int count = 1;
+		for (PositionRecord record = head.previous; record != null; record = record.previous) {
+			if (record.positionHash == head.positionHash) count += 1;
+		}
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isRepetition () {
+		final PositionRecord head = this.positionHistory;
+		if (head == null) return false;
+
+		// equal positions share the active side, therefore only every other record can match
+		for (PositionRecord record = head.previous == null ? null : head.previous.previous; record != null; record = record.previous == null ? null : record.previous.previous) {
+			if (record.positionHash == head.positionHash) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Must be called by subclasses before a move alters this board, in order to ensure the position
+	 * history contains this board's current position. Returns the current position hash, which
+	 * allows subclasses to calculate the next one incrementally.
+	 * @return the position hash, see {@linkplain #getPositionHash()}
+	 */
+	protected final long beginMove () {
+		if (this.positionHistory == null) this.positionHistory = new PositionRecord(this.getPositionHash(), null);
+		return this.positionHistory.positionHash;
+	}
+
+
+	/**
+	 * Must be called by subclasses after a move has altered this board, in order to add the new
+	 * position to the position history. Note that the history is truncated if the move was
+	 * irreversible, as former positions cannot recur afterwards.
+	 * @param positionHash the new position hash, see {@linkplain #getPositionHash()}
+	 */
+	protected final void endMove (final long positionHash) {
+		assert positionHash == this.getPositionHash();
+		this.positionHistory = new PositionRecord(positionHash, this.reversibleMoveClock == 0 ? null : this.positionHistory);
+	}
+
+
+	/**
+	 * Must be called by subclasses after this board's position has been replaced by other means
+	 * than moving, in order to discard the position history.
+	 */
+	protected final void clearPositionHistory () {
+		this.positionHistory = null;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -111,12 +293,80 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} This implementation delegates to {@linkplain #analyze(int, Prediction)}
+	 * without previous prediction.
 	 * @throws IllegalArgumentException {@inheritDoc}
 	 * @throws InterruptedException {@inheritDoc}
 	 */
 	public Prediction analyze (final int depth) throws InterruptedException {
-		return this.analyzeRecursively(depth);
+		return this.analyze(depth, null);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation delegates to
+	 * {@linkplain #analyze(int, long, Prediction)} without time budget.
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 * @throws InterruptedException {@inheritDoc}
+	 */
+	public Prediction analyze (final int depth, final Prediction previousPrediction) throws InterruptedException {
+		return this.analyze(depth, 0, previousPrediction);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation delegates to
+	 * {@linkplain #analyze(int, long, Prediction)} without previous prediction.
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 * @throws InterruptedException {@inheritDoc}
+	 */
+	public Prediction analyze (final int depth, final long timeBudget) throws InterruptedException {
+		return this.analyze(depth, timeBudget, null);
+	}
+
+
+	/**
+	 * Analyzes this board up until the given search depth, within the given time budget, and
+	 * seeded with the given previous prediction. If an analysis cache is present, predictions of
+	 * at least the given depth are looked up within it first, and fresh predictions are stored
+	 * within it afterwards, unless a time budget is given, as such predictions may fall short of
+	 * the given depth. Analysis durations and cache hits are recorded within the process wide
+	 * {@linkplain SearchStatistics}, and within this board's search statistics if present.
+	 * @param depth the maximum search depth in half moves
+	 * @param timeBudget the time budget in milliseconds, or {@code 0} for none
+	 * @param previousPrediction the previous prediction, see {@linkplain #analyze(int, Prediction)},
+	 *        or {@code null} for none
+	 * @return the prediction of the deepest analysis completed
+	 * @throws IllegalArgumentException if the given depth or time budget is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	public Prediction analyze (final int depth, final long timeBudget, final Prediction previousPrediction) throws InterruptedException {
+		if (depth <= 0 | timeBudget < 0) throw new IllegalArgumentException();
+
+		final AnalysisCache cache = this.analysisCache;
+		final SearchStatistics searchStatistics = this.searchStatistics;
+		final long positionHash = cache == null ? 0 : this.getPositionHash();
+		if (cache != null) {
+			final Prediction cachedPrediction = cache.get(positionHash, depth);
+			if (cachedPrediction != null) {
+				SearchStatistics.singleton().recordTranspositionHit();
+				SearchStatistics.singleton().recordCompletedDepth(depth);
+				if (searchStatistics != null) {
+					searchStatistics.recordTranspositionHit();
+					searchStatistics.recordCompletedDepth(depth);
+				}
+				return cachedPrediction;
+			}
+		}
+
+		final long before = System.nanoTime();
+		final Prediction prediction = this.analyzeUncached(depth, timeBudget, previousPrediction);
+		final long nanos = System.nanoTime() - before;
+		SearchStatistics.singleton().recordSearch(depth, nanos);
+		if (searchStatistics != null) searchStatistics.recordSearch(depth, nanos);
+
+		if (cache != null & timeBudget == 0) cache.put(positionHash, depth, prediction);
+		return prediction;
 	}
 
 
@@ -135,6 +385,26 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	}
 
 
+	/**
+	 * Analyzes this board without consulting the analysis cache. The default implementation
+	 * ignores the given time budget and previous prediction, and delegates to
+	 * {@linkplain #analyzeRecursively(int)}; subclasses may override this method to customize the
+	 * top level of the analysis, for example to perform it in parallel, to deepen it iteratively
+	 * within the given time budget, or seeded with the given previous prediction.
+	 * @param depth the search depth in half moves
+	 * @param timeBudget the time budget in milliseconds, or {@code 0} for none
+	 * @param previousPrediction the previous prediction, see {@linkplain #analyze(int, Prediction)},
+	 *        or {@code null} for none
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws IllegalArgumentException if the given depth is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	protected Prediction analyzeUncached (final int depth, final long timeBudget, final Prediction previousPrediction) throws InterruptedException {
+		return this.analyzeRecursively(depth);
+	}
+
+
 	/**
 	 * Recursively analyzes this board for candidate moves and counter moves up until the given
 	 * search depth, beginning with this board's active color, and implementing the minimax game
@@ -151,6 +421,20 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	protected abstract Prediction analyzeRecursively (final int depth) throws InterruptedException;
 
 
+	/**
+	 * Returns a well distributed 64-bit hash key for the given value, suitable for combining
+	 * position hashes by exclusive or (SplitMix64 finalizer).
+	 * @param value the value
+	 * @return the hash key
+	 */
+	static protected long hashKey (final long value) {
+		long key = value + 0x9E3779B97F4A7C15L;
+		key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+		key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+		return key ^ (key >>> 31);
+	}
+
+
 	/**
 	 * Return the lower left board position.
 	 * @return the lower left position
@@ -185,4 +469,27 @@ public abstract class AbstractBoard<T extends PieceType> implements Board<T> {
 	protected final int getUpperRightPosition () {
 		return this.rankCount * this.fileCount - 1;
 	}
-}
\ No newline at end of file
+
+
+
+	/**
+	 * Instances of this inner class model immutable position history records, each linking to the
+	 * record of the preceding position. Note that records are shared between a board and it's
+	 * clones, which allows analysis threads to extend the history independently of each other.
+	 */
+	static private final class PositionRecord {
+		private final long positionHash;
+		private final PositionRecord previous;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param positionHash the position hash
+		 * @param previous the record of the preceding position, or {@code null} for none
+		 */
+		public PositionRecord (final long positionHash, final PositionRecord previous) {
+			this.positionHash = positionHash;
+			this.previous = previous;
+		}
+	}
+}
@@ -41,6 +41,31 @@ public abstract class AbstractTableBoard<T extends PieceType> extends AbstractBo
 	}
 
 
+	/**
+	 * {@inheritDoc} This implementation combines the hash keys of the board dimensions, the piece
+	 * ordinals, and the active side.
+	 */
+	public long getPositionHash () {
+		long hash = hashKey(Long.MIN_VALUE | (this.rankCount << Byte.SIZE) | this.fileCount);
+		for (final Piece<T> piece : this.pieces) {
+			hash ^= pieceHashKey(piece);
+		}
+		return this.isWhiteActive() ? hash : ~hash;
+	}
+
+
+	/**
+	 * Returns the hash key for the given piece, see {@linkplain #getPositionHash()}. Note that
+	 * position hashes may be updated incrementally by combining the hash keys of pieces removed and
+	 * added by exclusive or.
+	 * @param piece the piece, or {@code null} for none
+	 * @return the hash key, or {@code 0} for none
+	 */
+	static protected long pieceHashKey (final Piece<?> piece) {
+		return piece == null ? 0 : hashKey(piece.ordinal());
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 * @throws IllegalArgumentException {@inheritDoc}
@@ -0,0 +1,256 @@
+package de.htw.ds.board;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model size-bounded caches for board analysis results, mapping position
+ * hashes to the deepest prediction known for said positions. Least recently used entries are
+ * evicted once the capacity is exceeded. Note that a cached prediction satisfies any request of
+ * equal or lesser search depth, as deeper analysis supersedes shallower one. Also note that this
+ * class is thread safe.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public class AnalysisCache {
+	static private final int FILE_MAGIC = 0x42434331;
+
+	private final int capacity;
+	private final Map<Long,CacheEntry> entries;
+	private long hitCount;
+	private long missCount;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param capacity the maximum number of entries
+	 * @throws IllegalArgumentException if the given capacity is negative
+	 */
+	public AnalysisCache (final int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException();
+
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Long,CacheEntry>(16, 0.75f, true) {
+			static private final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry (final Map.Entry<Long,CacheEntry> eldest) {
+				return this.size() > AnalysisCache.this.capacity;
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the maximum number of entries.
+	 * @return the capacity
+	 */
+	public int getCapacity () {
+		return this.capacity;
+	}
+
+
+	/**
+	 * Returns the current number of entries.
+	 * @return the entry count
+	 */
+	public synchronized int getSize () {
+		return this.entries.size();
+	}
+
+
+	/**
+	 * Returns the number of successful lookups.
+	 * @return the hit count
+	 */
+	public synchronized long getHitCount () {
+		return this.hitCount;
+	}
+
+
+	/**
+	 * Returns the number of unsuccessful lookups.
+	 * @return the miss count
+	 */
+	public synchronized long getMissCount () {
+		return this.missCount;
+	}
+
+
+	/**
+	 * Returns the ratio of successful lookups to all lookups.
+	 * @return the hit rate within range {@code [0, 1]}
+	 */
+	public synchronized double getHitRate () {
+		final long lookupCount = this.hitCount + this.missCount;
+		return lookupCount == 0 ? 0 : (double) this.hitCount / lookupCount;
+	}
+
+
+	/**
+	 * Returns a prediction for the given position that has been analyzed with at least the given
+	 * search depth. Note that the result is a copy, i.e. it may be altered by the caller.
+	 * @param positionHash the position hash
+	 * @param depth the minimum search depth in half moves
+	 * @return the prediction, or {@code null} for none
+	 */
+	public synchronized Prediction get (final long positionHash, final int depth) {
+		final CacheEntry entry = this.entries.get(positionHash);
+		if (entry == null || entry.depth < depth) {
+			this.missCount += 1;
+			return null;
+		}
+
+		this.hitCount += 1;
+		return entry.toPrediction();
+	}
+
+
+	/**
+	 * Stores the given prediction for the given position, unless a prediction of greater search
+	 * depth is already present.
+	 * @param positionHash the position hash
+	 * @param depth the search depth in half moves
+	 * @param prediction the prediction
+	 * @throws NullPointerException if the given prediction is {@code null}
+	 */
+	public synchronized void put (final long positionHash, final int depth, final Prediction prediction) {
+		final CacheEntry entry = this.entries.get(positionHash);
+		if (entry == null || entry.depth <= depth) {
+			this.entries.put(positionHash, new CacheEntry(depth, prediction));
+		}
+	}
+
+
+	/**
+	 * Removes all entries, and resets the hit and miss counts.
+	 */
+	public synchronized void clear () {
+		this.entries.clear();
+		this.hitCount = 0;
+		this.missCount = 0;
+	}
+
+
+	/**
+	 * Adds the entries stored within the given file to this cache, in their original order of use.
+	 * @param path the file path
+	 * @throws NullPointerException if the given path is {@code null}
+	 * @throws IOException if there is an I/O related problem, or if the file content is malformed
+	 */
+	public void load (final Path path) throws IOException {
+		try (DataInputStream byteSource = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (byteSource.readInt() != FILE_MAGIC) throw new IOException("malformed analysis cache file");
+
+			for (int entryCount = byteSource.readInt(); entryCount > 0; --entryCount) {
+				final long positionHash = byteSource.readLong();
+				final int depth = byteSource.readInt();
+				final Prediction prediction = new Prediction(byteSource.readInt());
+
+				for (int moveCount = byteSource.readUnsignedShort(); moveCount > 0; --moveCount) {
+					final AbsoluteMotion[] move = new AbsoluteMotion[byteSource.readUnsignedByte()];
+					for (int index = 0; index < move.length; ++index) {
+						move[index] = new AbsoluteMotion(byteSource.readByte(), byteSource.readByte(), byteSource.readByte(), byteSource.readByte(), byteSource.readByte());
+					}
+					prediction.getMoveSequence().addLast(move);
+				}
+
+				this.put(positionHash, depth, prediction);
+			}
+		} catch (final IllegalArgumentException exception) {
+			throw new IOException("malformed analysis cache file", exception);
+		}
+	}
+
+
+	/**
+	 * Stores the entries of this cache within the given file, in their order of use.
+	 * @param path the file path
+	 * @throws NullPointerException if the given path is {@code null}
+	 * @throws IOException if there is an I/O related problem
+	 */
+	public void save (final Path path) throws IOException {
+		final Map<Long,CacheEntry> entries;
+		synchronized (this) {
+			entries = new LinkedHashMap<>(this.entries);
+		}
+
+		try (DataOutputStream byteSink = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			byteSink.writeInt(FILE_MAGIC);
+			byteSink.writeInt(entries.size());
+
+			for (final Map.Entry<Long,CacheEntry> mapEntry : entries.entrySet()) {
+				final CacheEntry entry = mapEntry.getValue();
+				byteSink.writeLong(mapEntry.getKey());
+				byteSink.writeInt(entry.depth);
+				byteSink.writeInt(entry.rating);
+				byteSink.writeShort(entry.moveSequence.length);
+
+				for (final AbsoluteMotion[] move : entry.moveSequence) {
+					byteSink.writeByte(move.length);
+					for (final AbsoluteMotion motion : move) {
+						byteSink.writeByte(motion.getSourceRank());
+						byteSink.writeByte(motion.getSourceFile());
+						byteSink.writeByte(motion.getSinkRank());
+						byteSink.writeByte(motion.getSinkFile());
+						byteSink.writeByte(motion.getFlags());
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString () {
+		return String.format("%d/%d entries, %d hits, %d misses, hit rate %.1f%%", this.entries.size(), this.capacity, this.hitCount, this.missCount, 100 * this.getHitRate());
+	}
+
+
+
+	/**
+	 * Instances of this inner class model immutable cache entries.
+	 */
+	static private final class CacheEntry {
+		private final int depth;
+		private final int rating;
+		private final AbsoluteMotion[][] moveSequence;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param depth the search depth in half moves
+		 * @param prediction the prediction
+		 * @throws NullPointerException if the given prediction is {@code null}
+		 */
+		public CacheEntry (final int depth, final Prediction prediction) {
+			this.depth = depth;
+			this.rating = prediction.getRating();
+			this.moveSequence = prediction.getMoveSequence().toArray(new AbsoluteMotion[0][]);
+		}
+
+
+		/**
+		 * Returns a new prediction representing this entry.
+		 * @return the prediction
+		 */
+		public Prediction toPrediction () {
+			final Prediction prediction = new Prediction(this.rating);
+			for (final AbsoluteMotion[] move : this.moveSequence) {
+				prediction.getMoveSequence().addLast(move);
+			}
+			return prediction;
+		}
+	}
+}
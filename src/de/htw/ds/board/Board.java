@@ -58,6 +58,24 @@ public interface Board<T extends PieceType> extends Cloneable {
 	short getReversibleMoveClock ();
 
 
+	/**
+	 * Returns the number of times this board's position has occurred since the last irreversible
+	 * move, including the current occurrence. Note that only positions reached by moving on this
+	 * board (or the board it has been cloned from) are taken into account.
+	 * @return the repetition count, at least {@code 1}
+	 */
+	int getRepetitionCount ();
+
+
+	/**
+	 * Returns whether or not this board's position has already occurred since the last
+	 * irreversible move, which is equivalent to but cheaper than testing the repetition count
+	 * for values greater than {@code 1}.
+	 * @return {@code true} if this board's position is a repetition, {@code false} otherwise
+	 */
+	boolean isRepetition ();
+
+
 	/**
 	 * Returns whether or not white is active
 	 * @return {@code true} if white is active, {@code false} otherwise
@@ -95,6 +113,28 @@ public interface Board<T extends PieceType> extends Cloneable {
 	Collection<AbsoluteMotion[]> getCandidateMoves ();
 
 
+	/**
+	 * Returns the candidate moves of the active side that either capture a piece, or don't. This
+	 * allows move generation to be staged, i.e. to generate the quiet moves only if the captures
+	 * didn't suffice.
+	 * @param captures {@code true} for the capturing moves, {@code false} for the quiet ones
+	 * @return the moves, each consisting of possibly multiple motions
+	 */
+	Collection<AbsoluteMotion[]> getCandidateMoves (boolean captures);
+
+
+	/**
+	 * Returns the candidate moves of the active piece at the given position, which allows moves
+	 * stemming from other sources to be verified cheaply.
+	 * @param rank the source rank
+	 * @param file the source file
+	 * @return the moves, each consisting of possibly multiple motions, or an empty collection if
+	 *         there is no active piece at the given position
+	 * @throws IllegalArgumentException if the given rank or file is out of range
+	 */
+	Collection<AbsoluteMotion[]> getCandidateMoves (byte rank, byte file);
+
+
 	/**
 	 * Returns whether or not the given side can capture a (possibly temporal) piece on the given
 	 * position if it were to move. Note that this operation can be based on reverse motion checks,
@@ -109,6 +149,16 @@ public interface Board<T extends PieceType> extends Cloneable {
 	boolean isThreatened (byte rank, byte file, boolean white);
 
 
+	/**
+	 * Returns a 64-bit hash of this board's position, i.e. the piece placement, the active side,
+	 * and any game specific state that influences the candidate moves. Note that the clocks are
+	 * not part of the position, and that equal positions always share the same hash, while
+	 * differing positions are very unlikely to do so.
+	 * @return the position hash
+	 */
+	long getPositionHash ();
+
+
 	/**
 	 * Moves a piece, modifying the board in the process. Note that this method does not check the
 	 * validity of the given move, only that there is an active piece to be moved. Note that this
@@ -138,6 +188,38 @@ public interface Board<T extends PieceType> extends Cloneable {
 	Prediction analyze (int depth) throws InterruptedException;
 
 
+	/**
+	 * Recursively analyzes this board like {@linkplain #analyze(int)}, but seeded with the given
+	 * previous prediction, usually the remainder of a prediction made before the moves leading to
+	 * this board were played. If it's move sequence can still be played on this board, it is
+	 * analyzed first, and it's rating is expected to be close to the new one; implementations may
+	 * additionally skip shallower analysis up until the length of said move sequence. Note that
+	 * this operation is designed to be interruptible.
+	 * @param depth the search depth in half moves
+	 * @param previousPrediction the previous prediction, or {@code null} for none
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws IllegalArgumentException if the given depth is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	Prediction analyze (int depth, Prediction previousPrediction) throws InterruptedException;
+
+
+	/**
+	 * Recursively analyzes this board like {@linkplain #analyze(int)}, but deepening the analysis
+	 * iteratively until either the given search depth is reached or the given time budget is
+	 * exhausted, in which case the prediction of the deepest analysis completed is returned. Note
+	 * that the first analysis is always completed, and that this operation is designed to be
+	 * interruptible.
+	 * @param depth the maximum search depth in half moves
+	 * @param timeBudget the time budget in milliseconds, or {@code 0} for none
+	 * @return the prediction of the deepest analysis completed
+	 * @throws IllegalArgumentException if the given depth or time budget is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	Prediction analyze (int depth, long timeBudget) throws InterruptedException;
+
+
 	/**
 	 * Recursively analyzes this board for candidate moves and counter moves up until the given
 	 * search depth, beginning with this board's active color, and implementing the minimax game
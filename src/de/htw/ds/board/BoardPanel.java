@@ -34,6 +34,7 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 	private final int searchDepth;
 	private final List<byte[]> selectedPositions;
 	private Thread asynchronousOperation;
+	private volatile Prediction expectedPrediction;
 
 
 	/**
@@ -224,6 +225,9 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 
 	/**
 	 * Performs the given move. Returns {@code true} if the game is over, {@code false} otherwise.
+	 * Note that the game is considered drawn once a position occurs for the third time, or once
+	 * fifty moves have passed without an irreversible one. Also note that the expected prediction
+	 * is kept only if the given move follows it.
 	 * @param move the move
 	 * @return whether or not the game is over
 	 * @throws NullPointerException if the given move is {@code null}
@@ -238,13 +242,17 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 
 		final long pieceCountBefore = this.board.pieceStream().count();
 		this.board.move(move);
+		this.expectedPrediction = remainder(this.expectedPrediction, move);
 		final long pieceCountAfter = this.board.pieceStream().count();
 		final Prediction prediction = this.board.analyzeUninterruptibly(1);
+		final boolean drawn = this.board.getRepetitionCount() >= 3 | this.board.getReversibleMoveClock() >= 100;
 
 		this.refresh();
 		Logger.getGlobal().log(Level.INFO, "Player moves {0}", Arrays.toString(move));
 
-		final MoveEvent event = new MoveEvent(this, piece.getType(), move, pieceCountAfter < pieceCountBefore, prediction.getRating(), prediction.getMoveSequence().isEmpty());
+		final MoveEvent event = drawn
+			? new MoveEvent(this, piece.getType(), move, pieceCountAfter < pieceCountBefore, 0, true)
+			: new MoveEvent(this, piece.getType(), move, pieceCountAfter < pieceCountBefore, prediction.getRating(), prediction.getMoveSequence().isEmpty());
 		for (final ChangeListener listener : this.getListeners(ChangeListener.class)) {
 			listener.stateChanged(event);
 		}
@@ -257,7 +265,8 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 	}
 
 	/**
-	 * Calculates the next computer move and performs it.
+	 * Calculates the next computer move and performs it. Note that the analysis is seeded with the
+	 * remainder of the previous analysis' prediction if the moves played since followed it.
 	 */
 	private void performComputerMove () {
 		this.setGlobalControlsEnabled(false);
@@ -265,7 +274,7 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 			final Prediction prediction;
 			try {
 				final long before = System.currentTimeMillis();
-				prediction = this.board.analyze(this.searchDepth);
+				prediction = this.board.analyze(this.searchDepth, this.expectedPrediction);
 				final long after = System.currentTimeMillis();
 				Logger.getGlobal().log(Level.INFO, "Prediction: {0} after {1} seconds.", new Object[] { prediction, new Double(0.001 * (after - before)) });
 			} catch (final InterruptedException exception) {
@@ -274,9 +283,29 @@ public class BoardPanel<T extends PieceType> extends JPanel {
 			}
 
 			final AbsoluteMotion[] computerMove = prediction.getMoveSequence().peekFirst();
+			this.expectedPrediction = prediction;
 			if (computerMove != null) this.performMove(computerMove);
 		} finally {
 			this.setGlobalControlsEnabled(true);
 		}
 	}
+
+
+	/**
+	 * Returns the remainder of the given prediction after the given move, which is a copy of said
+	 * prediction without it's first move if the latter equals the given move. Note that the copy
+	 * prevents predictions shared with an analysis cache from being altered.
+	 * @param prediction the prediction, or {@code null} for none
+	 * @param move the move
+	 * @return the remainder of the prediction, or {@code null} if there is no prediction, or if the
+	 *         given move deviates from it
+	 */
+	static private Prediction remainder (final Prediction prediction, final AbsoluteMotion[] move) {
+		if (prediction == null || !Arrays.equals(prediction.getMoveSequence().peekFirst(), move)) return null;
+
+		final Prediction remainder = new Prediction(prediction.getRating());
+		remainder.getMoveSequence().addAll(prediction.getMoveSequence());
+		remainder.getMoveSequence().removeFirst();
+		return remainder;
+	}
 }
\ No newline at end of file
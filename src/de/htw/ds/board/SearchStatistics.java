@@ -0,0 +1,328 @@
+package de.htw.ds.board;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class collect board analysis statistics. Each search records into an instance
+ * of it's own, which is added to the process wide singleton once the search ends, and optionally
+ * to the statistics of the analyzed board, see {@linkplain AbstractBoard#setSearchStatistics};
+ * therefore, concurrent searches report their own numbers. The singleton is exposed as a JMX MBean
+ * named {@value #OBJECT_NAME}. All counters are based on striped adders, which allows concurrent
+ * search threads to record their progress without contending for a shared memory location, except
+ * for the completed search depth, which is based on a striped maximum accumulator.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class SearchStatistics implements SearchStatisticsMBean {
+	static public final String OBJECT_NAME = "de.htw.ds.board:type=SearchStatistics";
+	static private final int MAX_DEPTH = 64;
+	static private final SearchStatistics SINGLETON = new SearchStatistics();
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(SINGLETON, new ObjectName(OBJECT_NAME));
+		} catch (final JMException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+	}
+
+	private final LongAdder searchCount = new LongAdder();
+	private final LongAdder searchNanos = new LongAdder();
+	private final LongAdder nodeCount = new LongAdder();
+	private final LongAdder leafCount = new LongAdder();
+	private final LongAdder cutoffCount = new LongAdder();
+	private final LongAdder researchCount = new LongAdder();
+	private final LongAdder cloneCount = new LongAdder();
+	private final LongAdder transpositionHitCount = new LongAdder();
+	private final LongAdder taskNanos = new LongAdder();
+	private final LongAdder threadNanos = new LongAdder();
+	private final LongAdder[] depthCounts = new LongAdder[MAX_DEPTH + 1];
+	private final LongAdder[] depthNanos = new LongAdder[MAX_DEPTH + 1];
+	private final LongAccumulator completedDepth = new LongAccumulator(Long::max, 0);
+
+
+	/**
+	 * Returns the singleton instance of this class.
+	 * @return the process singleton
+	 */
+	static public SearchStatistics singleton () {
+		return SINGLETON;
+	}
+
+
+	/**
+	 * Creates a new instance, which is not registered as a JMX MBean.
+	 */
+	public SearchStatistics () {
+		for (int depth = 0; depth <= MAX_DEPTH; ++depth) {
+			this.depthCounts[depth] = new LongAdder();
+			this.depthNanos[depth] = new LongAdder();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getSearchCount () {
+		return this.searchCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getSearchTime () {
+		return this.searchNanos.sum() / 1000000;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getNodeCount () {
+		return this.nodeCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLeafCount () {
+		return this.leafCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCutoffCount () {
+		return this.cutoffCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getResearchCount () {
+		return this.researchCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCloneCount () {
+		return this.cloneCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getTranspositionHitCount () {
+		return this.transpositionHitCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getEffectiveBranchingFactor () {
+		final long nodeCount = this.nodeCount.sum();
+		final long interiorNodeCount = nodeCount - this.leafCount.sum() + this.searchCount.sum();
+		return interiorNodeCount <= 0 ? 0 : (double) nodeCount / interiorNodeCount;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getNodesPerSecond () {
+		final long searchNanos = this.searchNanos.sum();
+		return searchNanos == 0 ? 0 : 1E9 * this.nodeCount.sum() / searchNanos;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double[] getDepthTimes () {
+		int maxDepth = 0;
+		for (int depth = 1; depth <= MAX_DEPTH; ++depth) {
+			if (this.depthCounts[depth].sum() > 0) maxDepth = depth;
+		}
+
+		final double[] result = new double[maxDepth + 1];
+		for (int depth = 1; depth <= maxDepth; ++depth) {
+			final long count = this.depthCounts[depth].sum();
+			result[depth] = count == 0 ? 0 : 1E-6 * this.depthNanos[depth].sum() / count;
+		}
+		return result;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCompletedDepth () {
+		return this.completedDepth.get();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getThreadUtilization () {
+		final long threadNanos = this.threadNanos.sum();
+		return threadNanos == 0 ? 0 : Math.min(1.0, (double) this.taskNanos.sum() / threadNanos);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset () {
+		for (final LongAdder adder : new LongAdder[] { this.searchCount, this.searchNanos, this.nodeCount, this.leafCount, this.cutoffCount, this.researchCount, this.cloneCount, this.transpositionHitCount, this.taskNanos, this.threadNanos }) {
+			adder.reset();
+		}
+		for (int depth = 0; depth <= MAX_DEPTH; ++depth) {
+			this.depthCounts[depth].reset();
+			this.depthNanos[depth].reset();
+		}
+		this.completedDepth.reset();
+	}
+
+
+	/**
+	 * Adds the counters of the given statistics to this instance's counters.
+	 * @param statistics the statistics
+	 * @throws NullPointerException if the given statistics are {@code null}
+	 */
+	public void add (final SearchStatistics statistics) {
+		this.searchCount.add(statistics.searchCount.sum());
+		this.searchNanos.add(statistics.searchNanos.sum());
+		this.nodeCount.add(statistics.nodeCount.sum());
+		this.leafCount.add(statistics.leafCount.sum());
+		this.cutoffCount.add(statistics.cutoffCount.sum());
+		this.researchCount.add(statistics.researchCount.sum());
+		this.cloneCount.add(statistics.cloneCount.sum());
+		this.transpositionHitCount.add(statistics.transpositionHitCount.sum());
+		this.taskNanos.add(statistics.taskNanos.sum());
+		this.threadNanos.add(statistics.threadNanos.sum());
+		for (int depth = 0; depth <= MAX_DEPTH; ++depth) {
+			this.depthCounts[depth].add(statistics.depthCounts[depth].sum());
+			this.depthNanos[depth].add(statistics.depthNanos[depth].sum());
+		}
+		this.completedDepth.accumulate(statistics.completedDepth.get());
+	}
+
+
+	/**
+	 * Records a completed top level analysis.
+	 * @param depth the search depth in half moves
+	 * @param nanos the analysis duration in nanoseconds
+	 */
+	public void recordSearch (final int depth, final long nanos) {
+		this.searchCount.increment();
+		this.searchNanos.add(nanos);
+		if (depth > 0 & depth <= MAX_DEPTH) {
+			this.depthCounts[depth].increment();
+			this.depthNanos[depth].add(nanos);
+		}
+	}
+
+
+	/**
+	 * Records a completed analysis of the given search depth, usually an iteration of an
+	 * iteratively deepened top level analysis.
+	 * @param depth the search depth in half moves
+	 */
+	public void recordCompletedDepth (final int depth) {
+		this.completedDepth.accumulate(depth);
+	}
+
+
+	/**
+	 * Records a visited node.
+	 * @param leaf whether or not the node is a leaf
+	 */
+	public void recordNode (final boolean leaf) {
+		this.nodeCount.increment();
+		if (leaf) this.leafCount.increment();
+	}
+
+
+	/**
+	 * Records a search cutoff.
+	 */
+	public void recordCutoff () {
+		this.cutoffCount.increment();
+	}
+
+
+	/**
+	 * Records a re-search caused by a failing null or aspiration window.
+	 */
+	public void recordResearch () {
+		this.researchCount.increment();
+	}
+
+
+	/**
+	 * Records a board clone.
+	 */
+	public void recordClone () {
+		this.cloneCount.increment();
+	}
+
+
+	/**
+	 * Records a transposition hit.
+	 */
+	public void recordTranspositionHit () {
+		this.transpositionHitCount.increment();
+	}
+
+
+	/**
+	 * Records the execution of a parallel analysis task.
+	 * @param nanos the task duration in nanoseconds
+	 */
+	public void recordTask (final long nanos) {
+		this.taskNanos.add(nanos);
+	}
+
+
+	/**
+	 * Records the thread time available to parallel analysis tasks.
+	 * @param threadCount the number of threads available
+	 * @param nanos the duration of availability in nanoseconds
+	 */
+	public void recordThreads (final int threadCount, final long nanos) {
+		this.threadNanos.add(threadCount * nanos);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString () {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%d nodes, %d leaves, %d cutoffs, %d re-searches, %d clones, %d transposition hits\n", this.getNodeCount(), this.getLeafCount(), this.getCutoffCount(), this.getResearchCount(), this.getCloneCount(), this.getTranspositionHitCount()));
+		builder.append(String.format("effective branching factor %.2f, %.0f nodes/s, thread utilization %.1f%%\n", this.getEffectiveBranchingFactor(), this.getNodesPerSecond(), 100 * this.getThreadUtilization()));
+		builder.append(String.format("deepest completed depth %d, average time per depth:", this.getCompletedDepth()));
+		final double[] depthTimes = this.getDepthTimes();
+		for (int depth = 1; depth < depthTimes.length; ++depth) {
+			if (depthTimes[depth] > 0) builder.append(String.format(" %d=%.1fms", depth, depthTimes[depth]));
+		}
+		return builder.toString();
+	}
+}
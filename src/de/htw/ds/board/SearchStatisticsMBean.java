@@ -0,0 +1,111 @@
+package de.htw.ds.board;
+
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * JMX management interface for board analysis statistics, see {@linkplain SearchStatistics}.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public interface SearchStatisticsMBean {
+
+	/**
+	 * Returns the number of top level analyses performed.
+	 * @return the search count
+	 */
+	long getSearchCount ();
+
+
+	/**
+	 * Returns the accumulated duration of all top level analyses.
+	 * @return the search time in milliseconds
+	 */
+	long getSearchTime ();
+
+
+	/**
+	 * Returns the number of nodes visited, i.e. the number of moves analyzed.
+	 * @return the node count
+	 */
+	long getNodeCount ();
+
+
+	/**
+	 * Returns the number of leaf nodes visited, i.e. the number of boards rated statically.
+	 * @return the leaf count
+	 */
+	long getLeafCount ();
+
+
+	/**
+	 * Returns the number of search cutoffs, i.e. the number of nodes whose remaining moves have
+	 * been pruned.
+	 * @return the cutoff count
+	 */
+	long getCutoffCount ();
+
+
+	/**
+	 * Returns the number of re-searches caused by failing null or aspiration windows.
+	 * @return the re-search count
+	 */
+	long getResearchCount ();
+
+
+	/**
+	 * Returns the number of board clones created during analysis.
+	 * @return the clone count
+	 */
+	long getCloneCount ();
+
+
+	/**
+	 * Returns the number of analyses that have been satisfied by previously stored results.
+	 * @return the transposition hit count
+	 */
+	long getTranspositionHitCount ();
+
+
+	/**
+	 * Returns the effective branching factor, i.e. the average number of child nodes visited per
+	 * interior node.
+	 * @return the effective branching factor
+	 */
+	double getEffectiveBranchingFactor ();
+
+
+	/**
+	 * Returns the number of nodes visited per second of search time.
+	 * @return the node rate
+	 */
+	double getNodesPerSecond ();
+
+
+	/**
+	 * Returns the average duration of top level analyses, indexed by search depth.
+	 * @return the average search times in milliseconds
+	 */
+	double[] getDepthTimes ();
+
+
+	/**
+	 * Returns the deepest search depth completed, which may fall short of the search depth
+	 * requested if a top level analysis is constrained by a time budget.
+	 * @return the completed search depth in half moves
+	 */
+	long getCompletedDepth ();
+
+
+	/**
+	 * Returns the ratio of time spent executing parallel analysis tasks to the thread time
+	 * available for them.
+	 * @return the thread utilization within range {@code [0, 1]}
+	 */
+	double getThreadUtilization ();
+
+
+	/**
+	 * Resets all statistics.
+	 */
+	void reset ();
+}
@@ -0,0 +1,138 @@
+package de.htw.ds.board.chess;
+
+import static de.htw.ds.board.chess.ChessPieceType.PAWN;
+import static de.htw.ds.board.chess.ChessPieceType.QUEEN;
+import java.util.concurrent.ExecutorService;
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.Board;
+import de.htw.ds.board.Piece;
+import de.htw.ds.board.Prediction;
+import de.htw.ds.board.search.AlphaBetaSearch;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class analyze chess boards, contributing the chess specific rules to the
+ * generic alpha-beta search: Moves leaving the own king threatened are illegal, the absence of
+ * legal moves is either check mate or stale mate, positions subject to the fifty-move rule are
+ * draws, promotions are analyzed early, and captures losing material in static exchange are
+ * analyzed late, or pruned close to the search horizon.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public class ChessAlphaBetaSearch extends AlphaBetaSearch<ChessPieceType> {
+	static private final int PRUNING_DEPTH = 2;
+
+
+	/**
+	 * Creates a new single-threaded instance.
+	 */
+	public ChessAlphaBetaSearch () {
+		super();
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * @param executor the executor service used to analyze top level moves in parallel, or
+	 *        {@code null} for single-threaded analysis
+	 * @param threadCount the number of threads available within the given executor service, used
+	 *        for statistics only
+	 * @param aspirationWindow the distance between the aspiration window bounds and the rating of
+	 *        the previous iteration
+	 * @param parallelDepth the minimum search depth for top level moves to be analyzed in parallel
+	 * @throws IllegalArgumentException if the given thread count, aspiration window or parallel
+	 *         depth is negative
+	 */
+	public ChessAlphaBetaSearch (final ExecutorService executor, final int threadCount, final int aspirationWindow, final int parallelDepth) {
+		super(executor, threadCount, aspirationWindow, parallelDepth);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation rejects moves that leave the moving side's king threatened.
+	 */
+	@Override
+	protected boolean isLegal (final Board<ChessPieceType> board, final Board<ChessPieceType> clonedBoard) {
+		final boolean whitePerspective = board.isWhiteActive();
+		final ChessBoard chessBoard = (ChessBoard) clonedBoard;
+		final Piece<ChessPieceType> king = chessBoard.getKing(whitePerspective);
+		return king != null && !chessBoard.isThreatened(king.getRank(), king.getFile(), !whitePerspective);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation additionally considers positions subject to the fifty-move
+	 * rule to be draws.
+	 */
+	@Override
+	protected boolean isDraw (final Board<ChessPieceType> board) {
+		return board.getReversibleMoveClock() >= 100 || super.isDraw(board);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation distinguishes check mate (loss) and stale mate (draw).
+	 */
+	@Override
+	protected Prediction terminalPrediction (final Board<ChessPieceType> board) {
+		final boolean whitePerspective = board.isWhiteActive();
+		final ChessBoard chessBoard = (ChessBoard) board;
+		final Piece<ChessPieceType> king = chessBoard.getKing(whitePerspective);
+		return king == null || chessBoard.isThreatened(king.getRank(), king.getFile(), !whitePerspective)
+			? new Prediction(whitePerspective ? -Integer.MAX_VALUE : +Integer.MAX_VALUE)
+			: new Prediction(0);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation additionally orders promotions alongside captures of a
+	 * queen, and captures that lose material in static exchange after all other moves.
+	 */
+	@Override
+	protected int orderingKey (final Board<ChessPieceType> board, final AbsoluteMotion[] move) {
+		final AbsoluteMotion motion = move[0];
+		final Piece<ChessPieceType> sourcePiece = board.getPiece(motion.getSourceRank(), motion.getSourceFile());
+
+		int key = super.orderingKey(board, move);
+		if (key > 0) {
+			final int exchangeScore = exchangeScore(board, motion);
+			if (exchangeScore < 0) key = exchangeScore;
+		}
+		if (sourcePiece.getType() == PAWN && (motion.getSinkRank() == 0 | motion.getSinkRank() == board.getRankCount() - 1)) {
+			key += QUEEN.getRating() << 4;
+		}
+		return key;
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation prunes captures that lose material in static exchange
+	 * within the last {@value #PRUNING_DEPTH} half moves before the search horizon, except for
+	 * promotions.
+	 */
+	@Override
+	protected boolean isPrunable (final Board<ChessPieceType> board, final AbsoluteMotion[] move, final int depth) {
+		if (depth > PRUNING_DEPTH) return false;
+
+		final AbsoluteMotion motion = move[0];
+		final Piece<ChessPieceType> sourcePiece = board.getPiece(motion.getSourceRank(), motion.getSourceFile());
+		if (sourcePiece.getType() == PAWN && (motion.getSinkRank() == 0 | motion.getSinkRank() == board.getRankCount() - 1)) return false;
+		return exchangeScore(board, motion) < 0;
+	}
+
+
+	/**
+	 * Returns the static exchange score of the given motion, see
+	 * {@linkplain ChessBoard#getExchangeScore(AbsoluteMotion)}. Note that the exchange is only
+	 * evaluated for captures by more valuable pieces, as all other captures cannot lose material.
+	 * @param board the board
+	 * @param motion the motion
+	 * @return the static exchange score, or {@code 0} if the motion is not a capture
+	 */
+	static private int exchangeScore (final Board<ChessPieceType> board, final AbsoluteMotion motion) {
+		final Piece<ChessPieceType> sourcePiece = board.getPiece(motion.getSourceRank(), motion.getSourceFile());
+		final Piece<ChessPieceType> sinkPiece = board.getPiece(motion.getSinkRank(), motion.getSinkFile());
+		if (sinkPiece == null || sinkPiece.getType().getRating() >= sourcePiece.getType().getRating()) return 0;
+		return ((ChessBoard) board).getExchangeScore(motion);
+	}
+}
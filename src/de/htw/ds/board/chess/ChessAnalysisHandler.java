@@ -0,0 +1,275 @@
+package de.htw.ds.board.chess;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.AbstractBoard;
+import de.htw.ds.board.AnalysisCache;
+import de.htw.ds.board.Board;
+import de.htw.ds.board.Prediction;
+import de.htw.ds.board.SearchStatistics;
+import de.htw.ds.board.search.TranspositionStore;
+import de.sb.java.Threads;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this HTTP handler class analyze chess boards given as X-FEN query parameter up to a
+ * given search depth, optionally constrained by a time budget, and respond with the predicted move
+ * sequence and the search depth completed in JSON format. Searches are performed on a fixed number of search threads; requests
+ * that exceed both the search threads and the bounded request queue are rejected. Requests are
+ * validated completely before the response status is sent, as the latter cannot be changed once
+ * the search is in progress: The response is then kept alive by streaming white space, which
+ * allows the search to be cancelled as soon as the client disconnects, and search failures can
+ * only be reported within the JSON response.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public class ChessAnalysisHandler implements HttpHandler, AutoCloseable {
+	static private final short HTTP_OK = 200;
+	static private final short HTTP_BAD_REQUEST = 400;
+	static private final short HTTP_METHOD_NOT_ALLOWED = 405;
+	static private final short HTTP_SERVICE_UNAVAILABLE = 503;
+	static private final long HEARTBEAT_PERIOD = 250;
+	static private final int DEFAULT_DEPTH = 5;
+	static private final int MAX_DEPTH = 64;
+
+	private final String contextPath;
+	private final Class<? extends ChessBoard> boardClass;
+	private final int queueCapacity;
+	private final ThreadPoolExecutor searchExecutor;
+	private final AnalysisCache analysisCache;
+	private final TranspositionStore transpositionStore;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param contextPath the context path
+	 * @param boardClass the chess board class used for analysis
+	 * @param searchThreadCount the maximum number of concurrent searches
+	 * @param queueCapacity the maximum number of requests waiting for a search thread
+	 * @param analysisCache the analysis cache shared by all searches, or {@code null} for none
+	 * @param transpositionStore the transposition store shared by all searches, or {@code null}
+	 *        for none
+	 * @throws NullPointerException if the given context path or board class is {@code null}
+	 * @throws IllegalArgumentException if the given thread count or capacity is negative
+	 */
+	public ChessAnalysisHandler (String contextPath, final Class<? extends ChessBoard> boardClass, final int searchThreadCount, final int queueCapacity, final AnalysisCache analysisCache, final TranspositionStore transpositionStore) {
+		if (contextPath == null | boardClass == null) throw new NullPointerException();
+		if (searchThreadCount <= 0 | queueCapacity <= 0) throw new IllegalArgumentException();
+
+		if (!contextPath.startsWith("/")) contextPath = "/" + contextPath;
+		if (!contextPath.endsWith("/")) contextPath = contextPath + "/";
+		this.contextPath = contextPath;
+		this.boardClass = boardClass;
+		this.queueCapacity = queueCapacity;
+		this.searchExecutor = new ThreadPoolExecutor(searchThreadCount, searchThreadCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), Threads.newDaemonThreadFactory());
+		this.analysisCache = analysisCache;
+		this.transpositionStore = transpositionStore;
+	}
+
+
+	/**
+	 * Returns the (normalized) context path.
+	 * @return the context path
+	 */
+	public String getContextPath () {
+		return this.contextPath.length() == 1
+			? this.contextPath
+			: this.contextPath.substring(0, this.contextPath.length() - 1);
+	}
+
+
+	/**
+	 * Returns the maximum number of concurrent searches.
+	 * @return the search thread count
+	 */
+	public int getSearchThreadCount () {
+		return this.searchExecutor.getMaximumPoolSize();
+	}
+
+
+	/**
+	 * Returns the maximum number of requests waiting for a search thread.
+	 * @return the queue capacity
+	 */
+	public int getQueueCapacity () {
+		return this.queueCapacity;
+	}
+
+
+	/**
+	 * Shuts down the search threads, and cancels all searches in progress.
+	 */
+	public void close () {
+		this.searchExecutor.shutdownNow();
+	}
+
+
+	/**
+	 * Handles the given HTTP exchange by analyzing the given chess board. Expects query parameter
+	 * "xfen", and optionally "depth" for the search depth in half moves, and "time" for a time
+	 * budget in milliseconds. Search depths are capped at {@value #MAX_DEPTH}, which is also the
+	 * default if a time budget is given; otherwise the default is {@value #DEFAULT_DEPTH}.
+	 * @param exchange the HTTP exchange
+	 * @throws NullPointerException if the given exchange is {@code null}
+	 * @throws IOException if there is an I/O related problem
+	 */
+	public void handle (final HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(HTTP_METHOD_NOT_ALLOWED, -1);
+				return;
+			}
+
+			final URI requestURI = exchange.getRequestURI();
+			final String xfenState;
+			final ChessBoard board;
+			final int depth, timeBudget;
+			try {
+				final Map<String,String> requestParameters = parseQueryParameters(requestURI.getRawQuery());
+				xfenState = requestParameters.get("xfen");
+				if (!requestURI.getPath().startsWith(this.contextPath) | xfenState == null) throw new IllegalArgumentException();
+				board = ChessXfenCodec.singleton().decode(this.boardClass, xfenState);
+				timeBudget = requestParameters.containsKey("time") ? Integer.parseInt(requestParameters.get("time")) : 0;
+				depth = requestParameters.containsKey("depth") ? Integer.parseInt(requestParameters.get("depth")) : (timeBudget == 0 ? DEFAULT_DEPTH : MAX_DEPTH);
+				if (depth <= 0 | timeBudget < 0) throw new IllegalArgumentException();
+			} catch (final IllegalArgumentException exception) {
+				exchange.sendResponseHeaders(HTTP_BAD_REQUEST, -1);
+				return;
+			}
+			final SearchStatistics searchStatistics = new SearchStatistics();
+			if (board instanceof AbstractBoard) {
+				((AbstractBoard<?>) board).setAnalysisCache(this.analysisCache);
+				((AbstractBoard<?>) board).setTranspositionStore(this.transpositionStore);
+				((AbstractBoard<?>) board).setSearchStatistics(searchStatistics);
+			}
+
+			final AtomicReference<Prediction> predictionReference = new AtomicReference<>();
+			final Future<?> future;
+			try {
+				future = this.searchExecutor.submit(() -> {
+					predictionReference.set(board.analyze(Math.min(depth, MAX_DEPTH), timeBudget));
+					return null;
+				});
+			} catch (final RejectedExecutionException exception) {
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				exchange.sendResponseHeaders(HTTP_SERVICE_UNAVAILABLE, -1);
+				return;
+			}
+
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(HTTP_OK, 0);
+			final OutputStream byteSink = exchange.getResponseBody();
+			String error = null;
+			try {
+				while (true) {
+					try {
+						future.get(HEARTBEAT_PERIOD, TimeUnit.MILLISECONDS);
+						break;
+					} catch (final TimeoutException exception) {
+						byteSink.write(' ');
+						byteSink.flush();
+					}
+				}
+			} catch (final ExecutionException exception) {
+				error = String.valueOf(exception.getCause());
+			} catch (final InterruptedException exception) {
+				error = "interrupted";
+			} finally {
+				future.cancel(true);
+			}
+
+			// boards not derived from AbstractBoard cannot report the search depth completed
+			final int completedDepth = searchStatistics.getCompletedDepth() == 0 ? Math.min(depth, MAX_DEPTH) : (int) searchStatistics.getCompletedDepth();
+			final String json = error == null
+				? toJson(xfenState, board.getFileCount(), completedDepth, predictionReference.get())
+				: String.format("{\"xfen\":\"%s\",\"error\":\"%s\"}", escape(xfenState), escape(error));
+			byteSink.write(json.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			exchange.close();
+		}
+	}
+
+
+	/**
+	 * Returns a JSON representation of the given prediction.
+	 * @param xfenState the X-FEN state analyzed
+	 * @param fileCount the number of files on the board
+	 * @param depth the search depth completed
+	 * @param prediction the prediction
+	 * @return the JSON representation
+	 */
+	static private String toJson (final String xfenState, final byte fileCount, final int depth, final Prediction prediction) {
+		final StringWriter writer = new StringWriter();
+		writer.write(String.format("{\"xfen\":\"%s\",\"depth\":%d,\"rating\":%d,\"moves\":[", escape(xfenState), depth, prediction.getRating()));
+
+		boolean first = true;
+		for (final AbsoluteMotion[] move : prediction.getMoveSequence()) {
+			if (!first) writer.write(',');
+			writer.write('"');
+			writer.write(Board.coordinatesToAlias(move[0].getSourceRank(), move[0].getSourceFile(), fileCount));
+			for (final AbsoluteMotion motion : move) {
+				writer.write('-');
+				writer.write(Board.coordinatesToAlias(motion.getSinkRank(), motion.getSinkFile(), fileCount));
+			}
+			writer.write('"');
+			first = false;
+		}
+
+		writer.write("]}");
+		return writer.toString();
+	}
+
+
+	/**
+	 * Returns the given text with JSON string escapes applied.
+	 * @param text the text
+	 * @return the escaped text
+	 */
+	static private String escape (final String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+
+	/**
+	 * Parses the URL encoded parameters contained within the given raw URI query, and returns them
+	 * as a map.
+	 * @param uriQuery the raw URI query, or {@code null}
+	 * @return the URI query parameters
+	 */
+	static private Map<String,String> parseQueryParameters (final String uriQuery) {
+		final Map<String,String> result = new HashMap<String,String>();
+		if (uriQuery == null) return result;
+
+		try {
+			for (final String association : uriQuery.split("&")) {
+				final int offset = association.indexOf('=');
+				if (offset == -1) continue;
+				final String key = URLDecoder.decode(association.substring(0, offset), "UTF-8");
+				final String value = URLDecoder.decode(association.substring(offset + 1), "UTF-8");
+				result.put(key, value);
+			}
+		} catch (final UnsupportedEncodingException exception) {
+			throw new AssertionError();
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,72 @@
+package de.htw.ds.board.chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import com.sun.net.httpserver.HttpServer;
+import de.htw.ds.board.AnalysisCache;
+import de.htw.ds.board.search.ExecutorType;
+import de.htw.ds.board.search.TranspositionStore;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * HTTP server implementation hosting chess board analysis under context path "/analysis/", see
+ * {@linkplain ChessAnalysisHandler}. Note that this class is declared final because it provides an
+ * application entry point, and is therefore not supposed to be extended by subclassing.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class ChessAnalysisServer {
+	static private final int PROCESSOR_COUNT = Runtime.getRuntime().availableProcessors();
+	static private final int ANALYSIS_CACHE_CAPACITY = 4096;
+	static private final int TRANSPOSITION_CAPACITY = 1 << 20;
+	static private final String EXCHANGE_EXECUTOR_TYPE_PROPERTY = "de.htw.ds.board.service.executor.type";
+
+
+	/**
+	 * Application entry point. The given arguments are expected to be a service port, and
+	 * optionally the chess board class name, the request queue capacity, and the path of a
+	 * transposition store file that may be shared with other processes. The type of executor serving
+	 * HTTP exchanges may be configured using system property
+	 * {@value #EXCHANGE_EXECUTOR_TYPE_PROPERTY} (default is THREAD_PER_TASK), as exchanges spend
+	 * most of their time waiting for searches to complete.
+	 * @param args the runtime arguments
+	 * @throws NumberFormatException if the given port or capacity is not a number
+	 * @throws ClassNotFoundException if the given class name is illegal
+	 * @throws ClassCastException if the given class is not a chess board
+	 * @throws IllegalArgumentException if the given executor type is illegal
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public void main (final String[] args) throws ClassNotFoundException, IOException {
+		final InetSocketAddress serviceAddress = new InetSocketAddress(Integer.parseInt(args[0]));
+		final Class<? extends ChessBoard> boardClass = args.length <= 1
+			? ChessTableBoard.class
+			: Class.forName(args[1], true, Thread.currentThread().getContextClassLoader()).asSubclass(ChessBoard.class);
+		final int queueCapacity = args.length <= 2 ? 4 * PROCESSOR_COUNT : Integer.parseInt(args[2]);
+		final TranspositionStore transpositionStore = args.length <= 3 ? null : new TranspositionStore(Paths.get(args[3]), TRANSPOSITION_CAPACITY);
+		final ExecutorType exchangeExecutorType = ExecutorType.valueOf(System.getProperty(EXCHANGE_EXECUTOR_TYPE_PROPERTY, ExecutorType.THREAD_PER_TASK.name()).toUpperCase());
+		final ExecutorService exchangeExecutor = exchangeExecutorType.newExecutor(PROCESSOR_COUNT);
+
+		try (ChessAnalysisHandler analysisHandler = new ChessAnalysisHandler("/analysis", boardClass, PROCESSOR_COUNT, queueCapacity, new AnalysisCache(ANALYSIS_CACHE_CAPACITY), transpositionStore)) {
+			final HttpServer server = HttpServer.create(serviceAddress, 0);
+			server.createContext(analysisHandler.getContextPath(), analysisHandler);
+			server.setExecutor(exchangeExecutor);
+			server.start();
+			try {
+				System.out.format("HTTP server running on service address %s:%s, enter \"quit\" to stop.\n", serviceAddress.getHostName(), serviceAddress.getPort());
+				System.out.format("Service path \"%s\" is configured for chess analysis using %s.\n", analysisHandler.getContextPath(), boardClass.getSimpleName());
+				System.out.format("Up to %s concurrent searches, and %s queued requests.\n", analysisHandler.getSearchThreadCount(), analysisHandler.getQueueCapacity());
+				System.out.format("HTTP exchanges are served using a %s executor.\n", exchangeExecutorType);
+				final BufferedReader charSource = new BufferedReader(new InputStreamReader(System.in));
+				while (!"quit".equals(charSource.readLine()));
+			} finally {
+				server.stop(0);
+				exchangeExecutor.shutdown();
+				if (transpositionStore != null) transpositionStore.close();
+			}
+		}
+	}
+}
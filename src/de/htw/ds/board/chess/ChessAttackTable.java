@@ -0,0 +1,247 @@
+package de.htw.ds.board.chess;
+
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model attack tables for boards of up to {@value #MAX_FIELD_COUNT}
+ * fields, based on 128-bit position sets represented by two long values each: The lower word
+ * contains positions {@code 0-63}, the higher word positions {@code 64-127}. For each position,
+ * the tables contain the positions attacked by knights and kings, the positions pawns of either
+ * color attack it from, and the unobstructed rays in each of the eight directions. Attacks by
+ * sliding pieces are resolved by intersecting a ray with the board occupancy, and selecting the
+ * nearest occupied position, which is the lowest one within ascending rays, and the highest one
+ * within descending rays. Note that this works for any file count because each ray is confined to
+ * the board by construction. Also note that instances of this class are immutable, and therefore
+ * thread safe.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class ChessAttackTable {
+	static public final int WORD_COUNT = 2;
+	static public final int MAX_FIELD_COUNT = WORD_COUNT * Long.SIZE;
+	static public final int DIRECTION_COUNT = 8;
+	static private final int[][] DIRECTION_DELTAS = { { 0, +1 }, { +1, -1 }, { +1, 0 }, { +1, +1 }, { 0, -1 }, { -1, +1 }, { -1, 0 }, { -1, -1 } };
+	static private final int[][] KNIGHT_DELTAS = { { +1, +2 }, { +2, +1 }, { +2, -1 }, { +1, -2 }, { -1, -2 }, { -2, -1 }, { -2, +1 }, { -1, +2 } };
+
+	private final short fieldCount;
+	private final long[] knightAttacks;
+	private final long[] kingAttacks;
+	private final long[] whitePawnAttackers;
+	private final long[] blackPawnAttackers;
+	private final long[] diagonalRays;
+	private final long[] orthogonalRays;
+	private final long[][] rays;
+
+
+	/**
+	 * Creates a new instance for the given board dimensions.
+	 * @param rankCount the number of ranks on a board
+	 * @param fileCount the number of files on a board
+	 * @throws IllegalArgumentException if the given rank or file count is negative, or if the
+	 *         resulting field count exceeds {@value #MAX_FIELD_COUNT}
+	 */
+	ChessAttackTable (final byte rankCount, final byte fileCount) {
+		if (rankCount <= 0 | fileCount <= 0 | rankCount * fileCount > MAX_FIELD_COUNT) throw new IllegalArgumentException();
+
+		this.fieldCount = (short) (rankCount * fileCount);
+		this.knightAttacks = new long[WORD_COUNT * this.fieldCount];
+		this.kingAttacks = new long[WORD_COUNT * this.fieldCount];
+		this.whitePawnAttackers = new long[WORD_COUNT * this.fieldCount];
+		this.blackPawnAttackers = new long[WORD_COUNT * this.fieldCount];
+		this.diagonalRays = new long[WORD_COUNT * this.fieldCount];
+		this.orthogonalRays = new long[WORD_COUNT * this.fieldCount];
+		this.rays = new long[DIRECTION_COUNT][WORD_COUNT * this.fieldCount];
+
+		for (int rank = 0; rank < rankCount; ++rank) {
+			for (int file = 0; file < fileCount; ++file) {
+				final int offset = WORD_COUNT * (rank * fileCount + file);
+
+				for (final int[] delta : KNIGHT_DELTAS) {
+					include(this.knightAttacks, offset, rank + delta[0], file + delta[1], rankCount, fileCount);
+				}
+				for (final int[] delta : DIRECTION_DELTAS) {
+					include(this.kingAttacks, offset, rank + delta[0], file + delta[1], rankCount, fileCount);
+				}
+				include(this.whitePawnAttackers, offset, rank - 1, file - 1, rankCount, fileCount);
+				include(this.whitePawnAttackers, offset, rank - 1, file + 1, rankCount, fileCount);
+				include(this.blackPawnAttackers, offset, rank + 1, file - 1, rankCount, fileCount);
+				include(this.blackPawnAttackers, offset, rank + 1, file + 1, rankCount, fileCount);
+
+				for (int direction = 0; direction < DIRECTION_COUNT; ++direction) {
+					final int[] delta = DIRECTION_DELTAS[direction];
+					final long[] directionRays = this.rays[direction];
+					for (int distance = 1; include(directionRays, offset, rank + distance * delta[0], file + distance * delta[1], rankCount, fileCount); ++distance);
+
+					final long[] unionRays = isDiagonal(direction) ? this.diagonalRays : this.orthogonalRays;
+					unionRays[offset] |= directionRays[offset];
+					unionRays[offset + 1] |= directionRays[offset + 1];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the number of fields on a board.
+	 * @return the field count
+	 */
+	public short getFieldCount () {
+		return this.fieldCount;
+	}
+
+
+	/**
+	 * Returns a word of the set of positions a knight at the given position attacks.
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given position or word is out of range
+	 */
+	public long knightAttacks (final int position, final int word) {
+		return this.knightAttacks[WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns a word of the set of positions a king at the given position attacks.
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given position or word is out of range
+	 */
+	public long kingAttacks (final int position, final int word) {
+		return this.kingAttacks[WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns a word of the set of positions from which pawns of the given color attack the given
+	 * position.
+	 * @param white {@code true} for white pawns, {@code false} for black ones
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given position or word is out of range
+	 */
+	public long pawnAttackers (final boolean white, final int position, final int word) {
+		return (white ? this.whitePawnAttackers : this.blackPawnAttackers)[WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns a word of the union of the four diagonal rays starting at the given position.
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given position or word is out of range
+	 */
+	public long diagonalRays (final int position, final int word) {
+		return this.diagonalRays[WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns a word of the union of the four orthogonal rays starting at the given position.
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given position or word is out of range
+	 */
+	public long orthogonalRays (final int position, final int word) {
+		return this.orthogonalRays[WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns a word of the unobstructed ray starting at the given position in the given
+	 * direction, excluding said position.
+	 * @param direction the direction index, see {@linkplain #isAscending(int)} and
+	 *        {@linkplain #isDiagonal(int)}
+	 * @param position the position
+	 * @param word the word index, {@code 0} for the lower and {@code 1} for the higher word
+	 * @return the position set word
+	 * @throws ArrayIndexOutOfBoundsException if the given direction, position or word is out of
+	 *         range
+	 */
+	public long ray (final int direction, final int position, final int word) {
+		return this.rays[direction][WORD_COUNT * position + word];
+	}
+
+
+	/**
+	 * Returns whether or not positions increase along rays of the given direction.
+	 * @param direction the direction index
+	 * @return {@code true} for ascending directions, {@code false} for descending ones
+	 */
+	static public boolean isAscending (final int direction) {
+		return direction < (DIRECTION_COUNT >> 1);
+	}
+
+
+	/**
+	 * Returns whether or not rays of the given direction are diagonal.
+	 * @param direction the direction index
+	 * @return {@code true} for diagonal directions, {@code false} for orthogonal ones
+	 */
+	static public boolean isDiagonal (final int direction) {
+		return (direction & 1) == 1;
+	}
+
+
+	/**
+	 * Returns the lowest position within the given position set.
+	 * @param low the lower word of the position set
+	 * @param high the higher word of the position set
+	 * @return the lowest position, or {@code -1} if the position set is empty
+	 */
+	static public int lowestPosition (final long low, final long high) {
+		if (low != 0) return Long.numberOfTrailingZeros(low);
+		if (high != 0) return Long.SIZE + Long.numberOfTrailingZeros(high);
+		return -1;
+	}
+
+
+	/**
+	 * Returns the highest position within the given position set.
+	 * @param low the lower word of the position set
+	 * @param high the higher word of the position set
+	 * @return the highest position, or {@code -1} if the position set is empty
+	 */
+	static public int highestPosition (final long low, final long high) {
+		if (high != 0) return 2 * Long.SIZE - 1 - Long.numberOfLeadingZeros(high);
+		if (low != 0) return Long.SIZE - 1 - Long.numberOfLeadingZeros(low);
+		return -1;
+	}
+
+
+	/**
+	 * Returns whether or not the given position set contains the given position.
+	 * @param low the lower word of the position set
+	 * @param high the higher word of the position set
+	 * @param position the position
+	 * @return {@code true} if the position is contained, {@code false} otherwise
+	 */
+	static public boolean contains (final long low, final long high, final int position) {
+		return (((position < Long.SIZE ? low : high) >>> position) & 1) != 0;
+	}
+
+
+	/**
+	 * Includes the given coordinates into the position set at the given offset, if they are
+	 * located on the board.
+	 * @param positionSets the position sets
+	 * @param offset the offset of the position set
+	 * @param rank the rank
+	 * @param file the file
+	 * @param rankCount the number of ranks on a board
+	 * @param fileCount the number of files on a board
+	 * @return {@code true} if the coordinates are located on the board, {@code false} otherwise
+	 */
+	static private boolean include (final long[] positionSets, final int offset, final int rank, final int file, final byte rankCount, final byte fileCount) {
+		if (rank < 0 | rank >= rankCount | file < 0 | file >= fileCount) return false;
+
+		final int position = rank * fileCount + file;
+		positionSets[offset + (position >> 6)] |= 1L << position;
+		return true;
+	}
+}
@@ -3,6 +3,7 @@ package de.htw.ds.board.chess;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Comparator;
+import de.htw.ds.board.AbsoluteMotion;
 import de.htw.ds.board.Board;
 import de.htw.ds.board.Piece;
 import de.htw.ds.board.Prediction;
@@ -105,6 +106,19 @@ public interface ChessBoard extends Board<ChessPieceType> {
 	Piece<ChessPieceType> getPassingPawn ();
 
 
+	/**
+	 * Returns the static exchange score of the given motion, i.e. the material balance from the
+	 * moving side's perspective after both sides have exchanged pieces on the motion's sink
+	 * position for as long as it is profitable for them, without considering any other motions.
+	 * Negative scores indicate captures that are likely to lose material.
+	 * @param motion the motion
+	 * @return the static exchange score, or {@code 0} if the motion is not a capture
+	 * @throws NullPointerException if the given motion is {@code null}
+	 * @throws IllegalArgumentException if there is no piece at the motion's source position
+	 */
+	int getExchangeScore (AbsoluteMotion motion);
+
+
 	/**
 	 * Creates an empty chess board with the given dimension.
 	 * @param rankCount the number of ranks on the board
@@ -4,18 +4,27 @@ import java.awt.Image;
 import java.awt.Toolkit;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
+import java.util.logging.Logger;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.plaf.nimbus.NimbusLookAndFeel;
+import de.htw.ds.board.AbstractBoard;
+import de.htw.ds.board.AnalysisCache;
 import de.htw.ds.board.Board;
 import de.htw.ds.board.GamePanel;
 import de.htw.ds.board.Prediction;
+import de.htw.ds.board.SearchStatistics;
+import de.htw.ds.board.search.TranspositionStore;
 import de.sb.java.TypeMetadata;
 import de.sb.java.io.Streams;
 
@@ -30,6 +39,12 @@ import de.sb.java.io.Streams;
 @TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
 public final class ChessClient {
 	static private enum Mode { USER_INTERFACE, ANALYZE }
+	static private final String CACHE_CAPACITY_PROPERTY = "de.htw.ds.board.cache.capacity";
+	static private final String CACHE_PATH_PROPERTY = "de.htw.ds.board.cache.path";
+	static private final int DEFAULT_CACHE_CAPACITY = 4096;
+	static private final String TRANSPOSITION_CAPACITY_PROPERTY = "de.htw.ds.board.transposition.capacity";
+	static private final String TRANSPOSITION_PATH_PROPERTY = "de.htw.ds.board.transposition.path";
+	static private final int DEFAULT_TRANSPOSITION_CAPACITY = 1 << 20;
 
 	private final JComponent contentPane;
 	private final Map<ChessPieceType,Image> whitePieceImages;
@@ -131,12 +146,80 @@ public final class ChessClient {
 	}
 
 
+	/**
+	 * Returns a new analysis cache with the capacity given by system property
+	 * {@value #CACHE_CAPACITY_PROPERTY}. If system property {@value #CACHE_PATH_PROPERTY} is set,
+	 * the cache is preloaded from the given file if it exists, and saved to it upon VM shutdown.
+	 * @return the analysis cache, or {@code null} if the given capacity is zero
+	 * @throws NumberFormatException if the given capacity is not a number
+	 * @throws IllegalArgumentException if the given capacity is negative
+	 */
+	static private AnalysisCache newAnalysisCache () {
+		final int capacity = Integer.parseInt(System.getProperty(CACHE_CAPACITY_PROPERTY, Integer.toString(DEFAULT_CACHE_CAPACITY)));
+		if (capacity == 0) return null;
+		final AnalysisCache analysisCache = new AnalysisCache(capacity);
+
+		final String pathText = System.getProperty(CACHE_PATH_PROPERTY);
+		if (pathText != null) {
+			final Path path = Paths.get(pathText);
+			if (Files.isReadable(path)) {
+				try {
+					analysisCache.load(path);
+				} catch (final IOException exception) {
+					Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+				}
+			}
+
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					analysisCache.save(path);
+				} catch (final IOException exception) {
+					Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+				}
+			}));
+		}
+
+		return analysisCache;
+	}
+
+
+	/**
+	 * Returns a new transposition store with the slot count given by system property
+	 * {@value #TRANSPOSITION_CAPACITY_PROPERTY}. If system property
+	 * {@value #TRANSPOSITION_PATH_PROPERTY} is set, the store is backed by the given file, which
+	 * may be shared with other processes, and whose content persists across runs.
+	 * @param required whether or not a store is required even if neither system property is set,
+	 *        for example in order to retain transposition data between the moves of a game
+	 * @return the transposition store, or {@code null} if neither system property is set and the
+	 *         store is not required, or if the given file cannot be opened
+	 * @throws NumberFormatException if the given capacity is not a number
+	 * @throws IllegalArgumentException if the given capacity is negative
+	 */
+	static private TranspositionStore newTranspositionStore (final boolean required) {
+		final String capacityText = System.getProperty(TRANSPOSITION_CAPACITY_PROPERTY);
+		final String pathText = System.getProperty(TRANSPOSITION_PATH_PROPERTY);
+		final int capacity = capacityText == null ? DEFAULT_TRANSPOSITION_CAPACITY : Integer.parseInt(capacityText);
+		if (pathText == null) return capacityText == null & !required ? null : new TranspositionStore(capacity);
+
+		try {
+			return new TranspositionStore(Paths.get(pathText), capacity);
+		} catch (final IOException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+			return null;
+		}
+	}
+
+
 	/**
 	 * Client for playing chess as the white player on a given chess board, featuring plugable chess
 	 * board implementations.
 	 * @param args the mode (USER_INTERFACE or ANALYZE), the chess board class name, the analyzer
 	 *        search depth (5 is a good value to start with), and then either an X-FEN like board
-	 *        representation, or a rank count followed by a file count; all arguments are optional
+	 *        representation, or a rank count followed by a file count; all arguments are optional.
+	 *        The analysis cache may be configured using system properties
+	 *        {@value #CACHE_CAPACITY_PROPERTY} and {@value #CACHE_PATH_PROPERTY}, the transposition
+	 *        store using {@value #TRANSPOSITION_CAPACITY_PROPERTY} and
+	 *        {@value #TRANSPOSITION_PATH_PROPERTY}
 	 * @throws IllegalArgumentException if any of the given class names is illegal, if the given
 	 *         search depth is negative, if the given rank or file count is negative, or if the
 	 *         given X-FEN board representation is invalid
@@ -153,6 +236,14 @@ public final class ChessClient {
 		final int searchDepth = args.length <= 2 ? 5 : Integer.parseInt(args[2]);
 		final String[] boardArguments = args.length <= 3 ? new String[0] : Arrays.copyOfRange(args, 3, args.length);
 		final Board<ChessPieceType> board = newBoard(boardClassName, boardArguments);
+		final AnalysisCache analysisCache = newAnalysisCache();
+		final TranspositionStore transpositionStore = newTranspositionStore(mode == Mode.USER_INTERFACE);
+		final SearchStatistics searchStatistics = new SearchStatistics();
+		if (board instanceof AbstractBoard) {
+			((AbstractBoard<?>) board).setAnalysisCache(analysisCache);
+			((AbstractBoard<?>) board).setTranspositionStore(transpositionStore);
+			((AbstractBoard<?>) board).setSearchStatistics(searchStatistics);
+		}
 
 		switch (mode) {
 			case USER_INTERFACE: {
@@ -178,6 +269,8 @@ public final class ChessClient {
 				System.out.format("Predicted minimax move sequence: %s\n", Arrays.deepToString(prediction.getMoveSequence().toArray()));
 				System.out.format("Predicted board rating is %s.\n", prediction.getRating());
 				System.out.format("Analysis time was %sms.\n", after - before);
+				if (analysisCache != null) System.out.format("Analysis cache has %s.\n", analysisCache);
+				System.out.format("Search statistics:\n%s\n", searchStatistics);
 				break;
 			}
 		}
@@ -0,0 +1,86 @@
+package de.htw.ds.board.chess;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import de.htw.ds.board.search.ExecutorType;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Benchmark comparing the executor types available for parallel analysis, see
+ * {@linkplain ExecutorType}. Each executor type analyzes the same positions using
+ * {@linkplain ChessTableBoard2} boards, after a warm-up round that is not measured; the result is
+ * reported as total analysis time and node rate per executor type. Note that this class is
+ * declared final because it provides an application entry point, and is therefore not supposed to
+ * be extended by subclassing.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class ChessExecutorBenchmark {
+	static private final int PROCESSOR_COUNT = Runtime.getRuntime().availableProcessors();
+	static private final String[] POSITIONS = {
+		"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+	};
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private ChessExecutorBenchmark () {}
+
+
+	/**
+	 * Application entry point. The given arguments are optionally the search depth (default is
+	 * 5), the number of threads per pooled executor (default is the number of processors), and
+	 * the number of measured rounds (default is 3).
+	 * @param args the runtime arguments
+	 * @throws NumberFormatException if any of the given numbers is not a number
+	 * @throws IllegalArgumentException if any of the given numbers is negative
+	 * @throws InterruptedException if the benchmark is interrupted by another thread
+	 */
+	static public void main (final String[] args) throws InterruptedException {
+		final int depth = args.length <= 0 ? 5 : Integer.parseInt(args[0]);
+		final int threadCount = args.length <= 1 ? PROCESSOR_COUNT : Integer.parseInt(args[1]);
+		final int roundCount = args.length <= 2 ? 3 : Integer.parseInt(args[2]);
+		if (depth <= 0 | threadCount <= 0 | roundCount <= 0) throw new IllegalArgumentException();
+
+		System.out.format("Analyzing %d positions at depth %d, using %d threads per pooled executor.\n", POSITIONS.length, depth, threadCount);
+		for (final ExecutorType executorType : ExecutorType.values()) {
+			final ExecutorService executor = executorType.newExecutor(threadCount);
+			try {
+				analyze(executor, threadCount, depth, new LongAdder());
+
+				final LongAdder nodeCounter = new LongAdder();
+				final long before = System.nanoTime();
+				for (int round = 0; round < roundCount; ++round) {
+					analyze(executor, threadCount, depth, nodeCounter);
+				}
+				final long elapsed = System.nanoTime() - before;
+
+				System.out.format("%s: %.1fms per round, %.0f nodes/s\n", executorType, 1E-6 * elapsed / roundCount, 1E9 * nodeCounter.sum() / elapsed);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+
+	/**
+	 * Analyzes all positions once, using fresh boards that share the given executor service.
+	 * @param executor the executor service
+	 * @param threadCount the number of threads available within the given executor service
+	 * @param depth the search depth in half moves
+	 * @param nodeCounter the node counter
+	 * @throws InterruptedException if the analysis is interrupted by another thread
+	 */
+	static private void analyze (final ExecutorService executor, final int threadCount, final int depth, final LongAdder nodeCounter) throws InterruptedException {
+		for (final String position : POSITIONS) {
+			final ChessTableBoard2 board = ChessXfenCodec.singleton().decode(ChessTableBoard2.class, position);
+			board.setExecutor(executor, threadCount);
+			board.setNodeCounter(nodeCounter);
+			board.analyze(depth);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package de.htw.ds.board.chess;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.AbstractBoard;
+import de.htw.ds.board.Board;
+import de.htw.ds.board.Piece;
+import de.htw.ds.board.Prediction;
+import de.sb.java.Threads;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Self-play match runner for chess engine regression testing. Plays a given number of games
+ * between two engines concurrently, each engine being defined by a chess board class, a search
+ * depth, and optionally a time budget per move. Games start from openings that are either read
+ * from a file of X-FEN states, or generated by random moves; each opening is played twice with
+ * colors reversed. The match result is reported as score, Elo difference including it's 95%
+ * confidence interval, and average node rate per engine. Note that this class is declared final
+ * because it provides an application entry point, and is therefore not supposed to be extended by
+ * subclassing.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class ChessMatchRunner {
+	static private final int PROCESSOR_COUNT = Runtime.getRuntime().availableProcessors();
+	static private final String DEFAULT_PACKAGE = ChessMatchRunner.class.getPackage().getName();
+	static private final int RANDOM_OPENING_MOVE_COUNT = 6;
+	static private final int MAX_MOVE_COUNT = 300;
+	static private final double CONFIDENCE_FACTOR = 1.96;
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private ChessMatchRunner () {}
+
+
+	/**
+	 * Application entry point. The given arguments are expected to be the number of games, and two
+	 * engine definitions of the form {@code class:depth[:time]}, where the time budget is given in
+	 * milliseconds per move, and the class name may omit this class's package. Optionally followed
+	 * by the number of concurrent games (default is the number of processors), an opening file
+	 * containing one X-FEN state per line (or "-" for random openings), and a directory to store
+	 * the X-FEN move logs of all games in.
+	 * @param args the runtime arguments
+	 * @throws NumberFormatException if any of the given numbers is not a number
+	 * @throws IllegalArgumentException if any of the given engine definitions is invalid
+	 * @throws IOException if there is an I/O related problem
+	 * @throws InterruptedException if the match is interrupted by another thread
+	 */
+	static public void main (final String[] args) throws IOException, InterruptedException {
+		final int gameCount = Integer.parseInt(args[0]);
+		final Engine[] engines = { new Engine(args[1]), new Engine(args[2]) };
+		final int threadCount = args.length <= 3 ? PROCESSOR_COUNT : Integer.parseInt(args[3]);
+		final List<String> openings = args.length <= 4 || "-".equals(args[4]) ? null : readOpenings(Paths.get(args[4]));
+		final Path logDirectory = args.length <= 5 ? null : Paths.get(args[5]);
+		if (gameCount <= 0 | threadCount <= 0) throw new IllegalArgumentException();
+		if (logDirectory != null) Files.createDirectories(logDirectory);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount, Threads.newDaemonThreadFactory());
+		try {
+			final List<Future<Double>> futures = new ArrayList<>(gameCount);
+			for (int gameIndex = 0; gameIndex < gameCount; ++gameIndex) {
+				final int pairIndex = gameIndex >> 1;
+				final String opening = openings == null ? null : openings.get(pairIndex % openings.size());
+				final Engine whiteEngine = engines[gameIndex & 1], blackEngine = engines[1 - (gameIndex & 1)];
+				final Path logPath = logDirectory == null ? null : logDirectory.resolve(String.format("game-%04d.log", gameIndex));
+				futures.add(executor.submit(() -> playGame(whiteEngine, blackEngine, opening, pairIndex, logPath)));
+			}
+
+			int wins = 0, draws = 0, losses = 0;
+			for (int gameIndex = 0; gameIndex < gameCount; ++gameIndex) {
+				final double whiteScore;
+				try {
+					whiteScore = futures.get(gameIndex).get();
+				} catch (final ExecutionException exception) {
+					final Throwable cause = exception.getCause();
+					if (cause instanceof Error) throw (Error) cause;
+					if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+					if (cause instanceof IOException) throw (IOException) cause;
+					if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+					throw new AssertionError();
+				}
+
+				final double score = (gameIndex & 1) == 0 ? whiteScore : 1 - whiteScore;
+				if (score == 1) {
+					wins += 1;
+				} else if (score == 0) {
+					losses += 1;
+				} else {
+					draws += 1;
+				}
+				System.out.format("Game %d: %s (white) vs %s (black) scores %.1f\n", gameIndex, ((gameIndex & 1) == 0 ? engines[0] : engines[1]), ((gameIndex & 1) == 0 ? engines[1] : engines[0]), whiteScore);
+			}
+
+			report(engines, wins, draws, losses);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Plays a single game between the given engines.
+	 * @param whiteEngine the engine playing white
+	 * @param blackEngine the engine playing black
+	 * @param opening the X-FEN state to start from, or {@code null} for a random opening
+	 * @param openingSeed the seed used to generate random openings
+	 * @param logPath the path of the game log, or {@code null} for none
+	 * @return the score of white, i.e. {@code 1} for a win, {@code 0.5} for a draw, and {@code 0}
+	 *         for a loss
+	 * @throws IOException if there is an I/O related problem
+	 * @throws InterruptedException if the game is interrupted by another thread
+	 */
+	static private double playGame (final Engine whiteEngine, final Engine blackEngine, final String opening, final long openingSeed, final Path logPath) throws IOException, InterruptedException {
+		final String startState = opening == null ? randomOpening(openingSeed) : opening;
+		final ChessBoard whiteBoard = whiteEngine.newBoard(startState);
+		final ChessBoard blackBoard = blackEngine.newBoard(startState);
+
+		try (BufferedWriter logWriter = logPath == null ? null : Files.newBufferedWriter(logPath, StandardCharsets.UTF_8)) {
+			if (logWriter != null) logWriter.write(String.format("[White %s]\n[Black %s]\n%s\n", whiteEngine, blackEngine, startState));
+
+			double whiteScore = 0.5;
+			for (int moveCount = 0; moveCount < MAX_MOVE_COUNT; ++moveCount) {
+				final boolean whiteActive = whiteBoard.isWhiteActive();
+				final Engine engine = whiteActive ? whiteEngine : blackEngine;
+				final Prediction prediction = engine.analyze(whiteActive ? whiteBoard : blackBoard);
+				final AbsoluteMotion[] move = prediction.getMoveSequence().peekFirst();
+				if (move == null) {
+					if (Math.abs(prediction.getRating()) == Integer.MAX_VALUE) whiteScore = prediction.getRating() > 0 ? 1 : 0;
+					break;
+				}
+
+				whiteBoard.move(move);
+				blackBoard.move(move);
+				if (logWriter != null) logWriter.write(String.format("%s %s\n", moveText(move, whiteBoard.getFileCount()), whiteBoard.getXfenState()));
+				if (whiteBoard.getRepetitionCount() >= 3 | whiteBoard.getReversibleMoveClock() >= 100) break;
+			}
+
+			if (logWriter != null) logWriter.write(whiteScore == 1 ? "1-0\n" : (whiteScore == 0 ? "0-1\n" : "1/2-1/2\n"));
+			return whiteScore;
+		}
+	}
+
+
+	/**
+	 * Returns the X-FEN state of a standard board after a number of random legal moves.
+	 * @param seed the random seed
+	 * @return the X-FEN state
+	 */
+	static private String randomOpening (final long seed) {
+		final Random random = new Random(seed);
+		final ChessBoard board = ChessBoard.newInstance(ChessTableBoard.class, (byte) 8, (byte) 8, (short) 0, (short) 0);
+		board.setXfenState(null);
+
+		for (int moveCount = 0; moveCount < RANDOM_OPENING_MOVE_COUNT; ++moveCount) {
+			final List<AbsoluteMotion[]> legalMoves = legalMoves(board);
+			if (legalMoves.isEmpty()) break;
+			board.move(legalMoves.get(random.nextInt(legalMoves.size())));
+		}
+		return board.getXfenState();
+	}
+
+
+	/**
+	 * Returns the legal moves of the given board, i.e. the candidate moves that do not leave the
+	 * active king threatened.
+	 * @param board the board
+	 * @return the legal moves
+	 */
+	static private List<AbsoluteMotion[]> legalMoves (final ChessBoard board) {
+		final boolean whiteActive = board.isWhiteActive();
+		final Collection<AbsoluteMotion[]> candidateMoves = board.getCandidateMoves();
+		final List<AbsoluteMotion[]> legalMoves = new ArrayList<>(candidateMoves.size());
+		for (final AbsoluteMotion[] move : candidateMoves) {
+			final ChessBoard clonedBoard = (ChessBoard) board.clone();
+			clonedBoard.move(move);
+			final Piece<ChessPieceType> king = clonedBoard.getKing(whiteActive);
+			if (king != null && !clonedBoard.isThreatened(king.getRank(), king.getFile(), !whiteActive)) legalMoves.add(move);
+		}
+		return legalMoves;
+	}
+
+
+	/**
+	 * Reads the openings stored within the given file, one X-FEN state per line. Empty lines and
+	 * lines starting with '#' are ignored.
+	 * @param path the file path
+	 * @return the X-FEN states
+	 * @throws IOException if there is an I/O related problem, or if the file contains no openings
+	 */
+	static private List<String> readOpenings (final Path path) throws IOException {
+		final List<String> openings = new ArrayList<>();
+		for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+			final String opening = line.trim();
+			if (!opening.isEmpty() && !opening.startsWith("#")) openings.add(opening);
+		}
+		if (openings.isEmpty()) throw new IOException("no openings in " + path);
+		return openings;
+	}
+
+
+	/**
+	 * Prints the match result from the perspective of the first engine.
+	 * @param engines the engines
+	 * @param wins the number of games won by the first engine
+	 * @param draws the number of drawn games
+	 * @param losses the number of games lost by the first engine
+	 */
+	static private void report (final Engine[] engines, final int wins, final int draws, final int losses) {
+		final int gameCount = wins + draws + losses;
+		final double score = (wins + 0.5 * draws) / gameCount;
+		final double variance = (wins * square(1 - score) + draws * square(0.5 - score) + losses * square(0 - score)) / gameCount;
+		final double margin = CONFIDENCE_FACTOR * Math.sqrt(variance / gameCount);
+
+		System.out.format("\n%s vs %s: +%d =%d -%d, score %.1f/%d (%.1f%%)\n", engines[0], engines[1], wins, draws, losses, wins + 0.5 * draws, gameCount, 100 * score);
+		System.out.format("Elo difference %+.1f, 95%% confidence interval [%+.1f, %+.1f]\n", eloDifference(score), eloDifference(score - margin), eloDifference(score + margin));
+		for (final Engine engine : engines) {
+			System.out.format("%s: %.0f nodes/s\n", engine, engine.getNodesPerSecond());
+		}
+	}
+
+
+	/**
+	 * Returns the Elo difference corresponding to the given expected score.
+	 * @param score the expected score
+	 * @return the Elo difference, or an infinite value if the score is outside range {@code ]0, 1[}
+	 */
+	static private double eloDifference (final double score) {
+		if (score <= 0) return Double.NEGATIVE_INFINITY;
+		if (score >= 1) return Double.POSITIVE_INFINITY;
+		return 400 * Math.log10(score / (1 - score));
+	}
+
+
+	/**
+	 * Returns the square of the given value.
+	 * @param value the value
+	 * @return the square
+	 */
+	static private double square (final double value) {
+		return value * value;
+	}
+
+
+	/**
+	 * Returns a coordinate text representation of the given move.
+	 * @param move the move
+	 * @param fileCount the number of files on a board
+	 * @return the text representation
+	 */
+	static private String moveText (final AbsoluteMotion[] move, final byte fileCount) {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(Board.coordinatesToAlias(move[0].getSourceRank(), move[0].getSourceFile(), fileCount));
+		for (final AbsoluteMotion motion : move) {
+			builder.append('-');
+			builder.append(Board.coordinatesToAlias(motion.getSinkRank(), motion.getSinkFile(), fileCount));
+		}
+		return builder.toString();
+	}
+
+
+
+	/**
+	 * Instances of this inner class model engines, i.e. chess board classes combined with a search
+	 * configuration. Each engine accumulates the nodes visited and the time spent analyzing across
+	 * all of it's games.
+	 */
+	static private final class Engine {
+		private final String definition;
+		private final Class<? extends ChessBoard> boardClass;
+		private final int depth;
+		private final long timeBudget;
+		private final LongAdder nodeCount;
+		private final LongAdder searchNanos;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param definition the engine definition of the form {@code class:depth[:time]}
+		 * @throws NullPointerException if the given definition is {@code null}
+		 * @throws NumberFormatException if the given depth or time is not a number
+		 * @throws IllegalArgumentException if the given definition is invalid
+		 */
+		public Engine (final String definition) {
+			final String[] fragments = definition.split(":");
+			if (fragments.length < 2 | fragments.length > 3) throw new IllegalArgumentException();
+
+			final String className = fragments[0].contains(".") ? fragments[0] : DEFAULT_PACKAGE + "." + fragments[0];
+			try {
+				this.boardClass = Class.forName(className, true, Thread.currentThread().getContextClassLoader()).asSubclass(ChessBoard.class);
+			} catch (final ClassNotFoundException | ClassCastException exception) {
+				throw new IllegalArgumentException(exception);
+			}
+
+			this.definition = definition;
+			this.depth = Integer.parseInt(fragments[1]);
+			this.timeBudget = fragments.length == 2 ? 0 : Long.parseLong(fragments[2]);
+			this.nodeCount = new LongAdder();
+			this.searchNanos = new LongAdder();
+			if (this.depth <= 0 | this.timeBudget < 0) throw new IllegalArgumentException();
+		}
+
+
+		/**
+		 * Returns a new board of this engine's class, set to the given X-FEN state.
+		 * @param xfenState the X-FEN state
+		 * @return the board
+		 * @throws IllegalArgumentException if the given state is invalid
+		 */
+		public ChessBoard newBoard (final String xfenState) {
+			final ChessBoard board = ChessXfenCodec.singleton().decode(this.boardClass, xfenState);
+			if (board instanceof AbstractBoard) ((AbstractBoard<?>) board).setNodeCounter(this.nodeCount);
+			return board;
+		}
+
+
+		/**
+		 * Analyzes the given board using this engine's search configuration. If a time budget is
+		 * configured, the analysis is deepened iteratively until either the search depth is reached
+		 * or the time budget is exhausted, and the deepest completed prediction is returned.
+		 * @param board the board
+		 * @return the prediction
+		 * @throws InterruptedException if the analysis is interrupted by another thread
+		 */
+		public Prediction analyze (final ChessBoard board) throws InterruptedException {
+			final long before = System.nanoTime();
+			try {
+				return board.analyze(this.depth, this.timeBudget);
+			} finally {
+				this.searchNanos.add(System.nanoTime() - before);
+			}
+		}
+
+
+		/**
+		 * Returns the average number of nodes visited per second of analysis.
+		 * @return the node rate
+		 */
+		public double getNodesPerSecond () {
+			final long searchNanos = this.searchNanos.sum();
+			return searchNanos == 0 ? 0 : 1E9 * this.nodeCount.sum() / searchNanos;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString () {
+			return this.definition;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package de.htw.ds.board.chess;
+
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.Piece;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model flattened chess piece motion tables for a given board size. The
+ * motions of all pre-cached pieces are stored within primitive arrays, organized in three levels:
+ * <ul>
+ * <li>pieces, indexed by color, type and position, each referring to a range of rays</li>
+ * <li>rays, i.e. directed motion sequences, each referring to a range of motions</li>
+ * <li>motions, each consisting of a sink position and property flags</li>
+ * </ul>
+ * This allows move generation to iterate piece motions without following object references,
+ * while the original motion objects remain accessible by motion and ray index once a move has
+ * been chosen. Note that instances of this class are immutable, and therefore thread safe.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class ChessMotionTable {
+	static private final int COLOR_COUNT = 2;
+	static private final int TYPE_COUNT = ChessPieceType.values().length;
+
+	private final short fieldCount;
+	private final int[] pieceRayOffsets;
+	private final int[] rayMotionOffsets;
+	private final short[] motionSinks;
+	private final byte[] motionFlags;
+	private final AbsoluteMotion[] motions;
+	private final AbsoluteMotion[][] rays;
+
+
+	/**
+	 * Creates a new instance from the given piece cache.
+	 * @param pieceCache the piece cache, see {@linkplain ChessPiece#values(byte, byte)}
+	 * @param fieldCount the number of fields on a board
+	 * @throws NullPointerException if the given piece cache is {@code null}
+	 */
+	ChessMotionTable (final Piece<ChessPieceType>[][][] pieceCache, final short fieldCount) {
+		final int pieceCount = COLOR_COUNT * TYPE_COUNT * fieldCount;
+		int rayCount = 0, motionCount = 0;
+		for (final Piece<ChessPieceType>[][] colorCache : pieceCache) {
+			for (final Piece<ChessPieceType>[] typeCache : colorCache) {
+				for (final Piece<ChessPieceType> piece : typeCache) {
+					rayCount += piece.getMotions().length;
+					for (final AbsoluteMotion[] ray : piece.getMotions()) {
+						motionCount += ray.length;
+					}
+				}
+			}
+		}
+
+		this.fieldCount = fieldCount;
+		this.pieceRayOffsets = new int[pieceCount + 1];
+		this.rayMotionOffsets = new int[rayCount + 1];
+		this.motionSinks = new short[motionCount];
+		this.motionFlags = new byte[motionCount];
+		this.motions = new AbsoluteMotion[motionCount];
+		this.rays = new AbsoluteMotion[rayCount][];
+
+		int pieceIndex = 0, rayIndex = 0, motionIndex = 0;
+		for (final Piece<ChessPieceType>[][] colorCache : pieceCache) {
+			for (final Piece<ChessPieceType>[] typeCache : colorCache) {
+				for (final Piece<ChessPieceType> piece : typeCache) {
+					this.pieceRayOffsets[pieceIndex++] = rayIndex;
+					for (final AbsoluteMotion[] ray : piece.getMotions()) {
+						this.rays[rayIndex] = ray;
+						this.rayMotionOffsets[rayIndex++] = motionIndex;
+						for (final AbsoluteMotion motion : ray) {
+							this.motionSinks[motionIndex] = (short) (motion.getSinkRank() * piece.getFileCount() + motion.getSinkFile());
+							this.motionFlags[motionIndex] = motion.getFlags();
+							this.motions[motionIndex++] = motion;
+						}
+					}
+				}
+			}
+		}
+		this.pieceRayOffsets[pieceIndex] = rayIndex;
+		this.rayMotionOffsets[rayIndex] = motionIndex;
+	}
+
+
+	/**
+	 * Returns the piece index for the given color, type and position.
+	 * @param white {@code true} for white, {@code false} for black
+	 * @param typeOrdinal the piece type ordinal
+	 * @param position the position
+	 * @return the piece index
+	 */
+	public int pieceIndex (final boolean white, final int typeOrdinal, final int position) {
+		return ((white ? 0 : TYPE_COUNT) + typeOrdinal) * this.fieldCount + position;
+	}
+
+
+	/**
+	 * Returns the piece index for the given piece.
+	 * @param piece the piece
+	 * @return the piece index
+	 * @throws NullPointerException if the given piece is {@code null}
+	 */
+	public int pieceIndex (final Piece<ChessPieceType> piece) {
+		return this.pieceIndex(piece.isWhite(), piece.getType().ordinal(), piece.getPosition());
+	}
+
+
+	/**
+	 * Returns the index of the first ray of the given piece.
+	 * @param pieceIndex the piece index
+	 * @return the inclusive ray begin index
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public int rayBegin (final int pieceIndex) {
+		return this.pieceRayOffsets[pieceIndex];
+	}
+
+
+	/**
+	 * Returns the index following the last ray of the given piece.
+	 * @param pieceIndex the piece index
+	 * @return the exclusive ray end index
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public int rayEnd (final int pieceIndex) {
+		return this.pieceRayOffsets[pieceIndex + 1];
+	}
+
+
+	/**
+	 * Returns the index of the first motion of the given ray.
+	 * @param rayIndex the ray index
+	 * @return the inclusive motion begin index
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public int motionBegin (final int rayIndex) {
+		return this.rayMotionOffsets[rayIndex];
+	}
+
+
+	/**
+	 * Returns the index following the last motion of the given ray.
+	 * @param rayIndex the ray index
+	 * @return the exclusive motion end index
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public int motionEnd (final int rayIndex) {
+		return this.rayMotionOffsets[rayIndex + 1];
+	}
+
+
+	/**
+	 * Returns the sink position of the given motion.
+	 * @param motionIndex the motion index
+	 * @return the sink position
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public int sink (final int motionIndex) {
+		return this.motionSinks[motionIndex];
+	}
+
+
+	/**
+	 * Returns the property flags of the given motion, see {@linkplain de.htw.ds.board.Motion}.
+	 * @param motionIndex the motion index
+	 * @return the motion flags
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public byte flags (final int motionIndex) {
+		return this.motionFlags[motionIndex];
+	}
+
+
+	/**
+	 * Returns the motion object of the given motion.
+	 * @param motionIndex the motion index
+	 * @return the motion
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public AbsoluteMotion motion (final int motionIndex) {
+		return this.motions[motionIndex];
+	}
+
+
+	/**
+	 * Returns the motion objects of the given ray. Note that the result is shared, and must
+	 * therefore not be altered.
+	 * @param rayIndex the ray index
+	 * @return the ray's motions
+	 * @throws ArrayIndexOutOfBoundsException if the given index is out of range
+	 */
+	public AbsoluteMotion[] ray (final int rayIndex) {
+		return this.rays[rayIndex];
+	}
+
+
+	/**
+	 * Returns the number of fields on a board.
+	 * @return the field count
+	 */
+	public short getFieldCount () {
+		return this.fieldCount;
+	}
+}
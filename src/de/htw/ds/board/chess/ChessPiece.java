@@ -26,6 +26,8 @@ public final class ChessPiece extends AbstractPiece<ChessPieceType> {
 	static private final int COORDINATE_BIT_LENGTH = Byte.SIZE - 1;
 	@SuppressWarnings("unchecked")
 	static private final Piece<ChessPieceType>[][][][] PIECE_CACHE = new Piece[1 << (COORDINATE_BIT_LENGTH << 1)][][][];
+	static private final ChessMotionTable[] MOTION_TABLE_CACHE = new ChessMotionTable[1 << (COORDINATE_BIT_LENGTH << 1)];
+	static private final ChessAttackTable[] ATTACK_TABLE_CACHE = new ChessAttackTable[1 << (COORDINATE_BIT_LENGTH << 1)];
 
 
 	/**
@@ -149,7 +151,8 @@ public final class ChessPiece extends AbstractPiece<ChessPieceType> {
 
 
 	/**
-	 * Initializes the piece cache for the given rank and file count, if necessary.
+	 * Initializes the piece cache and motion table for the given rank and file count, if
+	 * necessary.
 	 * @param rankCount the number of ranks on the piece's boards
 	 * @param fileCount the number of files on the piece's boards
 	 * @throws IllegalArgumentException if the given rank or file count is negative
@@ -161,18 +164,22 @@ public final class ChessPiece extends AbstractPiece<ChessPieceType> {
 		final int boardOrdinal = boardOrdinal(rankCount, fileCount);
 		synchronized (PIECE_CACHE) {
 			if (PIECE_CACHE[boardOrdinal] == null) {
-				final int fieldCount = Board.fieldCount(rankCount, fileCount);
-				PIECE_CACHE[boardOrdinal] = new Piece[COLOR_COUNT][ChessPieceType.values().length][fieldCount];
+				final short fieldCount = (short) Board.fieldCount(rankCount, fileCount);
+				final Piece<ChessPieceType>[][][] pieceCache = new Piece[COLOR_COUNT][ChessPieceType.values().length][fieldCount];
 
 				for (final ChessPieceType type : ChessPieceType.values()) {
 					for (byte rank = 0; rank < rankCount; ++rank) {
 						for (byte file = 0; file < fileCount; ++file) {
 							final int position = Board.coordinatesToPosition(rank, file, fileCount);
-							PIECE_CACHE[boardOrdinal][0][type.ordinal()][position] = new ChessPiece(type, true, rank, file, rankCount, fileCount);
-							PIECE_CACHE[boardOrdinal][1][type.ordinal()][position] = new ChessPiece(type, false, rank, file, rankCount, fileCount);
+							pieceCache[0][type.ordinal()][position] = new ChessPiece(type, true, rank, file, rankCount, fileCount);
+							pieceCache[1][type.ordinal()][position] = new ChessPiece(type, false, rank, file, rankCount, fileCount);
 						}
 					}
 				}
+
+				if (fieldCount <= ChessAttackTable.MAX_FIELD_COUNT) ATTACK_TABLE_CACHE[boardOrdinal] = new ChessAttackTable(rankCount, fileCount);
+				MOTION_TABLE_CACHE[boardOrdinal] = new ChessMotionTable(pieceCache, fieldCount);
+				PIECE_CACHE[boardOrdinal] = pieceCache;
 			}
 		}
 	}
@@ -200,6 +207,43 @@ public final class ChessPiece extends AbstractPiece<ChessPieceType> {
 	}
 
 
+	/**
+	 * Returns the flattened motion table for the given rank and file count, see
+	 * {@linkplain ChessMotionTable}. Note that the piece cache of the given dimensions is
+	 * initialized if necessary.
+	 * @param rankCount the number of ranks on the piece's boards
+	 * @param fileCount the number of files on the piece's boards
+	 * @return the motion table
+	 * @throws IllegalArgumentException if the given rankCount or fileCount is negative
+	 */
+	static public ChessMotionTable motionTable (final byte rankCount, final byte fileCount) {
+		if (rankCount <= 0 | fileCount <= 0) throw new IllegalArgumentException();
+
+		final int boardOrdinal = boardOrdinal(rankCount, fileCount);
+		if (MOTION_TABLE_CACHE[boardOrdinal] == null) initializePieceCache(rankCount, fileCount);
+		return MOTION_TABLE_CACHE[boardOrdinal];
+	}
+
+
+	/**
+	 * Returns the attack table for the given rank and file count, see
+	 * {@linkplain ChessAttackTable}. Note that the piece cache of the given dimensions is
+	 * initialized if necessary.
+	 * @param rankCount the number of ranks on the piece's boards
+	 * @param fileCount the number of files on the piece's boards
+	 * @return the attack table, or {@code null} if the resulting field count exceeds
+	 *         {@value ChessAttackTable#MAX_FIELD_COUNT}
+	 * @throws IllegalArgumentException if the given rankCount or fileCount is negative
+	 */
+	static public ChessAttackTable attackTable (final byte rankCount, final byte fileCount) {
+		if (rankCount <= 0 | fileCount <= 0) throw new IllegalArgumentException();
+
+		final int boardOrdinal = boardOrdinal(rankCount, fileCount);
+		if (MOTION_TABLE_CACHE[boardOrdinal] == null) initializePieceCache(rankCount, fileCount);
+		return ATTACK_TABLE_CACHE[boardOrdinal];
+	}
+
+
 	/**
 	 * Returns a piece instance from the piece cache suitable for the given color, type and
 	 * position.
@@ -1,36 +1,57 @@
 package de.htw.ds.board.chess;
 
+import static de.htw.ds.board.chess.ChessPieceType.ARCHBISHOP;
 import static de.htw.ds.board.chess.ChessPieceType.BISHOP;
+import static de.htw.ds.board.chess.ChessPieceType.CHANCELLOR;
+import static de.htw.ds.board.chess.ChessPieceType.EMPRESS;
 import static de.htw.ds.board.chess.ChessPieceType.KING;
 import static de.htw.ds.board.chess.ChessPieceType.KNIGHT;
 import static de.htw.ds.board.chess.ChessPieceType.PAWN;
 import static de.htw.ds.board.chess.ChessPieceType.QUEEN;
 import static de.htw.ds.board.chess.ChessPieceType.ROOK;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 import de.htw.ds.board.AbsoluteMotion;
 import de.htw.ds.board.AbstractTableBoard;
 import de.htw.ds.board.Board;
+import de.htw.ds.board.Motion;
 import de.htw.ds.board.Piece;
 import de.htw.ds.board.Prediction;
+import de.htw.ds.board.search.AlphaBetaSearch;
 import de.sb.java.TypeMetadata;
 
 
 /**
  * Instances of this class model chess boards based on a single-dimensional table of pre-cached
- * positional pieces, with three extra fields for quick king and passing pawn lookup.
+ * positional pieces, with three extra fields for quick king and passing pawn lookup. Boards of up
+ * to {@value ChessAttackTable#MAX_FIELD_COUNT} fields additionally maintain 128-bit occupancy
+ * sets per color and piece type, which speed up threat detection, the iteration of the active
+ * pieces, and the generation of captures, see {@linkplain ChessAttackTable}. The board
+ * rating is maintained incrementally as the sum of the positional piece ratings, and complemented
+ * by pawn structure terms (doubled, isolated and passed pawns) looked up by a separately
+ * maintained pawn structure hash, and by a king safety term (pawn shield).
  */
 @TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
 public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implements ChessBoard {
+	static private final AlphaBetaSearch<ChessPieceType> SEARCH = new ChessAlphaBetaSearch();
+	static private final PawnStructureCache PAWN_STRUCTURE_CACHE = new PawnStructureCache(1 << 16);
+	static private final int DOUBLED_PAWN_PENALTY = 12;
+	static private final int ISOLATED_PAWN_PENALTY = 10;
+	static private final int PASSED_PAWN_BONUS = 60;
+	static private final int PAWN_SHIELD_BONUS = 8;
+	static private final int TYPE_COUNT = ChessPieceType.values().length;
+	static private final int WORD_COUNT = ChessAttackTable.WORD_COUNT;
 
 	private volatile byte castlingAbilities;
 	private volatile Piece<ChessPieceType> whiteKing;
 	private volatile Piece<ChessPieceType> blackKing;
 	private volatile Piece<ChessPieceType> passingPawn;
+	private volatile int pieceRating;
+	private volatile long pawnHash;
+	private volatile long[] occupancies;
 
 
 	/**
@@ -47,6 +68,8 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 	public ChessTableBoard (final byte rankCount, final byte fileCount, final short moveClock, final short reversibleMoveClock) {
 		super(rankCount, fileCount, moveClock, reversibleMoveClock);
 		if (this.rankCount < MIN_RANK_COUNT | this.fileCount < MIN_FILE_COUNT | this.reversibleMoveClock >= 100) throw new IllegalArgumentException();
+		this.pawnHash = this.calculatePawnHash();
+		this.occupancies = this.calculateOccupancies();
 	}
 
 
@@ -98,6 +121,9 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 			}
 		}
 		if (this.whiteKing == null | this.blackKing == null) throw new IllegalArgumentException();
+		this.pieceRating = super.getRating();
+		this.pawnHash = this.calculatePawnHash();
+		this.occupancies = this.calculateOccupancies();
 
 		if (castlingAbilities.length != 4) throw new IllegalArgumentException();
 		if (castlingAbilities[0]) {
@@ -131,6 +157,17 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ChessTableBoard clone () {
+		final ChessTableBoard clone = (ChessTableBoard) super.clone();
+		if (clone.occupancies != null) clone.occupancies = clone.occupancies.clone();
+		return clone;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -156,12 +193,123 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} This implementation additionally considers the castling abilities and the
+	 * passing pawn.
+	 */
+	@Override
+	public long getPositionHash () {
+		return super.getPositionHash() ^ castlingHashKey(this.castlingAbilities) ^ passingPawnHashKey(this.passingPawn);
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation complements the incrementally maintained sum of the
+	 * positional piece ratings with the pawn structure rating, and the king safety rating.
 	 */
 	public int getRating () {
 		if (this.whiteKing == null) return -Integer.MAX_VALUE;
 		if (this.blackKing == null) return +Integer.MAX_VALUE;
-		return super.getRating();
+
+		assert this.pieceRating == super.getRating();
+		return this.pieceRating + this.getPawnStructureRating() + this.getKingSafetyRating();
+	}
+
+
+	/**
+	 * Returns the pawn structure rating, which is looked up within the shared pawn structure cache
+	 * using this board's pawn structure hash, and only calculated if missing.
+	 * @return the pawn structure rating, in cents
+	 */
+	private int getPawnStructureRating () {
+		final long pawnHash = this.pawnHash;
+		int rating = PAWN_STRUCTURE_CACHE.get(pawnHash);
+		if (rating == PawnStructureCache.MISSING) {
+			rating = this.calculatePawnStructureRating();
+			PAWN_STRUCTURE_CACHE.put(pawnHash, rating);
+		}
+		return rating;
+	}
+
+
+	/**
+	 * Calculates the pawn structure rating, penalizing doubled and isolated pawns, and rewarding
+	 * passed pawns depending on their advancement.
+	 * @return the pawn structure rating, in cents
+	 */
+	private int calculatePawnStructureRating () {
+		final int[] whitePawnCounts = new int[this.fileCount], blackPawnCounts = new int[this.fileCount];
+		final int[] whiteMinimumRanks = new int[this.fileCount], blackMaximumRanks = new int[this.fileCount];
+		Arrays.fill(whiteMinimumRanks, Integer.MAX_VALUE);
+		Arrays.fill(blackMaximumRanks, Integer.MIN_VALUE);
+
+		for (final Piece<ChessPieceType> piece : this.pieces) {
+			if (piece == null || piece.getType() != PAWN) continue;
+			if (piece.isWhite()) {
+				whitePawnCounts[piece.getFile()] += 1;
+				whiteMinimumRanks[piece.getFile()] = Math.min(whiteMinimumRanks[piece.getFile()], piece.getRank());
+			} else {
+				blackPawnCounts[piece.getFile()] += 1;
+				blackMaximumRanks[piece.getFile()] = Math.max(blackMaximumRanks[piece.getFile()], piece.getRank());
+			}
+		}
+
+		int rating = 0;
+		for (int file = 0; file < this.fileCount; ++file) {
+			rating -= DOUBLED_PAWN_PENALTY * (Math.max(whitePawnCounts[file] - 1, 0) - Math.max(blackPawnCounts[file] - 1, 0));
+		}
+
+		for (final Piece<ChessPieceType> piece : this.pieces) {
+			if (piece == null || piece.getType() != PAWN) continue;
+			final int leftFile = Math.max(piece.getFile() - 1, 0), rightFile = Math.min(piece.getFile() + 1, this.fileCount - 1);
+			final int[] ownPawnCounts = piece.isWhite() ? whitePawnCounts : blackPawnCounts;
+
+			boolean isolated = true, passed = true;
+			for (int file = leftFile; file <= rightFile; ++file) {
+				if (file != piece.getFile() & ownPawnCounts[file] > 0) isolated = false;
+				if (piece.isWhite() ? blackMaximumRanks[file] > piece.getRank() : whiteMinimumRanks[file] < piece.getRank()) passed = false;
+			}
+
+			int pawnRating = isolated ? -ISOLATED_PAWN_PENALTY : 0;
+			if (passed) {
+				final int advancement = (piece.isWhite() ? piece.getRank() : this.rankCount - piece.getRank() - 1) - 1;
+				pawnRating += PASSED_PAWN_BONUS * advancement / (this.rankCount - 2);
+			}
+			rating += piece.isWhite() ? +pawnRating : -pawnRating;
+		}
+
+		return rating;
+	}
+
+
+	/**
+	 * Calculates the king safety rating, rewarding the own pawns directly in front of each king
+	 * while the latter remains within it's two base ranks.
+	 * @return the king safety rating, in cents
+	 */
+	private int getKingSafetyRating () {
+		return this.pawnShieldCount(this.whiteKing) * PAWN_SHIELD_BONUS - this.pawnShieldCount(this.blackKing) * PAWN_SHIELD_BONUS;
+	}
+
+
+	/**
+	 * Returns the number of own pawns directly in front of the given king, or {@code 0} if the
+	 * latter has left it's two base ranks.
+	 * @param king the king
+	 * @return the pawn shield count
+	 */
+	private int pawnShieldCount (final Piece<ChessPieceType> king) {
+		final int baseRank = king.isWhite() ? 0 : this.rankCount - 1;
+		final int direction = king.isWhite() ? +1 : -1;
+		if (king.getRank() != baseRank & king.getRank() != baseRank + direction) return 0;
+
+		final int shieldRank = king.getRank() + direction;
+		final int leftFile = Math.max(king.getFile() - 1, 0), rightFile = Math.min(king.getFile() + 1, this.fileCount - 1);
+		int count = 0;
+		for (int file = leftFile; file <= rightFile; ++file) {
+			final Piece<ChessPieceType> piece = this.pieces[shieldRank * this.fileCount + file];
+			if (piece != null && piece.getType() == PAWN & piece.isWhite() == king.isWhite()) count += 1;
+		}
+		return count;
 	}
 
 
@@ -169,51 +317,119 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 	 * {@inheritDoc}
 	 */
 	public List<AbsoluteMotion[]> getCandidateMoves () {
+		return this.collectCandidateMoves(true, true);
+	}
+
+
+	/**
+	 * {@inheritDoc} Note that en passant captures are considered capturing, while castlings are
+	 * considered quiet.
+	 */
+	@Override
+	public List<AbsoluteMotion[]> getCandidateMoves (final boolean captures) {
+		return this.collectCandidateMoves(captures, !captures);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 */
+	@Override
+	public List<AbsoluteMotion[]> getCandidateMoves (final byte rank, final byte file) {
+		final Piece<ChessPieceType> piece = this.getPiece(rank, file);
+		final List<AbsoluteMotion[]> candidateMoves = new ArrayList<>();
+		if (piece == null || piece.isWhite() != this.isWhiteActive() || this.getKing(piece.isWhite()) == null) return candidateMoves;
+
+		this.collectCandidateMoves(candidateMoves, piece, false, true, true);
+		return candidateMoves;
+	}
+
+
+	/**
+	 * Returns the candidate moves of the active side of the given kinds.
+	 * @param captures whether or not capturing moves shall be collected
+	 * @param quiets whether or not quiet moves shall be collected
+	 * @return the moves, each consisting of possibly multiple motions
+	 */
+	private List<AbsoluteMotion[]> collectCandidateMoves (final boolean captures, final boolean quiets) {
 		final boolean whiteActive = this.isWhiteActive();
-		final List<AbsoluteMotion[]> candidatesMoves = new ArrayList<>(256);
+		final List<AbsoluteMotion[]> candidatesMoves = new ArrayList<>(captures & quiets ? 256 : 64);
 		if (this.getKing(whiteActive) == null) return candidatesMoves;
 
 		boolean captureKingMode = false;
-		final Stream<Piece<ChessPieceType>> stream = this.pieceStream().filter((Piece<ChessPieceType> piece) -> piece.isWhite() == whiteActive);
-		for (final Piece<ChessPieceType> piece : (Iterable<Piece<ChessPieceType>>) () -> stream.iterator()) {
-			captureKingMode = this.collectCandidateMoves(candidatesMoves, piece, captureKingMode);
+		final long[] occupancies = this.occupancies;
+		if (occupancies == null) {
+			final Stream<Piece<ChessPieceType>> stream = this.pieceStream().filter((Piece<ChessPieceType> piece) -> piece.isWhite() == whiteActive);
+			for (final Piece<ChessPieceType> piece : (Iterable<Piece<ChessPieceType>>) () -> stream.iterator()) {
+				captureKingMode = this.collectCandidateMoves(candidatesMoves, piece, captureKingMode, captures, quiets);
+			}
+		} else {
+			// pieces whose motion map misses all opposing pieces cannot capture
+			final boolean filtered = !quiets & this.reversibleMoveClock <= 100;
+			final int activeOffset = occupancyOffset(whiteActive, TYPE_COUNT), passiveOffset = occupancyOffset(!whiteActive, TYPE_COUNT);
+			final long[] targets = { occupancies[passiveOffset], occupancies[passiveOffset + 1] };
+			final long[] pawnTargets = targets.clone();
+			if (this.passingPawn != null) pawnTargets[this.passingPawn.getPosition() >> 6] |= 1L << this.passingPawn.getPosition();
+
+			for (int word = 0; word < WORD_COUNT; ++word) {
+				for (long activeBits = occupancies[activeOffset + word]; activeBits != 0; activeBits &= activeBits - 1) {
+					final Piece<ChessPieceType> piece = this.pieces[(word << 6) + Long.numberOfTrailingZeros(activeBits)];
+					if (filtered && !intersects(piece.getMotionMap(), piece.getType() == PAWN ? pawnTargets : targets)) continue;
+					captureKingMode = this.collectCandidateMoves(candidatesMoves, piece, captureKingMode, captures, quiets);
+				}
+			}
 		}
+
+		// if the opposing king can be captured, all other moves are void
+		if (captureKingMode & !captures) candidatesMoves.clear();
 		return candidatesMoves;
 	}
 
 
 	/**
-	 * Collects the candidate moves of the given piece into the given collection. Returns
+	 * Collects the candidate moves of the given piece and kinds into the given collection. Returns
 	 * {@code true} if further candidate moves must capture the opposing king, {@code false}
 	 * otherwise.
 	 * @param moves the collected moves, each consisting of possibly multiple motions
 	 * @param activePiece the moving piece
 	 * @param captureKingMode whether or not the opposing king must to be captured for moves to be
 	 *        valid
+	 * @param captures whether or not capturing moves shall be collected
+	 * @param quiets whether or not quiet moves shall be collected
 	 * @return whether or not the opposing king needs to be captured for moves to be valid
 	 * @throws NullPointerException if any of the given arguments is {@code null}
 	 */
-	private boolean collectCandidateMoves (final Collection<AbsoluteMotion[]> moves, final Piece<ChessPieceType> activePiece, boolean captureKingMode) {
+	private boolean collectCandidateMoves (final Collection<AbsoluteMotion[]> moves, final Piece<ChessPieceType> activePiece, boolean captureKingMode, final boolean captures, final boolean quiets) {
 		final boolean whiteActive = activePiece.isWhite();
 		if (this.reversibleMoveClock > 100 && activePiece.getType() != PAWN) return true;
 
-		for (final AbsoluteMotion[] directedMotions : activePiece.getMotions()) {
-			for (final AbsoluteMotion motion : directedMotions) {
-				final Piece<ChessPieceType> sinkPiece = this.getPiece(motion.getSinkRank(), motion.getSinkFile());
-				if (motion.isCaptureForbidden() & (captureKingMode | sinkPiece != null)) break;
-
-				if (motion.isTouchForbidden()) {
+		final Piece<ChessPieceType>[] pieces = this.pieces;
+		final ChessMotionTable motionTable = ChessPiece.motionTable(this.rankCount, this.fileCount);
+		final int pieceIndex = motionTable.pieceIndex(activePiece);
+		final int passingPawnPosition = activePiece.getType() == PAWN & this.passingPawn != null ? this.passingPawn.getPosition() : -1;
+
+		for (int rayIndex = motionTable.rayBegin(pieceIndex), rayEnd = motionTable.rayEnd(pieceIndex); rayIndex < rayEnd; ++rayIndex) {
+			for (int motionIndex = motionTable.motionBegin(rayIndex), motionEnd = motionTable.motionEnd(rayIndex); motionIndex < motionEnd; ++motionIndex) {
+				final int sinkPosition = motionTable.sink(motionIndex);
+				final int flags = motionTable.flags(motionIndex);
+				final Piece<ChessPieceType> sinkPiece = pieces[sinkPosition];
+				if ((flags & Motion.CAPTURE_FORBIDDEN) != 0 & (captureKingMode | sinkPiece != null)) break;
+
+				if ((flags & Motion.TOUCH_FORBIDDEN) != 0) {
+					final AbsoluteMotion motion = motionTable.motion(motionIndex);
+					final AbsoluteMotion[] directedMotions = motionTable.ray(rayIndex);
 					assert directedMotions.length == 1 & motion.isCaptureForbidden();
-					final byte interRank = (byte) ((motion.getSourceRank() + motion.getSinkRank()) >> 1);
-					final byte interFile = (byte) ((motion.getSourceFile() + motion.getSinkFile()) >> 1);
-					if (sinkPiece != null | this.getPiece(interRank, interFile) != null) break;
+					final int interPosition = (activePiece.getPosition() + sinkPosition) >> 1;
+					if (sinkPiece != null | pieces[interPosition] != null) break;
 
 					switch (activePiece.getType()) {
 						case PAWN: {
-							moves.add(directedMotions);
+							if (quiets) moves.add(directedMotions);
 							break;
 						}
 						case KING: {
+							if (!quiets) break;
 							final byte rookFile = motion.getSinkFile() < motion.getSourceFile() ? 0 : (byte) (this.fileCount - 1);
 							final int castlingMask = motion.getSinkFile() < motion.getSourceFile()
 								? (whiteActive ? MASK_CASTLE_WHITE_LEFT : MASK_CASTLE_BLACK_LEFT)
@@ -241,27 +457,27 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 					}
 				} else {
 					if (sinkPiece != null) {
-						if (sinkPiece.isWhite() == whiteActive | motion.isCaptureForbidden()) break;
+						if (sinkPiece.isWhite() == whiteActive | (flags & Motion.CAPTURE_FORBIDDEN) != 0) break;
 						if (sinkPiece.getType() != KING) {
 							if (captureKingMode) break;
 						} else {
 							if (!captureKingMode) moves.clear();
 							captureKingMode = true;
 						}
-						moves.add(new AbsoluteMotion[] { motion });
+						if (captures) moves.add(new AbsoluteMotion[] { motionTable.motion(motionIndex) });
 						break;
 					}
 
-					if ((activePiece.getType() == PAWN & this.passingPawn != null) && (this.passingPawn.getRank() == motion.getSinkRank() & this.passingPawn.getFile() == motion.getSinkFile())) {
-						assert directedMotions.length == 1;
-						if (!captureKingMode & !motion.isCaptureForbidden()) {
-							moves.add(directedMotions);
+					if (sinkPosition == passingPawnPosition) {
+						assert motionTable.ray(rayIndex).length == 1;
+						if (captures & !captureKingMode & (flags & Motion.CAPTURE_FORBIDDEN) == 0) {
+							moves.add(motionTable.ray(rayIndex));
 						}
 						break;
 					}
 
-					if (!motion.isCaptureRequired()) {
-						moves.add(new AbsoluteMotion[] { motion });
+					if (quiets & (flags & Motion.CAPTURE_REQUIRED) == 0) {
+						moves.add(new AbsoluteMotion[] { motionTable.motion(motionIndex) });
 					}
 				}
 			}
@@ -277,90 +493,233 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 	 */
 	public boolean isThreatened (final byte rank, final byte file, final boolean white) {
 		if (rank < 0 | rank >= this.rankCount | file < 0 | file >= this.fileCount) throw new IllegalArgumentException();
-		final Piece<ChessPieceType>[][] pieceCache = ChessPiece.values(this.rankCount, this.fileCount)[1 - (this.moveClock & 1)];
+
 		final int position = Board.coordinatesToPosition(rank, file, this.fileCount);
-		Piece<ChessPieceType> virtualPiece;
+		return this.occupancies == null
+			? this.threateningPosition(position, white, null, false) != -1
+			: this.isAttacked(position, white);
+	}
+
+
+	/**
+	 * Returns whether or not the given position is threatened by any piece of the given color,
+	 * based on the occupancy sets: Leaping attackers are detected by intersecting their occupancy
+	 * with the attack sets of the given position, sliding attackers by locating the nearest
+	 * occupied position along each ray that contains any of them.
+	 * @param position the position
+	 * @param white whether the threatening piece shall be white or black
+	 * @return {@code true} if the position is threatened, {@code false} otherwise
+	 */
+	private boolean isAttacked (final int position, final boolean white) {
+		final long[] occupancies = this.occupancies;
+		final ChessAttackTable attackTable = ChessPiece.attackTable(this.rankCount, this.fileCount);
+		final long[] diagonalAttackers = new long[WORD_COUNT], orthogonalAttackers = new long[WORD_COUNT], occupied = new long[WORD_COUNT];
+		boolean diagonal = false, orthogonal = false;
+
+		for (int word = 0; word < WORD_COUNT; ++word) {
+			final long knights = occupancies[occupancyOffset(white, KNIGHT.ordinal()) + word];
+			final long bishops = occupancies[occupancyOffset(white, BISHOP.ordinal()) + word];
+			final long rooks = occupancies[occupancyOffset(white, ROOK.ordinal()) + word];
+			final long queens = occupancies[occupancyOffset(white, QUEEN.ordinal()) + word];
+			final long archbishops = occupancies[occupancyOffset(white, ARCHBISHOP.ordinal()) + word];
+			final long chancellors = occupancies[occupancyOffset(white, CHANCELLOR.ordinal()) + word];
+			final long empresses = occupancies[occupancyOffset(white, EMPRESS.ordinal()) + word];
+			if ((attackTable.knightAttacks(position, word) & (knights | archbishops | chancellors | empresses)) != 0) return true;
+			if ((attackTable.kingAttacks(position, word) & occupancies[occupancyOffset(white, KING.ordinal()) + word]) != 0) return true;
+			if ((attackTable.pawnAttackers(white, position, word) & occupancies[occupancyOffset(white, PAWN.ordinal()) + word]) != 0) return true;
+
+			diagonalAttackers[word] = bishops | archbishops | queens | empresses;
+			orthogonalAttackers[word] = rooks | chancellors | queens | empresses;
+			diagonal |= (attackTable.diagonalRays(position, word) & diagonalAttackers[word]) != 0;
+			orthogonal |= (attackTable.orthogonalRays(position, word) & orthogonalAttackers[word]) != 0;
+			occupied[word] = occupancies[occupancyOffset(true, TYPE_COUNT) + word] | occupancies[occupancyOffset(false, TYPE_COUNT) + word];
+		}
+
+		for (int direction = 0; direction < ChessAttackTable.DIRECTION_COUNT; ++direction) {
+			final boolean diagonalDirection = ChessAttackTable.isDiagonal(direction);
+			if (diagonalDirection ? !diagonal : !orthogonal) continue;
+
+			final long low = attackTable.ray(direction, position, 0) & occupied[0];
+			final long high = attackTable.ray(direction, position, 1) & occupied[1];
+			final int blockingPosition = ChessAttackTable.isAscending(direction)
+				? ChessAttackTable.lowestPosition(low, high)
+				: ChessAttackTable.highestPosition(low, high);
+			final long[] attackers = diagonalDirection ? diagonalAttackers : orthogonalAttackers;
+			if (blockingPosition != -1 && ChessAttackTable.contains(attackers[0], attackers[1], blockingPosition)) return true;
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * {@inheritDoc} This implementation plays the exchange by repeatedly recapturing with the
+	 * least valuable piece threatening the sink position, revealing pieces threatening it through
+	 * the vacated positions of former capturers; each side may stop recapturing once it would lose
+	 * material by continuing.
+	 * @throws NullPointerException {@inheritDoc}
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 */
+	public int getExchangeScore (final AbsoluteMotion motion) {
+		final Piece<ChessPieceType>[] pieces = this.pieces;
+		final int sourcePosition = Board.coordinatesToPosition(motion.getSourceRank(), motion.getSourceFile(), this.fileCount);
+		final int sinkPosition = Board.coordinatesToPosition(motion.getSinkRank(), motion.getSinkFile(), this.fileCount);
+		if (pieces[sourcePosition] == null) throw new IllegalArgumentException();
+		if (pieces[sinkPosition] == null) return 0;
+
+		final boolean[] vacated = new boolean[pieces.length];
+		final int[] gains = new int[pieces.length + 1];
+		gains[0] = pieces[sinkPosition].getType().getRating();
+
+		boolean white = pieces[sourcePosition].isWhite();
+		int depth = 0;
+		for (int capturePosition = sourcePosition; capturePosition != -1; capturePosition = this.threateningPosition(sinkPosition, white, vacated, true)) {
+			depth += 1;
+			gains[depth] = pieces[capturePosition].getType().getRating() - gains[depth - 1];
+			vacated[capturePosition] = true;
+			white = !white;
+		}
+
+		while (--depth > 0) {
+			gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+		}
+		return gains[0];
+	}
+
+
+	/**
+	 * Returns the position of a piece of the given color threatening the given position, walking
+	 * the motion table outwards from said position. Positions marked as vacated are treated as
+	 * empty, which reveals pieces threatening the given position through them.
+	 * @param position the threatened position
+	 * @param white whether the threatening piece shall be white or black
+	 * @param vacated the vacated positions, or {@code null} for none
+	 * @param leastValuable whether the least valuable threatening piece shall be returned, or
+	 *        the first one found
+	 * @return the position of the threatening piece, or {@code -1} for none
+	 */
+	private int threateningPosition (final int position, final boolean white, final boolean[] vacated, final boolean leastValuable) {
+		final Piece<ChessPieceType>[] pieces = this.pieces;
+		final ChessMotionTable motionTable = ChessPiece.motionTable(this.rankCount, this.fileCount);
+		final boolean passiveWhite = (this.moveClock & 1) != 0;
+		int threateningPosition = -1, pieceIndex;
 
 		// check for pieces that capture like knights, i.e. knight, archbishop, chancellor, empress.
-		virtualPiece = pieceCache[KNIGHT.ordinal()][position];
-		for (final AbsoluteMotion[] directedMoves : virtualPiece.getMotions()) {
-			for (final AbsoluteMotion move : directedMoves) {
-				final Piece<ChessPieceType> piece = this.getPiece(move.getSinkRank(), move.getSinkFile());
-				if (piece != null) {
-					if (piece.isWhite() == white) {
-						switch (piece.getType()) {
-							case KNIGHT:
-							case CHANCELLOR:
-							case ARCHBISHOP:
-							case EMPRESS:
-								return true;
-							default:
-								break;
-						}
+		pieceIndex = motionTable.pieceIndex(passiveWhite, KNIGHT.ordinal(), position);
+		for (int rayIndex = motionTable.rayBegin(pieceIndex), rayEnd = motionTable.rayEnd(pieceIndex); rayIndex < rayEnd; ++rayIndex) {
+			for (int motionIndex = motionTable.motionBegin(rayIndex), motionEnd = motionTable.motionEnd(rayIndex); motionIndex < motionEnd; ++motionIndex) {
+				final int sinkPosition = motionTable.sink(motionIndex);
+				final Piece<ChessPieceType> piece = pieces[sinkPosition];
+				if (piece == null || (vacated != null && vacated[sinkPosition])) continue;
+
+				if (piece.isWhite() == white) {
+					final boolean threatening;
+					switch (piece.getType()) {
+						case KNIGHT:
+						case CHANCELLOR:
+						case ARCHBISHOP:
+						case EMPRESS:
+							threatening = true;
+							break;
+						default:
+							threatening = false;
+							break;
+					}
+					if (threatening) {
+						if (!leastValuable) return sinkPosition;
+						threateningPosition = lessValuablePosition(pieces, threateningPosition, sinkPosition);
 					}
-					break;
 				}
+				break;
 			}
 		}
 
 		// check for pieces that capture like bishops, i.e. bishop, archbishop, queen, empress, and
 		// king/pawn (first sink position only). Note that pawn capture is additionally constrained by direction.
-		virtualPiece = pieceCache[BISHOP.ordinal()][position];
-		for (final AbsoluteMotion[] directedMoves : virtualPiece.getMotions()) {
-			for (int index = 0; index < directedMoves.length; ++index) {
-				final AbsoluteMotion move = directedMoves[index];
-				final Piece<ChessPieceType> piece = this.getPiece(move.getSinkRank(), move.getSinkFile());
-				if (piece != null) {
-					if (piece.isWhite() == white) {
-						switch (piece.getType()) {
-							case BISHOP:
-							case ARCHBISHOP:
-							case QUEEN:
-							case EMPRESS:
-								return true;
-							case KING:
-								if (index == 0) return true;
-								break;
-							case PAWN:
-								if (index == 0 & (white ^ (move.getSourceRank() < move.getSinkRank()))) return true;
-								break;
-							default:
-								break;
-						}
+		pieceIndex = motionTable.pieceIndex(passiveWhite, BISHOP.ordinal(), position);
+		for (int rayIndex = motionTable.rayBegin(pieceIndex), rayEnd = motionTable.rayEnd(pieceIndex); rayIndex < rayEnd; ++rayIndex) {
+			final int motionBegin = motionTable.motionBegin(rayIndex);
+			for (int motionIndex = motionBegin, motionEnd = motionTable.motionEnd(rayIndex); motionIndex < motionEnd; ++motionIndex) {
+				final int sinkPosition = motionTable.sink(motionIndex);
+				final Piece<ChessPieceType> piece = pieces[sinkPosition];
+				if (piece == null || (vacated != null && vacated[sinkPosition])) continue;
+
+				if (piece.isWhite() == white) {
+					final boolean threatening;
+					switch (piece.getType()) {
+						case BISHOP:
+						case ARCHBISHOP:
+						case QUEEN:
+						case EMPRESS:
+							threatening = true;
+							break;
+						case KING:
+							threatening = motionIndex == motionBegin;
+							break;
+						case PAWN:
+							threatening = motionIndex == motionBegin & (white ^ (position < sinkPosition));
+							break;
+						default:
+							threatening = false;
+							break;
+					}
+					if (threatening) {
+						if (!leastValuable) return sinkPosition;
+						threateningPosition = lessValuablePosition(pieces, threateningPosition, sinkPosition);
 					}
-					break;
 				}
+				break;
 			}
 		}
 
 		// check for pieces that capture like rooks, i.e. rook, chancellor, queen, empress, and
 		// king (first sink position only).
-		virtualPiece = pieceCache[ROOK.ordinal()][position];
-		for (final AbsoluteMotion[] directedMoves : virtualPiece.getMotions()) {
-			for (int index = 0; index < directedMoves.length; ++index) {
-				final AbsoluteMotion move = directedMoves[index];
-				final Piece<ChessPieceType> piece = this.getPiece(move.getSinkRank(), move.getSinkFile());
-				if (piece != null) {
-					if (piece.isWhite() == white) {
-						switch (piece.getType()) {
-							case ROOK:
-							case CHANCELLOR:
-							case QUEEN:
-							case EMPRESS:
-								return true;
-							case KING:
-								if (index == 0) return true;
-								break;
-							default:
-								break;
-						}
+		pieceIndex = motionTable.pieceIndex(passiveWhite, ROOK.ordinal(), position);
+		for (int rayIndex = motionTable.rayBegin(pieceIndex), rayEnd = motionTable.rayEnd(pieceIndex); rayIndex < rayEnd; ++rayIndex) {
+			final int motionBegin = motionTable.motionBegin(rayIndex);
+			for (int motionIndex = motionBegin, motionEnd = motionTable.motionEnd(rayIndex); motionIndex < motionEnd; ++motionIndex) {
+				final int sinkPosition = motionTable.sink(motionIndex);
+				final Piece<ChessPieceType> piece = pieces[sinkPosition];
+				if (piece == null || (vacated != null && vacated[sinkPosition])) continue;
+
+				if (piece.isWhite() == white) {
+					final boolean threatening;
+					switch (piece.getType()) {
+						case ROOK:
+						case CHANCELLOR:
+						case QUEEN:
+						case EMPRESS:
+							threatening = true;
+							break;
+						case KING:
+							threatening = motionIndex == motionBegin;
+							break;
+						default:
+							threatening = false;
+							break;
+					}
+					if (threatening) {
+						if (!leastValuable) return sinkPosition;
+						threateningPosition = lessValuablePosition(pieces, threateningPosition, sinkPosition);
 					}
-					break;
 				}
+				break;
 			}
 		}
 
-		return false;
+		return threateningPosition;
+	}
+
+
+	/**
+	 * Returns the position of the less valuable of the pieces at the given positions.
+	 * @param pieces the pieces
+	 * @param leftPosition the left position, or {@code -1} for none
+	 * @param rightPosition the right position
+	 * @return the position of the less valuable piece
+	 */
+	static private int lessValuablePosition (final Piece<ChessPieceType>[] pieces, final int leftPosition, final int rightPosition) {
+		return leftPosition == -1 || pieces[rightPosition].getType().getRating() < pieces[leftPosition].getType().getRating() ? rightPosition : leftPosition;
 	}
 
 
@@ -373,6 +732,9 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 	public void move (final AbsoluteMotion... move) {
 		if (move.length == 0 | move.length > 2) throw new IllegalArgumentException();
 		final AbsoluteMotion motion = move[0];
+		long positionHash = this.beginMove() ^ castlingHashKey(this.castlingAbilities) ^ passingPawnHashKey(this.passingPawn);
+		long pawnHash = this.pawnHash;
+		int pieceRating = this.pieceRating;
 
 		final int colorOrdinal = this.moveClock & 1, rookOffset = (this.rankCount - 1) * this.fileCount;
 		final Piece<ChessPieceType>[][][] pieceCache = ChessPiece.values(this.rankCount, this.fileCount);
@@ -399,7 +761,13 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 				if (motion.isCaptureForbidden() & motion.isTouchForbidden()) {
 					this.passingPawn = pieceCache[colorOrdinal][PAWN.ordinal()][(sourcePosition + sinkPosition) >> 1];
 				} else if ((motion.isCaptureRequired() & passingPawn != null) && (passingPawn.getRank() == motion.getSinkRank() & passingPawn.getFile() == motion.getSinkFile())) {
-					this.pieces[sinkPosition + (whiteActive ? -this.fileCount : +this.fileCount)] = null;
+					final int passingPosition = sinkPosition + (whiteActive ? -this.fileCount : +this.fileCount);
+					final Piece<ChessPieceType> passedPawn = this.pieces[passingPosition];
+					positionHash ^= pieceHashKey(passedPawn);
+					pawnHash ^= pieceHashKey(passedPawn);
+					this.toggleOccupancy(passedPawn);
+					pieceRating -= passedPawn.getRating();
+					this.pieces[passingPosition] = null;
 				} else if (motion.getSinkRank() == 0 | motion.getSinkRank() == this.rankCount - 1) {
 					sourceType = QUEEN;
 				}
@@ -417,6 +785,10 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 					this.pieces[rook.getPosition()] = null;
 					final int rookSinkPosition = (sourcePosition + sinkPosition) >> 1;
 					this.pieces[rookSinkPosition] = pieceCache[colorOrdinal][ROOK.ordinal()][rookSinkPosition];
+					positionHash ^= pieceHashKey(rook) ^ pieceHashKey(this.pieces[rookSinkPosition]);
+					pieceRating += this.pieces[rookSinkPosition].getRating() - rook.getRating();
+					this.toggleOccupancy(rook);
+					this.toggleOccupancy(this.pieces[rookSinkPosition]);
 				}
 				this.castlingAbilities &= whiteActive
 					? ~(MASK_CASTLE_WHITE_LEFT | MASK_CASTLE_WHITE_RIGHT)
@@ -453,80 +825,57 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 
 		this.pieces[sourcePosition] = null;
 		this.pieces[sinkPosition] = pieceCache[colorOrdinal][sourceType.ordinal()][sinkPosition];
-		return;
+		positionHash ^= pieceHashKey(sourcePiece) ^ pieceHashKey(sinkPiece) ^ pieceHashKey(this.pieces[sinkPosition]);
+		positionHash ^= castlingHashKey(this.castlingAbilities) ^ passingPawnHashKey(this.passingPawn);
+		if (sourcePiece.getType() == PAWN) pawnHash ^= pieceHashKey(sourcePiece);
+		if (sinkPiece != null && sinkPiece.getType() == PAWN) pawnHash ^= pieceHashKey(sinkPiece);
+		if (sourceType == PAWN) pawnHash ^= pieceHashKey(this.pieces[sinkPosition]);
+		pieceRating += this.pieces[sinkPosition].getRating() - sourcePiece.getRating() - (sinkPiece == null ? 0 : sinkPiece.getRating());
+		this.toggleOccupancy(sourcePiece);
+		this.toggleOccupancy(sinkPiece);
+		this.toggleOccupancy(this.pieces[sinkPosition]);
+		this.pieceRating = pieceRating;
+		this.pawnHash = pawnHash;
+		assert pawnHash == this.calculatePawnHash();
+		assert this.occupancies == null || Arrays.equals(this.occupancies, this.calculateOccupancies());
+		this.endMove(~positionHash);
+	}
+
+
+	/**
+	 * Returns the search engine used to analyze this board. The default implementation returns a
+	 * shared single-threaded chess search, subclasses may override this method in order to supply
+	 * differently configured engines, for example parallel ones.
+	 * @return the search engine
+	 */
+	protected AlphaBetaSearch<ChessPieceType> getSearch () {
+		return SEARCH;
 	}
 
 
 	/**
-	 * {@inheritDoc} Note that this implementation is single-threaded.
+	 * {@inheritDoc} This implementation delegates to this board's search engine, which deepens the
+	 * analysis iteratively using aspiration windows, starting after the given previous prediction,
+	 * and stops deepening once the given time budget is exhausted, see
+	 * {@linkplain AlphaBetaSearch#analyze(Board, int, long, Prediction)}.
 	 * @throws IllegalArgumentException {@inheritDoc}
 	 * @throws InterruptedException {@inheritDoc}
 	 */
 	@Override
-	protected Prediction analyzeRecursively (final int depth) throws InterruptedException {
-		if (depth <= 0) throw new IllegalArgumentException();
-
-		final boolean whitePerspective = this.isWhiteActive();
-		final List<Prediction> alternatives = new ArrayList<>();
-
-		final Collection<AbsoluteMotion[]> moves = this.getCandidateMoves();
-		for (final AbsoluteMotion[] move : moves) {
-			final Prediction prediction = this.analyzeRecursively(move, depth);
-			if (alternatives.isEmpty()) {
-				alternatives.add(prediction);
-			} else {
-				final Comparator<Prediction> comparator = whitePerspective ? WHITE_PREDICTION_COMPARATOR : BLACK_PREDICTION_COMPARATOR;
-				final int compare = comparator.compare(prediction, alternatives.get(0));
-				if (compare > 0) alternatives.clear();
-				if (compare >= 0) alternatives.add(prediction);
-			}
-		}
-
-		// randomly select one of the equally rated prediction alternatives
-		final Prediction prediction = alternatives.isEmpty()
-			? null
-			: alternatives.get(ThreadLocalRandom.current().nextInt(alternatives.size()));
-		if (prediction != null && !prediction.getMoveSequence().isEmpty()) return prediction;
-
-		// distinguish check mate (loss) and stale mate (draw)
-		final Piece<ChessPieceType> king = this.getKing(whitePerspective);
-		return king == null || this.isThreatened(king.getRank(), king.getFile(), !whitePerspective)
-			? new Prediction(whitePerspective ? -Integer.MAX_VALUE : +Integer.MAX_VALUE)
-			: new Prediction(0);
+	protected Prediction analyzeUncached (final int depth, final long timeBudget, final Prediction previousPrediction) throws InterruptedException {
+		return this.getSearch().analyze(this, depth, timeBudget, previousPrediction);
 	}
 
 
 	/**
-	 * Performs the given move on a clone of this board, and recursively analyzes the counter moves
-	 * to it up until the given search depth, implementing the minimax game theory principle. The
-	 * result contains the next {@code depth} (half) moves predicted given optimum play from both
-	 * sides, and the board rating after performing said moves.
-	 * @param move the move to be analyzed
-	 * @param depth the search depth in half moves
-	 * @return the prediction for the next {@code depth} (half) moves including the given one, and
-	 *         the board rating after performing said moves
-	 * @throws NullPointerException if the given move is {@code null}
-	 * @throws IllegalArgumentException if the given depth is negative
-	 * @throws InterruptedException if this operation is interrupted by another thread
+	 * {@inheritDoc} This implementation delegates to this board's search engine using a full
+	 * window, see {@linkplain AlphaBetaSearch#analyze(Board, int, int, int, AbsoluteMotion[][])}.
+	 * @throws IllegalArgumentException {@inheritDoc}
+	 * @throws InterruptedException {@inheritDoc}
 	 */
-	protected Prediction analyzeRecursively (final AbsoluteMotion[] move, final int depth) throws InterruptedException {
-		if (depth <= 0) throw new IllegalArgumentException();
-
-		final boolean whitePerspective = this.isWhiteActive();
-		final ChessTableBoard clonedBoard = (ChessTableBoard) this.clone();
-		clonedBoard.move(move);
-
-		// avoid moving into check
-		final Piece<ChessPieceType> king = clonedBoard.getKing(whitePerspective);
-		if (king == null || clonedBoard.isThreatened(king.getRank(), king.getFile(), !whitePerspective)) {
-			return new Prediction(whitePerspective ? -Integer.MAX_VALUE : +Integer.MAX_VALUE);
-		}
-
-		final Prediction prediction = depth == 1
-			? new Prediction(clonedBoard.getRating())
-			: clonedBoard.analyzeRecursively(depth - 1);
-		prediction.getMoveSequence().addFirst(move);
-		return prediction;
+	@Override
+	protected Prediction analyzeRecursively (final int depth) throws InterruptedException {
+		return this.getSearch().analyze(this, depth, -Integer.MAX_VALUE, +Integer.MAX_VALUE, null);
 	}
 
 
@@ -557,7 +906,103 @@ public class ChessTableBoard extends AbstractTableBoard<ChessPieceType> implemen
 		this.moveClock = boardTemplate.moveClock;
 		this.reversibleMoveClock = boardTemplate.reversibleMoveClock;
 		this.castlingAbilities = boardTemplate.castlingAbilities;
+		this.pieceRating = boardTemplate.pieceRating;
+		this.pawnHash = boardTemplate.pawnHash;
+		this.occupancies = boardTemplate.occupancies == null ? null : boardTemplate.occupancies.clone();
 		System.arraycopy(boardTemplate.pieces, 0, this.pieces, 0, this.pieces.length);
+		this.clearPositionHistory();
+	}
+
+
+	/**
+	 * Calculates the pawn structure hash from scratch, which depends solely on this board's
+	 * dimensions and the pawns on it.
+	 * @return the pawn structure hash
+	 */
+	private long calculatePawnHash () {
+		long hash = hashKey((this.rankCount << Byte.SIZE) | this.fileCount);
+		for (final Piece<ChessPieceType> piece : this.pieces) {
+			if (piece != null && piece.getType() == PAWN) hash ^= pieceHashKey(piece);
+		}
+		return hash;
+	}
+
+
+	/**
+	 * Calculates the occupancy sets from scratch, organized by color and piece type, followed by
+	 * the occupancy set of each color.
+	 * @return the occupancy sets, or {@code null} if this board has too many fields
+	 */
+	private long[] calculateOccupancies () {
+		if (this.pieces.length > ChessAttackTable.MAX_FIELD_COUNT) return null;
+
+		final long[] occupancies = new long[occupancyOffset(false, TYPE_COUNT) + WORD_COUNT];
+		for (final Piece<ChessPieceType> piece : this.pieces) {
+			if (piece == null) continue;
+			final int word = piece.getPosition() >> 6;
+			occupancies[occupancyOffset(piece.isWhite(), piece.getType().ordinal()) + word] |= 1L << piece.getPosition();
+			occupancies[occupancyOffset(piece.isWhite(), TYPE_COUNT) + word] |= 1L << piece.getPosition();
+		}
+		return occupancies;
+	}
+
+
+	/**
+	 * Toggles the position of the given piece within the occupancy sets of it's type and color.
+	 * @param piece the piece, or {@code null} for none
+	 */
+	private void toggleOccupancy (final Piece<ChessPieceType> piece) {
+		final long[] occupancies = this.occupancies;
+		if (occupancies == null | piece == null) return;
+
+		final int word = piece.getPosition() >> 6;
+		occupancies[occupancyOffset(piece.isWhite(), piece.getType().ordinal()) + word] ^= 1L << piece.getPosition();
+		occupancies[occupancyOffset(piece.isWhite(), TYPE_COUNT) + word] ^= 1L << piece.getPosition();
+	}
+
+
+	/**
+	 * Returns the offset of the occupancy set for the given color and piece type ordinal.
+	 * @param white {@code true} for white, {@code false} for black
+	 * @param typeOrdinal the piece type ordinal, or {@value #TYPE_COUNT} for all types
+	 * @return the occupancy set offset
+	 */
+	static private int occupancyOffset (final boolean white, final int typeOrdinal) {
+		return ((white ? 0 : TYPE_COUNT + 1) + typeOrdinal) * WORD_COUNT;
+	}
+
+
+	/**
+	 * Returns whether or not the given motion map intersects the given position set.
+	 * @param motionMap the motion map, see {@linkplain Piece#getMotionMap()}
+	 * @param positions the position set, consisting of {@value #WORD_COUNT} words
+	 * @return {@code true} if both intersect, {@code false} otherwise
+	 */
+	static private boolean intersects (final long[] motionMap, final long[] positions) {
+		for (int word = 0; word < motionMap.length; ++word) {
+			if ((motionMap[word] & positions[word]) != 0) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns the hash key for the given castling abilities.
+	 * @param castlingAbilities the castling abilities
+	 * @return the hash key
+	 */
+	static private long castlingHashKey (final byte castlingAbilities) {
+		return hashKey(Long.MIN_VALUE | ((long) castlingAbilities << Integer.SIZE));
+	}
+
+
+	/**
+	 * Returns the hash key for the given passing pawn.
+	 * @param passingPawn the passing pawn, or {@code null} for none
+	 * @return the hash key, or {@code 0} for none
+	 */
+	static private long passingPawnHashKey (final Piece<ChessPieceType> passingPawn) {
+		return passingPawn == null ? 0 : hashKey(Long.MIN_VALUE | ((long) passingPawn.getPosition() << (Integer.SIZE + Byte.SIZE)));
 	}
 
 
@@ -1,7 +1,5 @@
 package de.htw.ds.board.chess;
 
-import de.htw.ds.board.AbsoluteMotion;
-import de.htw.ds.board.Prediction;
 import de.sb.java.TypeMetadata;
 
 
@@ -47,11 +45,4 @@ public final class ChessTableBoard1 extends ChessTableBoard {
 	public ChessTableBoard1(final char[][] pieceMatrix, final short moveClock, final short reversibleMoveClock, final boolean[] castlingAbilities, byte[] passingPawnCoordinates) {
 		super(pieceMatrix, moveClock, reversibleMoveClock, castlingAbilities, passingPawnCoordinates);
 	}
-
-	@Override
-	protected Prediction analyzeRecursively(AbsoluteMotion[] move, int depth) throws InterruptedException {
-		 if (Thread.interrupted())  // Clears interrupted status!
-		      throw new InterruptedException();
-		return super.analyzeRecursively(move, depth);
-	}
 }
\ No newline at end of file
@@ -2,9 +2,9 @@ package de.htw.ds.board.chess;
 
 import de.htw.ds.board.AbsoluteMotion;
 import de.htw.ds.board.Piece;
-import de.htw.ds.board.Prediction;
+import de.htw.ds.board.search.AlphaBetaSearch;
+import de.htw.ds.board.search.ExecutorType;
 import de.htw.ds.sync.ExampleWorkerException;
-import de.sb.java.Threads;
 import de.sb.java.TypeMetadata;
 
 import java.util.*;
@@ -23,7 +23,12 @@ import static de.htw.ds.board.chess.ChessPieceType.PAWN;
 @TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
 public final class ChessTableBoard2 extends ChessTableBoard {
 	static private final int PROCESSOR_COUNT = Runtime.getRuntime().availableProcessors();
-	static private ExecutorService executor = Executors.newFixedThreadPool(PROCESSOR_COUNT, Threads.newDaemonThreadFactory());
+	static private final int ASPIRATION_WINDOW = 50;
+	static public final String EXECUTOR_TYPE_PROPERTY = "de.htw.ds.board.executor.type";
+	static private final ExecutorType EXECUTOR_TYPE = ExecutorType.valueOf(System.getProperty(EXECUTOR_TYPE_PROPERTY, ExecutorType.FIXED.name()).toUpperCase());
+	static private final AlphaBetaSearch<ChessPieceType> SEARCH = new ChessAlphaBetaSearch(EXECUTOR_TYPE.newExecutor(PROCESSOR_COUNT), PROCESSOR_COUNT, ASPIRATION_WINDOW, PROCESSOR_COUNT);
+
+	private volatile AlphaBetaSearch<ChessPieceType> search = SEARCH;
 
 	private volatile byte castlingAbilities;
 	private volatile Piece<ChessPieceType> whiteKing;
@@ -177,80 +182,28 @@ public final class ChessTableBoard2 extends ChessTableBoard {
 	}
 
 	/**
-	 * {@inheritDoc} Note that this implementation is single-threaded.
-	 * @throws IllegalArgumentException {@inheritDoc}
-	 * @throws InterruptedException {@inheritDoc}
+	 * Sets the executor service used to analyze top level moves in parallel. By default, boards
+	 * share a search whose executor type is given by system property
+	 * {@value #EXECUTOR_TYPE_PROPERTY} (default is FIXED), using one thread per processor. Either
+	 * way, top level moves are only analyzed in parallel from a search depth of at least the
+	 * processor count. Note that clones share the executor service of their original, and that
+	 * the caller remains responsible for shutting down the given executor service.
+	 * @param executor the executor service, or {@code null} for single-threaded analysis
+	 * @param threadCount the number of threads available within the given executor service, used
+	 *        for statistics only
+	 * @throws IllegalArgumentException if the given thread count is negative
 	 */
-	protected Prediction analyzeRecursivelyMT (final int depth) throws InterruptedException {
-		if (depth <= 0) throw new IllegalArgumentException();
-
-		final boolean whitePerspective = this.isWhiteActive();
-		final List<Prediction> alternatives = new ArrayList<>();
-
-		final Collection<AbsoluteMotion[]> moves = this.getCandidateMoves();
-		List<Future<Prediction>> futures = new ArrayList<>(moves.size());
-		for (final AbsoluteMotion[] move : moves) {
-			futures.add(executor.submit(() -> this.analyzeRecursively(move, depth)));
-		}
-
-		try {
-			for (final Future<Prediction> predictionFuture : futures) {
-				try {
-					final Prediction prediction = predictionFuture.get();
-					if (alternatives.isEmpty()) {
-						alternatives.add(prediction);
-					} else {
-						final Comparator<Prediction> comparator = whitePerspective ? WHITE_PREDICTION_COMPARATOR
-								: BLACK_PREDICTION_COMPARATOR;
-						final int compare = comparator.compare(prediction,
-								alternatives.get(0));
-						if (compare > 0)
-							alternatives.clear();
-						if (compare >= 0)
-							alternatives.add(prediction);
-					}
-				} catch (final ExecutionException exception) {
-					final Throwable cause = exception.getCause();
-					if (cause instanceof Error)
-						throw (Error) cause;
-					if (cause instanceof RuntimeException)
-						throw (RuntimeException) cause;
-					if (cause instanceof InterruptedException)
-						throw (InterruptedException) cause;
-					throw new AssertionError();
-				}
-			}
-		} catch (InterruptedException exception) {
-			for (final Future<Prediction> predictionFuture : futures) {
-				predictionFuture.cancel(true);
-			}
-			throw exception;
-		}
-		// randomly select one of the equally rated prediction alternatives
-		final Prediction prediction = alternatives.isEmpty()
-				? null
-				: alternatives.get(ThreadLocalRandom.current().nextInt(alternatives.size()));
-		if (prediction != null && !prediction.getMoveSequence().isEmpty()) return prediction;
-
-		// distinguish check mate (loss) and stale mate (draw)
-		final Piece<ChessPieceType> king = this.getKing(whitePerspective);
-		return king == null || this.isThreatened(king.getRank(), king.getFile(), !whitePerspective)
-				? new Prediction(whitePerspective ? -Integer.MAX_VALUE : +Integer.MAX_VALUE)
-				: new Prediction(0);
+	public void setExecutor (final ExecutorService executor, final int threadCount) {
+		this.search = new ChessAlphaBetaSearch(executor, threadCount, ASPIRATION_WINDOW, PROCESSOR_COUNT);
 	}
 
+
+	/**
+	 * {@inheritDoc} This implementation returns a chess search that analyzes top level moves in
+	 * parallel, see {@linkplain #setExecutor(ExecutorService, int)}.
+	 */
 	@Override
-	public Prediction analyze(int depth) throws InterruptedException {
-		if (depth >= PROCESSOR_COUNT)
-			return analyzeRecursivelyMT(depth);
-		else
-			return analyzeRecursively(depth);
-	}
-	
-	@Override
-	protected Prediction analyzeRecursively(AbsoluteMotion[] move, int depth) throws InterruptedException {
-		if (Thread.interrupted())  // Clears interrupted status!
-			throw new InterruptedException();
-		return super.analyzeRecursively(move, depth);
+	protected AlphaBetaSearch<ChessPieceType> getSearch () {
+		return this.search;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package de.htw.ds.board.chess;
+
+import java.util.concurrent.atomic.LongAdder;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model fixed-size caches for pawn structure ratings, mapping pawn
+ * structure hashes to the ratings calculated for said structures. As pawns move rarely compared
+ * to other pieces, the vast majority of positions visited during analysis share pawn structures
+ * with positions visited before, which renders elaborate pawn structure evaluation affordable.
+ * <p>
+ * Each slot consists of two long values, i.e. the pawn structure hash combined with the rating by
+ * exclusive or, followed by the rating itself. This allows slots to be read and written without
+ * any locking: A reader observing a slot while it is being written by another thread will find
+ * the check value inconsistent, and treat the slot as empty. Colliding entries simply replace each
+ * other. Note that this class is thread safe.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+final class PawnStructureCache {
+	static public final int MISSING = Integer.MIN_VALUE;
+
+	private final long[] slots;
+	private final int slotMask;
+	private final LongAdder probeCount;
+	private final LongAdder hitCount;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param slotCount the number of slots, rounded up to the next power of two
+	 * @throws IllegalArgumentException if the given slot count is negative, or exceeds
+	 *         {@code 2^24}
+	 */
+	public PawnStructureCache (final int slotCount) {
+		if (slotCount <= 0 | slotCount > 1 << 24) throw new IllegalArgumentException();
+
+		final int roundedSlotCount = Integer.highestOneBit((slotCount << 1) - 1);
+		this.slots = new long[roundedSlotCount << 1];
+		this.slotMask = roundedSlotCount - 1;
+		this.probeCount = new LongAdder();
+		this.hitCount = new LongAdder();
+	}
+
+
+	/**
+	 * Returns the number of slots.
+	 * @return the slot count
+	 */
+	public int getSlotCount () {
+		return this.slotMask + 1;
+	}
+
+
+	/**
+	 * Returns the number of lookups performed.
+	 * @return the probe count
+	 */
+	public long getProbeCount () {
+		return this.probeCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of successful lookups.
+	 * @return the hit count
+	 */
+	public long getHitCount () {
+		return this.hitCount.sum();
+	}
+
+
+	/**
+	 * Returns the rating stored for the given pawn structure hash.
+	 * @param pawnHash the pawn structure hash
+	 * @return the rating, or {@value #MISSING} if none is stored
+	 */
+	public int get (final long pawnHash) {
+		this.probeCount.increment();
+
+		final int offset = ((int) pawnHash & this.slotMask) << 1;
+		final long check = this.slots[offset];
+		final long rating = this.slots[offset + 1];
+		if ((check ^ rating) != pawnHash) return MISSING;
+
+		this.hitCount.increment();
+		return (int) rating;
+	}
+
+
+	/**
+	 * Stores the given rating for the given pawn structure hash, replacing any entry stored within
+	 * the same slot.
+	 * @param pawnHash the pawn structure hash
+	 * @param rating the rating
+	 * @throws IllegalArgumentException if the given rating is {@value #MISSING}
+	 */
+	public void put (final long pawnHash, final int rating) {
+		if (rating == MISSING) throw new IllegalArgumentException();
+
+		final int offset = ((int) pawnHash & this.slotMask) << 1;
+		this.slots[offset + 1] = rating;
+		this.slots[offset] = pawnHash ^ rating;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString () {
+		return String.format("%s slots, %s probes, %s hits", this.getSlotCount(), this.getProbeCount(), this.getHitCount());
+	}
+}
@@ -0,0 +1,786 @@
+package de.htw.ds.board.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.AbstractBoard;
+import de.htw.ds.board.Board;
+import de.htw.ds.board.Piece;
+import de.htw.ds.board.PieceType;
+import de.htw.ds.board.Prediction;
+import de.htw.ds.board.SearchStatistics;
+import de.htw.ds.board.search.TranspositionStore.Bound;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class analyze boards of any game, relying solely on the {@linkplain Board}
+ * interface. The analysis implements the alpha-beta pruned minimax game theory principle as
+ * iteratively deepened principal variation search, using aspiration windows around the rating of
+ * the previous iteration. Optionally, the top level of the analysis is performed in parallel using
+ * a given executor service, and iterations are stopped once a given time budget is exhausted. If
+ * the analyzed board provides a {@linkplain TranspositionStore}, it is consulted for each node
+ * visited, both to cut off null window analyses of positions already analyzed deeply enough, and
+ * to analyze previously best moves first. Game specific knowledge may be contributed by overriding the protected hook
+ * methods, i.e. move legality, terminal positions, draws, and move ordering. Ratings are taken
+ * from white's perspective, with {@code +Integer.MAX_VALUE} and {@code -Integer.MAX_VALUE}
+ * indicating a win for white or black. Note that instances of this class are thread safe, and may
+ * therefore be shared by any number of boards.
+ * @param <T> the type of the boards' pieces
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public class AlphaBetaSearch<T extends PieceType> {
+	static private final int DEFAULT_ASPIRATION_WINDOW = 50;
+	static private final DeadlineExceededException DEADLINE_EXCEEDED = new DeadlineExceededException();
+
+	private final ExecutorService executor;
+	private final int threadCount;
+	private final int aspirationWindow;
+	private final int parallelDepth;
+
+
+	/**
+	 * Creates a new single-threaded instance.
+	 */
+	public AlphaBetaSearch () {
+		this(null, 1, DEFAULT_ASPIRATION_WINDOW, 2);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * @param executor the executor service used to analyze top level moves in parallel, or
+	 *        {@code null} for single-threaded analysis
+	 * @param threadCount the number of threads available within the given executor service, used
+	 *        for statistics only
+	 * @param aspirationWindow the distance between the aspiration window bounds and the rating of
+	 *        the previous iteration
+	 * @param parallelDepth the minimum search depth for top level moves to be analyzed in
+	 *        parallel, as shallower analyses hardly benefit from the overhead; values below
+	 *        {@code 2} behave like {@code 2}
+	 * @throws IllegalArgumentException if the given thread count, aspiration window or parallel
+	 *         depth is negative
+	 */
+	public AlphaBetaSearch (final ExecutorService executor, final int threadCount, final int aspirationWindow, final int parallelDepth) {
+		if (threadCount <= 0 | aspirationWindow <= 0 | parallelDepth <= 0) throw new IllegalArgumentException();
+
+		this.executor = executor;
+		this.threadCount = threadCount;
+		this.aspirationWindow = aspirationWindow;
+		this.parallelDepth = parallelDepth;
+	}
+
+
+	/**
+	 * Returns the executor service used to analyze top level moves in parallel.
+	 * @return the executor service, or {@code null} for single-threaded analysis
+	 */
+	public ExecutorService getExecutor () {
+		return this.executor;
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth, deepening iteratively. Note that
+	 * the iterations terminate early once a forced end of game is predicted.
+	 * @param board the board
+	 * @param depth the search depth in half moves
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws NullPointerException if the given board is {@code null}
+	 * @throws IllegalArgumentException if the given depth is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	public Prediction analyze (final Board<T> board, final int depth) throws InterruptedException {
+		return this.analyze(board, depth, 0);
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth, deepening iteratively until either
+	 * the search depth is reached or the given time budget is exhausted. Note that the first
+	 * iteration is always completed, and that the iterations terminate early once a forced end of
+	 * game is predicted.
+	 * @param board the board
+	 * @param depth the maximum search depth in half moves
+	 * @param timeBudget the time budget in milliseconds, or {@code 0} for none
+	 * @return the prediction of the deepest iteration completed
+	 * @throws NullPointerException if the given board is {@code null}
+	 * @throws IllegalArgumentException if the given depth or time budget is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	public Prediction analyze (final Board<T> board, final int depth, final long timeBudget) throws InterruptedException {
+		return this.analyze(board, depth, timeBudget, null);
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth, deepening iteratively until either
+	 * the search depth is reached or the given time budget is exhausted. If a previous prediction
+	 * is given, it's move sequence is expected to start from the given board, usually being the
+	 * remainder of a prediction made before the moves leading to the given board were played. Said
+	 * prediction is then considered to be the result of an iteration of it's move sequence length,
+	 * which therefore seeds the move ordering and the aspiration window of the next iteration, while
+	 * shallower iterations are skipped. Note that the first iteration performed is always
+	 * completed, and that the iterations terminate early once a forced end of game is predicted.
+	 * @param board the board
+	 * @param depth the maximum search depth in half moves
+	 * @param timeBudget the time budget in milliseconds, or {@code 0} for none
+	 * @param previousPrediction the previous prediction for the given board, or {@code null} for
+	 *        none
+	 * @return the prediction of the deepest iteration completed
+	 * @throws NullPointerException if the given board is {@code null}
+	 * @throws IllegalArgumentException if the given depth or time budget is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	public Prediction analyze (final Board<T> board, final int depth, final long timeBudget, final Prediction previousPrediction) throws InterruptedException {
+		if (depth <= 0 | timeBudget < 0) throw new IllegalArgumentException();
+		final long deadline = timeBudget == 0 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+		final TranspositionStore transpositionStore = transpositionStore(board);
+		if (transpositionStore != null) transpositionStore.nextGeneration();
+
+		final boolean seeded = previousPrediction != null && Math.abs(previousPrediction.getRating()) != Integer.MAX_VALUE && isPlayable(board, previousPrediction.getMoveSequence());
+		final int initialDepth = seeded ? Math.min(depth, previousPrediction.getMoveSequence().size() + 1) : 1;
+		final SearchStatistics statistics = new SearchStatistics();
+		final SearchContext context = new SearchContext(deadline, depth, statistics);
+		Prediction prediction = seeded ? previousPrediction : null;
+		try {
+			for (int iterationDepth = initialDepth; iterationDepth <= depth; ++iterationDepth) {
+				try {
+					prediction = this.analyzeAspirated(board, iterationDepth, prediction, iterationDepth == initialDepth ? new SearchContext(Long.MAX_VALUE, iterationDepth, statistics) : context);
+				} catch (final DeadlineExceededException exception) {
+					break;
+				}
+				statistics.recordCompletedDepth(iterationDepth);
+				if (prediction.getMoveSequence().isEmpty() || Math.abs(prediction.getRating()) == Integer.MAX_VALUE) break;
+			}
+		} finally {
+			recordStatistics(board, statistics);
+		}
+		return prediction;
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth within the given window, without
+	 * deepening iteratively.
+	 * @param board the board
+	 * @param depth the search depth in half moves
+	 * @param alpha the minimum score white is already assured of
+	 * @param beta the maximum score black is already assured of
+	 * @param principalVariation the move sequence to be searched first, or {@code null} for none
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws NullPointerException if the given board is {@code null}
+	 * @throws IllegalArgumentException if the given depth is negative
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 */
+	public Prediction analyze (final Board<T> board, final int depth, final int alpha, final int beta, final AbsoluteMotion[][] principalVariation) throws InterruptedException {
+		if (depth <= 0) throw new IllegalArgumentException();
+
+		final SearchStatistics statistics = new SearchStatistics();
+		try {
+			final Prediction prediction = this.analyzeRoot(board, depth, alpha, beta, principalVariation, new SearchContext(Long.MAX_VALUE, depth, statistics));
+			statistics.recordCompletedDepth(depth);
+			return prediction;
+		} catch (final DeadlineExceededException exception) {
+			throw new AssertionError();
+		} finally {
+			recordStatistics(board, statistics);
+		}
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth, using an aspiration window around
+	 * the given previous prediction's rating. If the resulting rating falls outside said window,
+	 * the analysis is repeated with the failing side of the window opened.
+	 * @param board the board
+	 * @param depth the search depth in half moves
+	 * @param previousPrediction the prediction of the previous iteration, or {@code null} for none
+	 * @param context the search context
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 * @throws DeadlineExceededException if the search context's deadline is exceeded
+	 */
+	private Prediction analyzeAspirated (final Board<T> board, final int depth, final Prediction previousPrediction, final SearchContext context) throws InterruptedException, DeadlineExceededException {
+		final AbsoluteMotion[][] principalVariation = previousPrediction == null ? null : previousPrediction.getMoveSequence().toArray(new AbsoluteMotion[0][]);
+		final boolean aspirated = previousPrediction != null && Math.abs(previousPrediction.getRating()) != Integer.MAX_VALUE;
+		int alpha = aspirated ? previousPrediction.getRating() - this.aspirationWindow : -Integer.MAX_VALUE;
+		int beta = aspirated ? previousPrediction.getRating() + this.aspirationWindow : +Integer.MAX_VALUE;
+
+		while (true) {
+			final Prediction prediction = this.analyzeRoot(board, depth, alpha, beta, principalVariation, context);
+			final int score = score(prediction, 0);
+			if (score <= alpha & alpha != -Integer.MAX_VALUE) {
+				alpha = -Integer.MAX_VALUE;
+			} else if (score >= beta & beta != +Integer.MAX_VALUE) {
+				beta = +Integer.MAX_VALUE;
+			} else {
+				return prediction;
+			}
+			context.statistics.recordResearch();
+		}
+	}
+
+
+	/**
+	 * Analyzes the given board up until the given search depth within the given window. If an
+	 * executor service is present and the search depth reaches the parallel depth, the first
+	 * ordered move is analyzed sequentially in order to establish a bound, and the remaining moves
+	 * in parallel using null windows around said bound; moves that turn out to be better than the
+	 * bound are re-analyzed within their task using the given window.
+	 * @param board the board
+	 * @param depth the search depth in half moves
+	 * @param alpha the minimum score white is already assured of
+	 * @param beta the maximum score black is already assured of
+	 * @param principalVariation the move sequence to be searched first, or {@code null} for none
+	 * @param context the search context
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 * @throws DeadlineExceededException if the search context's deadline is exceeded
+	 */
+	private Prediction analyzeRoot (final Board<T> board, final int depth, final int alpha, final int beta, final AbsoluteMotion[][] principalVariation, final SearchContext context) throws InterruptedException, DeadlineExceededException {
+		if (this.executor == null || depth == 1 || depth < this.parallelDepth) return this.analyzeRecursively(board, depth, alpha, beta, principalVariation, 0, context);
+
+		final boolean whitePerspective = board.isWhiteActive();
+		final AbsoluteMotion[] hintMove = principalVariation != null && principalVariation.length > 0 ? principalVariation[0] : null;
+		final AbsoluteMotion[][] moves = this.orderMoves(board, board.getCandidateMoves(), hintMove, true);
+
+		Prediction bestPrediction = null;
+		int bestScore = 0, firstIndex = 0;
+		for (; bestPrediction == null & firstIndex < moves.length; ++firstIndex) {
+			final AbsoluteMotion[] move = moves[firstIndex];
+			bestPrediction = this.analyzeRecursively(board, move, depth, alpha, beta, Arrays.equals(move, hintMove) ? principalVariation : null, 0, context);
+		}
+		if (bestPrediction == null) return this.terminalPrediction(board);
+
+		bestScore = score(bestPrediction, 0);
+		if (whitePerspective ? bestScore >= beta : bestScore <= alpha) {
+			context.statistics.recordCutoff();
+			return bestPrediction;
+		}
+		final int windowAlpha = whitePerspective ? Math.max(alpha, bestScore) : alpha;
+		final int windowBeta = whitePerspective ? beta : Math.min(beta, bestScore);
+
+		final long parallelStart = System.nanoTime();
+		final List<Future<Prediction>> futures = new ArrayList<>(moves.length - firstIndex);
+		for (int index = firstIndex; index < moves.length; ++index) {
+			final AbsoluteMotion[] move = moves[index];
+			futures.add(this.executor.submit(() -> {
+				final long taskStart = System.nanoTime();
+				final SearchContext taskContext = new SearchContext(context.deadline, depth, context.statistics);
+				try {
+					final Prediction prediction = whitePerspective
+						? this.analyzeRecursively(board, move, depth, windowAlpha, windowAlpha + 1, null, 0, taskContext)
+						: this.analyzeRecursively(board, move, depth, windowBeta - 1, windowBeta, null, 0, taskContext);
+					if (prediction == null) return null;
+					final int score = score(prediction, 0);
+					if (score <= windowAlpha | score >= windowBeta) return prediction;
+
+					context.statistics.recordResearch();
+					return this.analyzeRecursively(board, move, depth, windowAlpha, windowBeta, null, 0, taskContext);
+				} finally {
+					context.statistics.recordTask(System.nanoTime() - taskStart);
+				}
+			}));
+		}
+
+		try {
+			for (final Future<Prediction> predictionFuture : futures) {
+				try {
+					final Prediction prediction = predictionFuture.get();
+					if (prediction == null) continue;
+
+					final int score = score(prediction, 0);
+					if (whitePerspective ? score > bestScore : score < bestScore) {
+						bestPrediction = prediction;
+						bestScore = score;
+					}
+				} catch (final ExecutionException exception) {
+					final Throwable cause = exception.getCause();
+					if (cause instanceof Error) throw (Error) cause;
+					if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+					if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+					if (cause instanceof DeadlineExceededException) throw (DeadlineExceededException) cause;
+					throw new AssertionError();
+				}
+			}
+		} catch (final InterruptedException | DeadlineExceededException exception) {
+			for (final Future<Prediction> predictionFuture : futures) {
+				predictionFuture.cancel(true);
+			}
+			throw exception;
+		} finally {
+			context.statistics.recordThreads(this.threadCount, System.nanoTime() - parallelStart);
+		}
+
+		return bestPrediction;
+	}
+
+
+	/**
+	 * Recursively analyzes the given board for candidate moves and counter moves up until the
+	 * given search depth, implementing principal variation search: The first legal move is
+	 * analyzed using the given window, while all others are analyzed using a null window first,
+	 * and are only analyzed again using the given window if they turn out to be better. Note that
+	 * the result is exact only if it's score lies within the given window, otherwise it represents
+	 * a bound.
+	 * @param board the board
+	 * @param depth the search depth in half moves
+	 * @param alpha the minimum score white is already assured of
+	 * @param beta the maximum score black is already assured of
+	 * @param principalVariation the move sequence to be searched first, or {@code null} for none
+	 * @param ply the number of half moves performed since the start of the analysis
+	 * @param context the search context
+	 * @return the prediction for the next {@code depth} (half) moves, and the board rating after
+	 *         performing said moves
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 * @throws DeadlineExceededException if the search context's deadline is exceeded
+	 */
+	private Prediction analyzeRecursively (final Board<T> board, final int depth, int alpha, int beta, final AbsoluteMotion[][] principalVariation, final int ply, final SearchContext context) throws InterruptedException, DeadlineExceededException {
+		final boolean whitePerspective = board.isWhiteActive();
+		final int windowAlpha = alpha, windowBeta = beta;
+
+		final TranspositionStore transpositionStore = transpositionStore(board);
+		final long positionHash = transpositionStore == null ? 0 : board.getPositionHash();
+		final TranspositionStore.Entry entry = transpositionStore == null ? null : transpositionStore.get(positionHash);
+		// stored scores carry no move sequence, and therefore never cut off principal variation nodes
+		if (entry != null && ply > 0 && entry.getDepth() >= depth && (long) beta - alpha <= 1) {
+			final int storedScore = entry.getScore();
+			final Bound storedBound = entry.getBound();
+			if (storedBound == Bound.EXACT || (storedBound == Bound.LOWER & storedScore >= beta) || (storedBound == Bound.UPPER & storedScore <= alpha)) {
+				context.statistics.recordTranspositionHit();
+				return new Prediction(storedScore);
+			}
+		}
+
+		// stored best moves may stem from hash collisions, and are therefore verified
+		AbsoluteMotion[] hintMove = principalVariation != null && ply < principalVariation.length ? principalVariation[ply] : null;
+		if (hintMove == null && entry != null && entry.hasMove()) {
+			for (final AbsoluteMotion[] move : board.getCandidateMoves(entry.getMoveSourceRank(), entry.getMoveSourceFile())) {
+				if (entry.isMove(move)) {
+					hintMove = move;
+					break;
+				}
+			}
+		}
+
+		Prediction bestPrediction = null;
+		int bestScore = 0;
+		for (final Iterator<AbsoluteMotion[]> iterator = new StagedMoveIterator<>(this, board, hintMove, context.getKillerMoves(ply), ply == 0); iterator.hasNext(); ) {
+			final AbsoluteMotion[] move = iterator.next();
+			// prune hopeless moves once a legal move has been found, except for the top level
+			if (bestPrediction != null & ply > 0 && this.isPrunable(board, move, depth)) continue;
+
+			Prediction prediction;
+			if (bestPrediction == null) {
+				prediction = this.analyzeRecursively(board, move, depth, alpha, beta, Arrays.equals(move, hintMove) ? principalVariation : null, ply, context);
+				if (prediction == null) continue;
+			} else {
+				prediction = whitePerspective
+					? this.analyzeRecursively(board, move, depth, alpha, alpha + 1, null, ply, context)
+					: this.analyzeRecursively(board, move, depth, beta - 1, beta, null, ply, context);
+				if (prediction == null) continue;
+
+				final int score = score(prediction, ply);
+				if (score > alpha & score < beta) {
+					context.statistics.recordResearch();
+					prediction = this.analyzeRecursively(board, move, depth, alpha, beta, null, ply, context);
+				}
+			}
+
+			final int score = score(prediction, ply);
+			if (bestPrediction == null || (whitePerspective ? score > bestScore : score < bestScore)) {
+				bestPrediction = prediction;
+				bestScore = score;
+			}
+			if (whitePerspective) {
+				if (score > alpha) alpha = score;
+			} else {
+				if (score < beta) beta = score;
+			}
+			if (alpha >= beta) {
+				context.statistics.recordCutoff();
+				if (!isCapture(board, move)) context.recordKillerMove(ply, move);
+				break;
+			}
+		}
+
+		if (bestPrediction == null) return this.terminalPrediction(board);
+
+		// mate and draw scores depend on the path from the root, and are therefore not stored
+		if (transpositionStore != null && Math.abs(bestPrediction.getRating()) != Integer.MAX_VALUE && !(bestPrediction instanceof DrawPrediction)) {
+			final Bound bound = bestScore <= windowAlpha ? Bound.UPPER : (bestScore >= windowBeta ? Bound.LOWER : Bound.EXACT);
+			transpositionStore.put(positionHash, Math.min(depth, 0xFF), bestScore, bound, bestPrediction.getMoveSequence().peekFirst());
+		}
+		return bestPrediction;
+	}
+
+
+	/**
+	 * Performs the given move on a clone of the given board, and recursively analyzes the counter
+	 * moves to it up until the given search depth and within the given window.
+	 * @param board the board
+	 * @param move the move to be analyzed
+	 * @param depth the search depth in half moves
+	 * @param alpha the minimum score white is already assured of
+	 * @param beta the maximum score black is already assured of
+	 * @param principalVariation the move sequence to be searched first, or {@code null} for none
+	 * @param ply the number of half moves performed since the start of the analysis, excluding the
+	 *        given move
+	 * @param context the search context
+	 * @return the prediction for the next {@code depth} (half) moves including the given one, and
+	 *         the board rating after performing said moves, or {@code null} if the given move is
+	 *         illegal
+	 * @throws InterruptedException if this operation is interrupted by another thread
+	 * @throws DeadlineExceededException if the search context's deadline is exceeded
+	 */
+	private Prediction analyzeRecursively (final Board<T> board, final AbsoluteMotion[] move, final int depth, final int alpha, final int beta, final AbsoluteMotion[][] principalVariation, final int ply, final SearchContext context) throws InterruptedException, DeadlineExceededException {
+		if (Thread.interrupted()) throw new InterruptedException();
+		if (context.deadline != Long.MAX_VALUE && System.nanoTime() > context.deadline) throw DEADLINE_EXCEEDED;
+
+		final Board<T> clonedBoard = board.clone();
+		clonedBoard.move(move);
+		context.statistics.recordClone();
+		if (!this.isLegal(board, clonedBoard)) return null;
+		recordNode(board, depth == 1, context.statistics);
+
+		final Prediction prediction;
+		if (this.isDraw(clonedBoard)) {
+			prediction = new DrawPrediction();
+		} else if (depth == 1) {
+			prediction = new Prediction(clonedBoard.getRating());
+		} else {
+			prediction = this.analyzeRecursively(clonedBoard, depth - 1, alpha, beta, principalVariation, ply + 1, context);
+		}
+		prediction.getMoveSequence().addFirst(move);
+		return prediction;
+	}
+
+
+	/**
+	 * Returns whether or not the given child board represents a legal continuation of the given
+	 * parent board. The default implementation considers every candidate move legal; chess like
+	 * games may override this method to reject moves that leave the own king threatened.
+	 * @param board the parent board
+	 * @param clonedBoard the child board, i.e. a clone of the parent after performing a move
+	 * @return {@code true} if the move is legal, {@code false} otherwise
+	 */
+	protected boolean isLegal (final Board<T> board, final Board<T> clonedBoard) {
+		return true;
+	}
+
+
+	/**
+	 * Returns whether or not the given move is hopeless enough to be skipped at the given
+	 * remaining search depth, provided another legal move has already been analyzed. The default
+	 * implementation never prunes moves; games with cheap tactical estimates may override this
+	 * method to skip moves that likely lose material close to the search horizon.
+	 * @param board the board
+	 * @param move the move
+	 * @param depth the remaining search depth in half moves, including the given move
+	 * @return {@code true} if the move may be skipped, {@code false} otherwise
+	 */
+	protected boolean isPrunable (final Board<T> board, final AbsoluteMotion[] move, final int depth) {
+		return false;
+	}
+
+
+	/**
+	 * Returns whether or not the given board is a draw regardless of it's continuations. The
+	 * default implementation considers repetitions of former positions to be draws.
+	 * @param board the board
+	 * @return {@code true} if the board is a draw, {@code false} otherwise
+	 */
+	protected boolean isDraw (final Board<T> board) {
+		return board.isRepetition();
+	}
+
+
+	/**
+	 * Returns the prediction for the given board if the active side has no legal moves. The
+	 * default implementation considers such boards to be draws.
+	 * @param board the board
+	 * @return the terminal prediction
+	 */
+	protected Prediction terminalPrediction (final Board<T> board) {
+		return new Prediction(0);
+	}
+
+
+	/**
+	 * Returns the given candidate moves ordered by their likelihood of being good, i.e. the given
+	 * hint move first, followed by the remaining moves in descending order of their ordering key.
+	 * @param board the board
+	 * @param candidateMoves the candidate moves
+	 * @param hintMove the move to be ordered first if present, or {@code null} for none
+	 * @param shuffle whether or not moves of equal ordering key shall be ordered randomly
+	 * @return the ordered moves
+	 * @throws NullPointerException if the given board or candidate moves are {@code null}
+	 */
+	protected AbsoluteMotion[][] orderMoves (final Board<T> board, final Collection<AbsoluteMotion[]> candidateMoves, final AbsoluteMotion[] hintMove, final boolean shuffle) {
+		final AbsoluteMotion[][] moves = candidateMoves.toArray(new AbsoluteMotion[0][]);
+		this.sortMoves(board, moves, hintMove, shuffle);
+		return moves;
+	}
+
+
+	/**
+	 * Sorts the given moves in place by their likelihood of being good, see
+	 * {@linkplain #orderMoves(Board, Collection, AbsoluteMotion[], boolean)}.
+	 * @param board the board
+	 * @param moves the moves
+	 * @param hintMove the move to be ordered first if present, or {@code null} for none
+	 * @param shuffle whether or not moves of equal ordering key shall be ordered randomly
+	 * @return the ordering keys of the sorted moves, with the hint move's being
+	 *         {@code Integer.MAX_VALUE}
+	 * @throws NullPointerException if the given board or moves are {@code null}
+	 */
+	int[] sortMoves (final Board<T> board, final AbsoluteMotion[][] moves, final AbsoluteMotion[] hintMove, final boolean shuffle) {
+		if (shuffle) {
+			for (int index = moves.length - 1; index > 0; --index) {
+				final int swapIndex = ThreadLocalRandom.current().nextInt(index + 1);
+				final AbsoluteMotion[] move = moves[index];
+				moves[index] = moves[swapIndex];
+				moves[swapIndex] = move;
+			}
+		}
+
+		final int[] keys = new int[moves.length];
+		for (int index = 0; index < moves.length; ++index) {
+			final AbsoluteMotion[] move = moves[index];
+			final int key = Arrays.equals(move, hintMove) ? Integer.MAX_VALUE : this.orderingKey(board, move);
+
+			int insertIndex = index;
+			for (; insertIndex > 0 && keys[insertIndex - 1] < key; --insertIndex) {
+				keys[insertIndex] = keys[insertIndex - 1];
+				moves[insertIndex] = moves[insertIndex - 1];
+			}
+			keys[insertIndex] = key;
+			moves[insertIndex] = move;
+		}
+		return keys;
+	}
+
+
+	/**
+	 * Returns the ordering key of the given move, with greater keys to be analyzed earlier. The
+	 * default implementation orders captures of the most valuable pieces by the least valuable
+	 * ones first, based on the piece type ratings.
+	 * @param board the board
+	 * @param move the move
+	 * @return the ordering key
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	protected int orderingKey (final Board<T> board, final AbsoluteMotion[] move) {
+		final AbsoluteMotion motion = move[0];
+		final Piece<T> sourcePiece = board.getPiece(motion.getSourceRank(), motion.getSourceFile());
+		final Piece<T> sinkPiece = board.getPiece(motion.getSinkRank(), motion.getSinkFile());
+		return sinkPiece == null ? 0 : (sinkPiece.getType().getRating() << 4) - (sourcePiece.getType().getRating() >> 6);
+	}
+
+
+	/**
+	 * Returns whether or not the given move captures a piece. Besides moves onto an occupied sink
+	 * square, this includes moves that require a capture without one, as en passant captures in
+	 * chess do.
+	 * @param board the board
+	 * @param move the move
+	 * @return {@code true} if the given move is a capture, {@code false} otherwise
+	 */
+	static boolean isCapture (final Board<?> board, final AbsoluteMotion[] move) {
+		final AbsoluteMotion motion = move[0];
+		return motion.isCaptureRequired() || board.getPiece(motion.getSinkRank(), motion.getSinkFile()) != null;
+	}
+
+
+	/**
+	 * Returns the score of the given prediction from white's perspective. The score equals the
+	 * predicted rating unless the prediction ends the game with a win, in which case it is reduced
+	 * by the number of (half) moves from the start of the analysis to the end of the game, in order
+	 * to prefer faster wins and slower losses.
+	 * @param prediction the prediction
+	 * @param ply the number of half moves performed since the start of the analysis, excluding the
+	 *        predicted moves
+	 * @return the score
+	 * @throws NullPointerException if the given prediction is {@code null}
+	 */
+	static public int score (final Prediction prediction, final int ply) {
+		final int rating = prediction.getRating();
+		final int distance = ply + prediction.getMoveSequence().size();
+		if (rating == +Integer.MAX_VALUE) return rating - distance;
+		if (rating == -Integer.MAX_VALUE) return rating + distance;
+		return rating;
+	}
+
+
+	/**
+	 * Returns whether or not the given move sequence can be played starting from the given board,
+	 * verifying each move by generating the moves of it's source piece only.
+	 * @param board the board
+	 * @param moveSequence the move sequence
+	 * @return {@code true} if the move sequence is non-empty and playable, {@code false} otherwise
+	 */
+	static private <T extends PieceType> boolean isPlayable (final Board<T> board, final Collection<AbsoluteMotion[]> moveSequence) {
+		if (moveSequence.isEmpty()) return false;
+
+		Board<T> clonedBoard = board;
+		for (final AbsoluteMotion[] move : moveSequence) {
+			if (move.length == 0) return false;
+			final AbsoluteMotion motion = move[0];
+			if (clonedBoard.getPiece(motion.getSourceRank(), motion.getSourceFile()) == null) return false;
+
+			boolean candidate = false;
+			for (final AbsoluteMotion[] candidateMove : clonedBoard.getCandidateMoves(motion.getSourceRank(), motion.getSourceFile())) {
+				candidate |= Arrays.equals(candidateMove, move);
+			}
+			if (!candidate) return false;
+
+			clonedBoard = clonedBoard.clone();
+			clonedBoard.move(move);
+		}
+		return true;
+	}
+
+
+	/**
+	 * Returns the transposition store of the given board.
+	 * @param board the board
+	 * @return the transposition store, or {@code null} for none
+	 */
+	static private TranspositionStore transpositionStore (final Board<?> board) {
+		return board instanceof AbstractBoard ? ((AbstractBoard<?>) board).getTranspositionStore() : null;
+	}
+
+
+	/**
+	 * Adds the given statistics of a search to the process wide search statistics, and to the
+	 * search statistics of the given board if present.
+	 * @param board the board
+	 * @param statistics the search statistics
+	 */
+	static private void recordStatistics (final Board<?> board, final SearchStatistics statistics) {
+		SearchStatistics.singleton().add(statistics);
+		final SearchStatistics boardStatistics = board instanceof AbstractBoard ? ((AbstractBoard<?>) board).getSearchStatistics() : null;
+		if (boardStatistics != null) boardStatistics.add(statistics);
+	}
+
+
+	/**
+	 * Records a node visited during the analysis of the given board, both within the given search
+	 * statistics and the board's node counter if present.
+	 * @param board the board
+	 * @param leaf whether or not the node is a leaf
+	 * @param statistics the search statistics
+	 */
+	static private void recordNode (final Board<?> board, final boolean leaf, final SearchStatistics statistics) {
+		statistics.recordNode(leaf);
+		final LongAdder nodeCounter = board instanceof AbstractBoard ? ((AbstractBoard<?>) board).getNodeCounter() : null;
+		if (nodeCounter != null) nodeCounter.increment();
+	}
+
+
+
+	/**
+	 * Instances of this inner class model the context of an analysis, i.e. it's deadline, it's
+	 * statistics, and the killer moves per ply, which are quiet moves that recently caused cutoffs
+	 * at the same ply elsewhere in the search tree, and are therefore likely to do so again. Note
+	 * that this class is not thread safe, which is why parallel tasks use separate contexts that
+	 * only share the thread safe statistics of their search.
+	 */
+	static private final class SearchContext {
+		static private final int KILLER_COUNT = 2;
+
+		private final long deadline;
+		private final SearchStatistics statistics;
+		private final AbsoluteMotion[][][] killerMoves;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param deadline the deadline in nanoseconds, see {@linkplain System#nanoTime()}
+		 * @param depth the maximum search depth in half moves
+		 * @param statistics the search statistics
+		 */
+		public SearchContext (final long deadline, final int depth, final SearchStatistics statistics) {
+			this.deadline = deadline;
+			this.statistics = statistics;
+			this.killerMoves = new AbsoluteMotion[depth][KILLER_COUNT][];
+		}
+
+
+		/**
+		 * Returns the killer moves for the given ply. Note that the result is not a copy, and
+		 * may contain {@code null} elements.
+		 * @param ply the number of half moves performed since the start of the analysis
+		 * @return the killer moves, most recent first
+		 */
+		public AbsoluteMotion[][] getKillerMoves (final int ply) {
+			return this.killerMoves[ply];
+		}
+
+
+		/**
+		 * Records the given quiet move as the most recent killer move for the given ply.
+		 * @param ply the number of half moves performed since the start of the analysis
+		 * @param move the move that caused a cutoff
+		 */
+		public void recordKillerMove (final int ply, final AbsoluteMotion[] move) {
+			final AbsoluteMotion[][] killerMoves = this.killerMoves[ply];
+			if (Arrays.equals(killerMoves[0], move)) return;
+
+			System.arraycopy(killerMoves, 0, killerMoves, 1, killerMoves.length - 1);
+			killerMoves[0] = move;
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class model predictions ending in a draw detected by
+	 * {@linkplain AlphaBetaSearch#isDraw(Board)}, like repetitions, which depends on the moves
+	 * leading to a position rather than the position itself. As predictions keep their identity
+	 * while moves are prepended, scores relying on such draws can be kept out of transposition
+	 * stores.
+	 */
+	static private final class DrawPrediction extends Prediction {
+
+		/**
+		 * Creates a new instance.
+		 */
+		public DrawPrediction () {
+			super(0);
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class indicate that an analysis deadline has been exceeded. Note that
+	 * a single instance without stack trace is shared, as the exception is only used to unwind the
+	 * analysis.
+	 */
+	static private final class DeadlineExceededException extends Exception {
+		static private final long serialVersionUID = 1L;
+
+
+		/**
+		 * Creates a new instance.
+		 */
+		public DeadlineExceededException () {
+			super(null, null, false, false);
+		}
+	}
+}
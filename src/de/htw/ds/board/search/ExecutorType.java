@@ -0,0 +1,49 @@
+package de.htw.ds.board.search;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import de.sb.java.Threads;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * This enum defines the types of executor services available for parallel analysis and for the
+ * services built upon it. Fixed thread pools and fork-join pools suit CPU-bound tasks like
+ * analysis, with the latter additionally stealing work between it's threads; executors starting a
+ * new thread per task suit I/O-bound tasks like serving HTTP exchanges, which spend most of their
+ * time blocked. Note that all executors use daemon threads, and that executors created by this
+ * enum are owned by the caller, who is therefore responsible for shutting them down.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public enum ExecutorType {
+	FIXED,
+	FORK_JOIN,
+	THREAD_PER_TASK;
+
+
+	/**
+	 * Returns a new executor service of this type.
+	 * @param threadCount the number of threads for pooled executors, ignored for executors
+	 *        starting a new thread per task
+	 * @return the executor service
+	 * @throws IllegalArgumentException if the given thread count is negative
+	 */
+	public ExecutorService newExecutor (final int threadCount) {
+		if (threadCount <= 0) throw new IllegalArgumentException();
+
+		switch (this) {
+			case FIXED:
+				return Executors.newFixedThreadPool(threadCount, Threads.newDaemonThreadFactory());
+			case FORK_JOIN:
+				return new ForkJoinPool(threadCount);
+			case THREAD_PER_TASK:
+				return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), Threads.newDaemonThreadFactory());
+			default:
+				throw new AssertionError();
+		}
+	}
+}
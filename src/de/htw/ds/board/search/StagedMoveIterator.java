@@ -0,0 +1,205 @@
+package de.htw.ds.board.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import de.htw.ds.board.AbsoluteMotion;
+import de.htw.ds.board.Board;
+import de.htw.ds.board.PieceType;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class iterate the candidate moves of a board in stages, generating the moves
+ * of each stage only once the previous stages are exhausted: The hint move comes first, followed
+ * by the captures with non-negative ordering keys, the killer moves, the quiet moves, and finally
+ * the captures with negative ordering keys. Within each generated stage, moves are ordered by
+ * descending ordering key, see {@linkplain AlphaBetaSearch#orderingKey(Board, AbsoluteMotion[])}.
+ * Therefore, a node whose early moves cause a cutoff never generates it's quiet moves. Note that
+ * the hint move must be a valid candidate move, while killer moves are verified before being
+ * returned. Also note that this class is not thread safe.
+ * @param <T> the type of the board's pieces
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+final class StagedMoveIterator<T extends PieceType> implements Iterator<AbsoluteMotion[]> {
+	static private enum Stage { HINT, CAPTURES, KILLERS, QUIETS, LOSING_CAPTURES, DONE }
+	static private final AbsoluteMotion[][] EMPTY_MOVES = {};
+
+	private final AlphaBetaSearch<T> search;
+	private final Board<T> board;
+	private final AbsoluteMotion[] hintMove;
+	private final AbsoluteMotion[][] killerMoves;
+	private final boolean[] killerMovesReturned;
+	private final boolean shuffle;
+	private Stage stage;
+	private AbsoluteMotion[][] moves;
+	private int[] keys;
+	private int index;
+	private AbsoluteMotion[][] captures;
+	private int losingCaptureIndex;
+	private AbsoluteMotion[] nextMove;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param search the search engine providing the ordering keys
+	 * @param board the board
+	 * @param hintMove the move to be returned first, or {@code null} for none
+	 * @param killerMoves the killer moves, possibly containing {@code null} elements
+	 * @param shuffle whether or not moves of equal ordering key shall be ordered randomly
+	 * @throws NullPointerException if the given search, board or killer moves are {@code null}
+	 */
+	public StagedMoveIterator (final AlphaBetaSearch<T> search, final Board<T> board, final AbsoluteMotion[] hintMove, final AbsoluteMotion[][] killerMoves, final boolean shuffle) {
+		if (search == null | board == null) throw new NullPointerException();
+
+		this.search = search;
+		this.board = board;
+		this.hintMove = hintMove;
+		this.killerMoves = killerMoves.clone();
+		this.killerMovesReturned = new boolean[killerMoves.length];
+		this.shuffle = shuffle;
+		this.stage = Stage.HINT;
+		this.captures = EMPTY_MOVES;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasNext () {
+		if (this.nextMove == null) this.nextMove = this.advance();
+		return this.nextMove != null;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * @throws NoSuchElementException {@inheritDoc}
+	 */
+	public AbsoluteMotion[] next () {
+		if (!this.hasNext()) throw new NoSuchElementException();
+
+		final AbsoluteMotion[] move = this.nextMove;
+		this.nextMove = null;
+		return move;
+	}
+
+
+	/**
+	 * Returns the next move, generating further stages as required.
+	 * @return the next move, or {@code null} if all stages are exhausted
+	 */
+	private AbsoluteMotion[] advance () {
+		while (true) {
+			switch (this.stage) {
+				case HINT: {
+					this.stage = Stage.CAPTURES;
+					if (this.hintMove != null) return this.hintMove;
+					break;
+				}
+
+				case CAPTURES: {
+					if (this.moves == null) {
+						this.moves = this.board.getCandidateMoves(true).toArray(EMPTY_MOVES);
+						this.keys = this.search.sortMoves(this.board, this.moves, null, this.shuffle);
+						this.index = 0;
+					}
+
+					if (this.index < this.moves.length && this.keys[this.index] >= 0) {
+						final AbsoluteMotion[] move = this.moves[this.index++];
+						if (!Arrays.equals(move, this.hintMove)) return move;
+						break;
+					}
+
+					this.stage = Stage.KILLERS;
+					this.captures = this.moves;
+					this.losingCaptureIndex = this.index;
+					this.moves = null;
+					this.index = 0;
+					break;
+				}
+
+				case KILLERS: {
+					if (this.index < this.killerMoves.length) {
+						final int killerIndex = this.index++;
+						final AbsoluteMotion[] move = this.killerMoves[killerIndex];
+						if (move != null && !Arrays.equals(move, this.hintMove) && this.isQuietCandidate(move)) {
+							this.killerMovesReturned[killerIndex] = true;
+							return move;
+						}
+						break;
+					}
+
+					this.stage = Stage.QUIETS;
+					break;
+				}
+
+				case QUIETS: {
+					if (this.moves == null) {
+						this.moves = this.board.getCandidateMoves(false).toArray(EMPTY_MOVES);
+						this.keys = this.search.sortMoves(this.board, this.moves, null, this.shuffle);
+						this.index = 0;
+					}
+
+					if (this.index < this.moves.length) {
+						final AbsoluteMotion[] move = this.moves[this.index++];
+						if (!Arrays.equals(move, this.hintMove) && !this.isKillerMoveReturned(move)) return move;
+						break;
+					}
+
+					this.stage = Stage.LOSING_CAPTURES;
+					this.moves = this.captures;
+					this.index = this.losingCaptureIndex;
+					break;
+				}
+
+				case LOSING_CAPTURES: {
+					if (this.index < this.moves.length) {
+						final AbsoluteMotion[] move = this.moves[this.index++];
+						if (!Arrays.equals(move, this.hintMove)) return move;
+						break;
+					}
+
+					this.stage = Stage.DONE;
+					break;
+				}
+
+				default: {
+					return null;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Returns whether or not the given move is a quiet candidate move of the board, which is
+	 * verified by generating the moves of the given move's source piece only.
+	 * @param move the move
+	 * @return {@code true} if the given move is a quiet candidate move, {@code false} otherwise
+	 */
+	private boolean isQuietCandidate (final AbsoluteMotion[] move) {
+		if (AlphaBetaSearch.isCapture(this.board, move)) return false;
+
+		final AbsoluteMotion motion = move[0];
+
+		for (final AbsoluteMotion[] candidateMove : this.board.getCandidateMoves(motion.getSourceRank(), motion.getSourceFile())) {
+			if (Arrays.equals(candidateMove, move)) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns whether or not the given move has already been returned as a killer move.
+	 * @param move the move
+	 * @return {@code true} if the given move has been returned as a killer move, {@code false}
+	 *         otherwise
+	 */
+	private boolean isKillerMoveReturned (final AbsoluteMotion[] move) {
+		for (int killerIndex = 0; killerIndex < this.killerMoves.length; ++killerIndex) {
+			if (this.killerMovesReturned[killerIndex] && Arrays.equals(this.killerMoves[killerIndex], move)) return true;
+		}
+		return false;
+	}
+}
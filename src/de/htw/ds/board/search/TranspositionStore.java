@@ -0,0 +1,360 @@
+package de.htw.ds.board.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import de.htw.ds.board.AbsoluteMotion;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model fixed-size transposition stores, mapping position hashes to
+ * search results of previous analyses, i.e. the search depth, a score bound, and the best move
+ * found. Stores are optionally backed by a memory-mapped file, which allows both to reuse results
+ * across runs, and to share them between processes on the same machine opening the same file.
+ * <p>
+ * Slots are organized in pairs, with each position being stored in either slot of the pair
+ * selected by it's hash. Each slot consists of three long values, i.e. the position hash combined
+ * with both data values by exclusive or, followed by said data values. This allows slots to be
+ * read and written without any locking: A reader observing a slot while it is being written by
+ * another thread or process will find the check value inconsistent, and treat the slot as empty.
+ * Each entry also carries the generation of the analysis that stored it, which is advanced per
+ * top level analysis; when a new entry competes for a slot pair, entries of outdated generations
+ * are evicted before shallower ones of the current generation. Note that this class is thread
+ * safe.
+ */
+@TypeMetadata(copyright = "2013-2015 Sascha Baumeister, all rights reserved", version = "0.1.0", authors = "Sascha Baumeister")
+public final class TranspositionStore implements AutoCloseable {
+	static public enum Bound { EXACT, LOWER, UPPER }
+
+	static private final int FILE_MAGIC = 0x42545331;
+	static private final int HEADER_SIZE = 64;
+	static private final int MAGIC_OFFSET = 0;
+	static private final int SLOT_COUNT_OFFSET = 4;
+	static private final int GENERATION_OFFSET = 8;
+	static private final int SLOT_SIZE = 3 * Long.BYTES;
+	static private final Bound[] BOUNDS = Bound.values();
+
+	private final FileChannel fileChannel;
+	private final ByteBuffer buffer;
+	private final int slotCount;
+	private final LongAdder probeCount;
+	private final LongAdder hitCount;
+	private volatile int generation;
+
+
+	/**
+	 * Creates a new instance that is not backed by a file.
+	 * @param slotCount the number of slots, rounded up to the next power of two
+	 * @throws IllegalArgumentException if the given slot count is negative, or exceeds
+	 *         {@code 2^26}
+	 */
+	public TranspositionStore (final int slotCount) {
+		if (slotCount <= 0 | slotCount > 1 << 26) throw new IllegalArgumentException();
+
+		this.fileChannel = null;
+		this.slotCount = Math.max(2, Integer.highestOneBit((slotCount << 1) - 1));
+		this.buffer = ByteBuffer.allocateDirect(HEADER_SIZE + this.slotCount * SLOT_SIZE).order(ByteOrder.nativeOrder());
+		this.buffer.putInt(MAGIC_OFFSET, FILE_MAGIC);
+		this.buffer.putInt(SLOT_COUNT_OFFSET, this.slotCount);
+		this.probeCount = new LongAdder();
+		this.hitCount = new LongAdder();
+	}
+
+
+	/**
+	 * Creates a new instance backed by the given file, which is created if it doesn't exist yet.
+	 * If the file already contains a store, it's entries and slot count are adopted, and the given
+	 * slot count is ignored. Note that the file is locked while it's header is examined, in order
+	 * to allow multiple processes to open the same file concurrently.
+	 * @param path the file path
+	 * @param slotCount the number of slots for new files, rounded up to the next power of two
+	 * @throws NullPointerException if the given path is {@code null}
+	 * @throws IllegalArgumentException if the given slot count is negative, or exceeds
+	 *         {@code 2^26}
+	 * @throws IOException if there is an I/O related problem, or if the file does not contain a
+	 *         transposition store
+	 */
+	public TranspositionStore (final Path path, final int slotCount) throws IOException {
+		if (path == null) throw new NullPointerException();
+		if (slotCount <= 0 | slotCount > 1 << 26) throw new IllegalArgumentException();
+
+		this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			final FileLock lock = this.fileChannel.lock();
+			try {
+				if (this.fileChannel.size() == 0) {
+					final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+					header.putInt(MAGIC_OFFSET, FILE_MAGIC);
+					header.putInt(SLOT_COUNT_OFFSET, Math.max(2, Integer.highestOneBit((slotCount << 1) - 1)));
+					this.fileChannel.write(header, 0);
+				}
+
+				final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+				if (this.fileChannel.read(header, 0) != HEADER_SIZE || header.getInt(MAGIC_OFFSET) != FILE_MAGIC) throw new IOException("file is not a transposition store: " + path);
+				this.slotCount = header.getInt(SLOT_COUNT_OFFSET);
+				if (Integer.bitCount(this.slotCount) != 1 | this.slotCount < 2 | this.slotCount > 1 << 26) throw new IOException("file is not a transposition store: " + path);
+
+				this.buffer = this.fileChannel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.slotCount * SLOT_SIZE).order(ByteOrder.nativeOrder());
+				this.generation = this.buffer.getInt(GENERATION_OFFSET);
+			} finally {
+				lock.release();
+			}
+		} catch (final Exception exception) {
+			try { this.fileChannel.close(); } catch (final Exception nestedException) { exception.addSuppressed(nestedException); }
+			throw exception;
+		}
+
+		this.probeCount = new LongAdder();
+		this.hitCount = new LongAdder();
+	}
+
+
+	/**
+	 * Closes the underlying file channel if present. Note that the file mapping itself persists
+	 * until this store is garbage collected, as Java provides no means to unmap it explicitly.
+	 * @throws IOException if there is an I/O related problem
+	 */
+	public void close () throws IOException {
+		if (this.fileChannel != null) this.fileChannel.close();
+	}
+
+
+	/**
+	 * Returns the number of slots.
+	 * @return the slot count, always a power of two
+	 */
+	public int getSlotCount () {
+		return this.slotCount;
+	}
+
+
+	/**
+	 * Returns the current generation.
+	 * @return the generation
+	 */
+	public int getGeneration () {
+		return this.generation;
+	}
+
+
+	/**
+	 * Returns the number of lookups performed.
+	 * @return the probe count
+	 */
+	public long getProbeCount () {
+		return this.probeCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of successful lookups.
+	 * @return the hit count
+	 */
+	public long getHitCount () {
+		return this.hitCount.sum();
+	}
+
+
+	/**
+	 * Advances this store to the next generation, which is shared with all other processes using
+	 * the same file. Entries stored during previous generations age accordingly, and are
+	 * preferably evicted. Note that concurrent advances may occasionally coincide, which is
+	 * harmless as generations only serve as a replacement heuristic.
+	 * @return the new generation
+	 */
+	public int nextGeneration () {
+		final int generation = (this.buffer.getInt(GENERATION_OFFSET) + 1) & 0xFF;
+		this.buffer.putInt(GENERATION_OFFSET, generation);
+		this.generation = generation;
+		return generation;
+	}
+
+
+	/**
+	 * Returns the entry stored for the given position hash.
+	 * @param positionHash the position hash
+	 * @return the entry, or {@code null} for none
+	 */
+	public Entry get (final long positionHash) {
+		this.probeCount.increment();
+
+		final int pairIndex = (int) positionHash & (this.slotCount - 2);
+		for (int slotIndex = pairIndex; slotIndex <= pairIndex + 1; ++slotIndex) {
+			final int offset = HEADER_SIZE + slotIndex * SLOT_SIZE;
+			final long check = this.buffer.getLong(offset);
+			final long data = this.buffer.getLong(offset + Long.BYTES);
+			final long move = this.buffer.getLong(offset + 2 * Long.BYTES);
+			if (data != 0 && (check ^ data ^ move) == positionHash) {
+				this.hitCount.increment();
+				return new Entry(data, (int) move);
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Stores an entry for the given position hash within the current generation, replacing
+	 * either an entry for the same position, or the least valuable entry within the position's
+	 * slot pair, i.e. preferring entries of outdated generations, and then shallower ones. An
+	 * existing entry for the same position is retained if it is of the current generation and
+	 * of greater depth.
+	 * @param positionHash the position hash
+	 * @param depth the search depth in half moves
+	 * @param score the score from white's perspective
+	 * @param bound the kind of bound the given score represents
+	 * @param move the best move found, or {@code null} for none
+	 * @throws NullPointerException if the given bound is {@code null}
+	 * @throws IllegalArgumentException if the given depth is negative or exceeds {@code 255}
+	 */
+	public void put (final long positionHash, final int depth, final int score, final Bound bound, final AbsoluteMotion[] move) {
+		if (bound == null) throw new NullPointerException();
+		if (depth <= 0 | depth > 0xFF) throw new IllegalArgumentException();
+
+		final int generation = this.generation;
+		final int pairIndex = (int) positionHash & (this.slotCount - 2);
+		int victimIndex = pairIndex, victimPriority = Integer.MAX_VALUE;
+		for (int slotIndex = pairIndex; slotIndex <= pairIndex + 1; ++slotIndex) {
+			final int offset = HEADER_SIZE + slotIndex * SLOT_SIZE;
+			final long check = this.buffer.getLong(offset);
+			final long data = this.buffer.getLong(offset + Long.BYTES);
+			final long storedMove = this.buffer.getLong(offset + 2 * Long.BYTES);
+
+			final Entry entry = data == 0 ? null : new Entry(data, (int) storedMove);
+			if (entry != null && (check ^ data ^ storedMove) == positionHash) {
+				if (entry.getGeneration() == generation & entry.getDepth() > depth) return;
+				victimIndex = slotIndex;
+				break;
+			}
+
+			final int priority = entry == null ? Integer.MIN_VALUE : entry.getDepth() - 4 * ((generation - entry.getGeneration()) & 0xFF);
+			if (priority < victimPriority) {
+				victimIndex = slotIndex;
+				victimPriority = priority;
+			}
+		}
+
+		final long data = ((long) score << 32) | (depth << 16) | (generation << 8) | bound.ordinal();
+		final long encodedMove = encodeMove(move) & 0xFFFFFFFFL;
+		final int offset = HEADER_SIZE + victimIndex * SLOT_SIZE;
+		this.buffer.putLong(offset + Long.BYTES, data);
+		this.buffer.putLong(offset + 2 * Long.BYTES, encodedMove);
+		this.buffer.putLong(offset, positionHash ^ data ^ encodedMove);
+	}
+
+
+	/**
+	 * Returns the encoding of the given move, based on it's first motion's source and sink
+	 * coordinates.
+	 * @param move the move, or {@code null} for none
+	 * @return the move encoding, or {@code 0} for none
+	 */
+	static public int encodeMove (final AbsoluteMotion[] move) {
+		if (move == null || move.length == 0) return 0;
+		final AbsoluteMotion motion = move[0];
+		return (motion.getSourceRank() << 24) | (motion.getSourceFile() << 16) | (motion.getSinkRank() << 8) | motion.getSinkFile();
+	}
+
+
+
+	/**
+	 * Instances of this inner class model transposition store entries. Note that this class is
+	 * immutable, and therefore thread safe.
+	 */
+	static public final class Entry {
+		private final long data;
+		private final int move;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param data the packed score, depth, generation and bound
+		 * @param move the move encoding
+		 */
+		private Entry (final long data, final int move) {
+			this.data = data;
+			this.move = move;
+		}
+
+
+		/**
+		 * Returns the score from white's perspective.
+		 * @return the score
+		 */
+		public int getScore () {
+			return (int) (this.data >> 32);
+		}
+
+
+		/**
+		 * Returns the search depth.
+		 * @return the search depth in half moves
+		 */
+		public int getDepth () {
+			return (int) (this.data >> 16) & 0xFF;
+		}
+
+
+		/**
+		 * Returns the generation of the analysis that stored this entry.
+		 * @return the generation
+		 */
+		public int getGeneration () {
+			return (int) (this.data >> 8) & 0xFF;
+		}
+
+
+		/**
+		 * Returns the kind of bound the score represents.
+		 * @return the bound
+		 */
+		public Bound getBound () {
+			return BOUNDS[(int) this.data & 0x03];
+		}
+
+
+		/**
+		 * Returns whether or not this entry has a best move.
+		 * @return {@code true} if there is a best move, {@code false} otherwise
+		 */
+		public boolean hasMove () {
+			return this.move != 0;
+		}
+
+
+		/**
+		 * Returns the source rank of the best move's first motion.
+		 * @return the source rank
+		 */
+		public byte getMoveSourceRank () {
+			return (byte) (this.move >>> 24);
+		}
+
+
+		/**
+		 * Returns the source file of the best move's first motion.
+		 * @return the source file
+		 */
+		public byte getMoveSourceFile () {
+			return (byte) (this.move >>> 16);
+		}
+
+
+		/**
+		 * Returns whether or not the given move equals the best move of this entry.
+		 * @param move the move
+		 * @return {@code true} if the given move is the best move, {@code false} otherwise
+		 * @throws NullPointerException if the given move is {@code null}
+		 */
+		public boolean isMove (final AbsoluteMotion[] move) {
+			return this.move != 0 && this.move == encodeMove(move);
+		}
+	}
+}
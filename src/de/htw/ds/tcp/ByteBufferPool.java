@@ -0,0 +1,79 @@
+package de.htw.ds.tcp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model pools of direct byte buffers of uniform size. Direct buffers are
+ * expensive to allocate and release, but allow channels to transfer data without copying it into
+ * and out of the Java heap; pooling them therefore allows connections to hold buffers only while
+ * they actually have data in transit. Buffers released into a pool that already holds it's
+ * capacity of idle buffers are left to the garbage collector. Note that this class is thread safe.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class ByteBufferPool {
+	private final int bufferSize;
+	private final BlockingQueue<ByteBuffer> idleBuffers;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param bufferSize the buffer size in bytes
+	 * @param capacity the maximum number of idle buffers retained
+	 * @throws IllegalArgumentException if any of the given arguments is negative
+	 */
+	public ByteBufferPool (final int bufferSize, final int capacity) {
+		if (bufferSize <= 0 | capacity <= 0) throw new IllegalArgumentException();
+
+		this.bufferSize = bufferSize;
+		this.idleBuffers = new ArrayBlockingQueue<>(capacity);
+	}
+
+
+	/**
+	 * Returns the buffer size.
+	 * @return the buffer size in bytes
+	 */
+	public int getBufferSize () {
+		return this.bufferSize;
+	}
+
+
+	/**
+	 * Returns the number of idle buffers.
+	 * @return the idle buffer count
+	 */
+	public int getIdleCount () {
+		return this.idleBuffers.size();
+	}
+
+
+	/**
+	 * Returns an idle buffer, or a newly allocated one if there is none. The buffer returned is
+	 * cleared.
+	 * @return the buffer
+	 */
+	public ByteBuffer acquire () {
+		final ByteBuffer buffer = this.idleBuffers.poll();
+		return buffer == null ? ByteBuffer.allocateDirect(this.bufferSize) : buffer;
+	}
+
+
+	/**
+	 * Returns the given buffer to this pool. Note that the given buffer must not be used anymore
+	 * after calling this method.
+	 * @param buffer the buffer
+	 * @throws NullPointerException if the given buffer is {@code null}
+	 * @throws IllegalArgumentException if the given buffer is not a direct buffer of this pool's
+	 *         buffer size
+	 */
+	public void release (final ByteBuffer buffer) {
+		if (!buffer.isDirect() | buffer.capacity() != this.bufferSize) throw new IllegalArgumentException();
+
+		buffer.clear();
+		this.idleBuffers.offer(buffer);
+	}
+}
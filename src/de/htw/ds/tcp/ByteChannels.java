@@ -0,0 +1,68 @@
+package de.htw.ds.tcp;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * This facade provides byte channel operations complementing the stream operations of
+ * {@linkplain de.sb.java.io.Streams}. Copying between channels using direct buffers avoids
+ * copying the data into and out of the Java heap, and scattering reads and gathering writes
+ * allow a single system call to fill or drain multiple buffers at once.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class ByteChannels {
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private ByteChannels () {}
+
+
+	/**
+	 * Reads all remaining bytes from the given blocking byte source, and writes them to the given
+	 * blocking byte sink, and optionally to the given mirror sink. Returns the number of bytes
+	 * copied, and closes neither source nor sinks. Each read scatters into all given buffers, and
+	 * each write gathers from all of them; direct buffers should be used for efficiency. Note that
+	 * {@link SocketException} and {@link AsynchronousCloseException} are treated as a kind of EOF
+	 * due to the other side terminating the stream, or another thread closing the source.
+	 * @param byteSource the byte source
+	 * @param byteSink the byte sink
+	 * @param mirrorSink the mirror sink, or {@code null} for none
+	 * @param buffers the copy buffers
+	 * @return the number of bytes copied
+	 * @throws NullPointerException if any of the given arguments except the mirror sink is
+	 *         {@code null}
+	 * @throws IllegalArgumentException if no buffer is given
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public long copy (final ScatteringByteChannel byteSource, final GatheringByteChannel byteSink, final WritableByteChannel mirrorSink, final ByteBuffer... buffers) throws IOException {
+		if (buffers.length == 0) throw new IllegalArgumentException();
+		for (final ByteBuffer buffer : buffers) buffer.clear();
+
+		long bytesCopied = 0;
+		try {
+			for (long bytesRead = byteSource.read(buffers); bytesRead != -1; bytesRead = byteSource.read(buffers)) {
+				for (final ByteBuffer buffer : buffers) {
+					buffer.flip();
+					if (mirrorSink != null) {
+						for (final ByteBuffer mirror = buffer.duplicate(); mirror.hasRemaining(); mirrorSink.write(mirror));
+					}
+				}
+
+				for (long bytesRemaining = bytesRead; bytesRemaining > 0; bytesRemaining -= byteSink.write(buffers));
+				for (final ByteBuffer buffer : buffers) buffer.clear();
+				bytesCopied += bytesRead;
+			}
+		} catch (final SocketException | AsynchronousCloseException exception) {
+			// treat as EOF because a TCP stream has been closed by the other side, or locally
+		}
+		return bytesCopied;
+	}
+}
@@ -0,0 +1,209 @@
+package de.htw.ds.tcp;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class limit the connections accepted by a TCP switch: The number of
+ * concurrent connections overall, the number of concurrent connections per client address, and
+ * the accept rate using a token bucket that holds up to one second worth of tokens. When either
+ * the overall limit or the accept rate is exceeded, the switch pauses accepting connections, which
+ * leaves further clients waiting in the service socket's backlog, and eventually makes the
+ * operating system refuse them; therefore, excess load is pushed back onto the clients instead of
+ * degrading service for everyone. Connections exceeding their client's limit are closed right
+ * after being accepted, and counted as rejected. Limits of zero disable the respective check.
+ * Per-client counts are checked and updated atomically using the count map's compute operation,
+ * which also removes them once they drop to zero. Note that this class is thread safe.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class ConnectionLimiter {
+	static private final long MAX_PAUSE = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final AtomicInteger connectionCount;
+	private final Map<InetAddress,Integer> clientConnectionCounts;
+	private final LongAdder rejectedCount;
+	private final LongAdder pauseCount;
+	private volatile int maxConnectionCount;
+	private volatile int maxClientConnectionCount;
+	private volatile double acceptRate;
+	private double tokenCount;
+	private long tokenTimestamp;
+
+
+	/**
+	 * Creates a new instance without limits.
+	 */
+	public ConnectionLimiter () {
+		this.connectionCount = new AtomicInteger();
+		this.clientConnectionCounts = new ConcurrentHashMap<>();
+		this.rejectedCount = new LongAdder();
+		this.pauseCount = new LongAdder();
+		this.tokenTimestamp = System.nanoTime();
+	}
+
+
+	/**
+	 * Returns the maximum number of concurrent connections.
+	 * @return the maximum connection count, or zero for unlimited
+	 */
+	public int getMaxConnectionCount () {
+		return this.maxConnectionCount;
+	}
+
+
+	/**
+	 * Returns the maximum number of concurrent connections per client address.
+	 * @return the maximum client connection count, or zero for unlimited
+	 */
+	public int getMaxClientConnectionCount () {
+		return this.maxClientConnectionCount;
+	}
+
+
+	/**
+	 * Returns the maximum accept rate.
+	 * @return the accept rate in connections per second, or zero for unlimited
+	 */
+	public double getAcceptRate () {
+		return this.acceptRate;
+	}
+
+
+	/**
+	 * Sets the limits. Connections already open are not affected.
+	 * @param maxConnectionCount the maximum number of concurrent connections, or zero for unlimited
+	 * @param maxClientConnectionCount the maximum number of concurrent connections per client
+	 *        address, or zero for unlimited
+	 * @param acceptRate the maximum accept rate in connections per second, or zero for unlimited
+	 * @throws IllegalArgumentException if any of the given values is negative
+	 */
+	public synchronized void setLimits (final int maxConnectionCount, final int maxClientConnectionCount, final double acceptRate) {
+		if (maxConnectionCount < 0 | maxClientConnectionCount < 0 | !(acceptRate >= 0)) throw new IllegalArgumentException();
+
+		this.maxConnectionCount = maxConnectionCount;
+		this.maxClientConnectionCount = maxClientConnectionCount;
+		this.acceptRate = acceptRate;
+		this.tokenCount = Math.max(1, acceptRate);
+		this.tokenTimestamp = System.nanoTime();
+	}
+
+
+	/**
+	 * Returns the number of open connections.
+	 * @return the connection count
+	 */
+	public int getConnectionCount () {
+		return this.connectionCount.get();
+	}
+
+
+	/**
+	 * Returns the number of connections rejected because their client exceeded its limit.
+	 * @return the rejected connection count
+	 */
+	public long getRejectedCount () {
+		return this.rejectedCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of times accepting has been paused because the overall connection limit
+	 * or the accept rate has been exceeded.
+	 * @return the pause count
+	 */
+	public long getPauseCount () {
+		return this.pauseCount.sum();
+	}
+
+
+	/**
+	 * Returns the time to pause before accepting the next connection. Pauses caused by the overall
+	 * connection limit are capped at a few milliseconds, after which the caller is expected to ask
+	 * again.
+	 * @return the pause time in nanoseconds, or zero if a connection may be accepted now
+	 */
+	public synchronized long pauseTime () {
+		final int maxConnectionCount = this.maxConnectionCount;
+		if (maxConnectionCount > 0 && this.connectionCount.get() >= maxConnectionCount) return MAX_PAUSE;
+
+		final double acceptRate = this.acceptRate;
+		if (acceptRate == 0) return 0;
+
+		final long timestamp = System.nanoTime();
+		this.tokenCount = Math.min(Math.max(1, acceptRate), this.tokenCount + 1E-9 * (timestamp - this.tokenTimestamp) * acceptRate);
+		this.tokenTimestamp = timestamp;
+		return this.tokenCount >= 1 ? 0 : (long) Math.ceil(1E9 * (1 - this.tokenCount) / acceptRate);
+	}
+
+
+	/**
+	 * Waits until a connection may be accepted, see {@linkplain #pauseTime()}, and records a pause
+	 * if the current thread had to wait.
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 */
+	public void awaitAccept () throws InterruptedException {
+		long pauseTime = this.pauseTime();
+		if (pauseTime == 0) return;
+
+		this.pauseCount.increment();
+		for (; pauseTime > 0; pauseTime = this.pauseTime()) {
+			TimeUnit.NANOSECONDS.sleep(pauseTime);
+		}
+	}
+
+
+	/**
+	 * Records a pause of the caller's accept loop.
+	 */
+	public void recordPause () {
+		this.pauseCount.increment();
+	}
+
+
+	/**
+	 * Records a connection accepted from the given client address, which consumes a token from
+	 * the accept rate's bucket. If the client exceeds its limit, the connection is not recorded
+	 * but counted as rejected instead, and must be closed by the caller.
+	 * @param clientAddress the client address
+	 * @return {@code true} if the connection is admitted, {@code false} if it is rejected
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public boolean open (final InetAddress clientAddress) {
+		synchronized (this) {
+			if (this.acceptRate > 0) this.tokenCount -= 1;
+		}
+
+		final int maxClientConnectionCount = this.maxClientConnectionCount;
+		final boolean[] admitted = new boolean[1];
+		this.clientConnectionCounts.compute(clientAddress, (key, count) -> {
+			final int clientConnectionCount = count == null ? 0 : count;
+			admitted[0] = clientConnectionCount < maxClientConnectionCount | maxClientConnectionCount == 0;
+			return admitted[0] ? clientConnectionCount + 1 : count;
+		});
+		if (!admitted[0]) {
+			this.rejectedCount.increment();
+			return false;
+		}
+
+		this.connectionCount.incrementAndGet();
+		return true;
+	}
+
+
+	/**
+	 * Records a connection from the given client address as closed, which must have been admitted
+	 * before.
+	 * @param clientAddress the client address
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public void close (final InetAddress clientAddress) {
+		this.clientConnectionCounts.computeIfPresent(clientAddress, (key, count) -> count > 1 ? count - 1 : null);
+		this.connectionCount.decrementAndGet();
+	}
+}
@@ -0,0 +1,218 @@
+package de.htw.ds.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model the heads of HTTP/1.x messages, i.e. a request or status line
+ * followed by header lines. Heads are read line by line directly from a stream, which leaves the
+ * message body and any pipelined messages unread; header lines are retained verbatim, so heads
+ * can be relayed unchanged except for headers explicitly added or removed. Header names are
+ * compared ignoring case, as required by RFC 7230.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+final class HttpMessageHead {
+	static private final int MAX_LINE_LENGTH = 0x2000;
+	static private final int MAX_HEADER_COUNT = 128;
+	static private final byte[] LINE_SEPARATOR = { '\r', '\n' };
+
+	private final String startLine;
+	private final List<String> headerLines;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param startLine the request or status line
+	 * @param headerLines the header lines
+	 */
+	private HttpMessageHead (final String startLine, final List<String> headerLines) {
+		this.startLine = startLine;
+		this.headerLines = headerLines;
+	}
+
+
+	/**
+	 * Returns the request or status line.
+	 * @return the start line
+	 */
+	public String getStartLine () {
+		return this.startLine;
+	}
+
+
+	/**
+	 * Returns the values of all headers with the given name, in the order they were received.
+	 * @param name the header name
+	 * @return the header values, trimmed
+	 */
+	public List<String> getHeaders (final String name) {
+		final List<String> values = new ArrayList<>();
+		for (final String headerLine : this.headerLines) {
+			final int colonOffset = headerLine.indexOf(':');
+			if (colonOffset == name.length() && headerLine.regionMatches(true, 0, name, 0, colonOffset)) {
+				values.add(headerLine.substring(colonOffset + 1).trim());
+			}
+		}
+		return values;
+	}
+
+
+	/**
+	 * Returns whether or not the comma separated values of the headers with the given name contain
+	 * the given token, ignoring case.
+	 * @param name the header name
+	 * @param token the token
+	 * @return {@code true} if the token is contained, {@code false} otherwise
+	 */
+	public boolean containsToken (final String name, final String token) {
+		for (final String value : this.getHeaders(name)) {
+			for (final String element : value.split(",")) {
+				if (element.trim().equalsIgnoreCase(token)) return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns the value of the cookie with the given name, as transmitted by the Cookie headers of
+	 * a request.
+	 * @param name the cookie name
+	 * @return the cookie value, or {@code null} for none
+	 */
+	public String getCookie (final String name) {
+		for (final String value : this.getHeaders("Cookie")) {
+			for (final String cookie : value.split(";")) {
+				final int equalsOffset = cookie.indexOf('=');
+				if (equalsOffset != -1 && cookie.substring(0, equalsOffset).trim().equals(name)) return cookie.substring(equalsOffset + 1).trim();
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Adds a header with the given name and value.
+	 * @param name the header name
+	 * @param value the header value
+	 */
+	public void addHeader (final String name, final String value) {
+		this.headerLines.add(name + ": " + value);
+	}
+
+
+	/**
+	 * Removes all headers with the given name.
+	 * @param name the header name
+	 */
+	public void removeHeaders (final String name) {
+		for (final Iterator<String> iterator = this.headerLines.iterator(); iterator.hasNext(); ) {
+			final String headerLine = iterator.next();
+			final int colonOffset = headerLine.indexOf(':');
+			if (colonOffset == name.length() && headerLine.regionMatches(true, 0, name, 0, colonOffset)) iterator.remove();
+		}
+	}
+
+
+	/**
+	 * Writes this head into the given sink, terminated by an empty line.
+	 * @param sink the byte sink
+	 * @return the number of bytes written
+	 * @throws IOException if there is an I/O related problem
+	 */
+	public long write (final OutputStream sink) throws IOException {
+		long byteCount = writeLine(sink, this.startLine);
+		for (final String headerLine : this.headerLines) {
+			byteCount += writeLine(sink, headerLine);
+		}
+		return byteCount + writeLine(sink, "");
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString () {
+		return this.startLine;
+	}
+
+
+	/**
+	 * Reads a message head from the given source. Empty lines preceding the start line are
+	 * skipped, as recommended by RFC 7230 for robustness.
+	 * @param source the byte source
+	 * @return the message head, or {@code null} if the source ends before the start line
+	 * @throws ProtocolException if the head is malformed or too large
+	 * @throws IOException if there is an I/O related problem, or if the source ends within the
+	 *         head
+	 */
+	static public HttpMessageHead read (final InputStream source) throws IOException {
+		String startLine;
+		do {
+			startLine = readLine(source, true);
+			if (startLine == null) return null;
+		} while (startLine.isEmpty());
+
+		final List<String> headerLines = new ArrayList<>();
+		for (String headerLine = readLine(source, false); !headerLine.isEmpty(); headerLine = readLine(source, false)) {
+			if (headerLines.size() == MAX_HEADER_COUNT) throw new ProtocolException("too many header lines");
+			if (headerLine.indexOf(':') <= 0 || Character.isWhitespace(headerLine.charAt(0))) throw new ProtocolException("malformed header line: " + headerLine);
+			headerLines.add(headerLine);
+		}
+		return new HttpMessageHead(startLine, headerLines);
+	}
+
+
+	/**
+	 * Reads a line from the given source, which must be terminated by a line feed, optionally
+	 * preceded by a carriage return. Bytes are decoded using ISO-8859-1, which maps each byte to
+	 * one character and therefore allows lines to be written back unchanged.
+	 * @param source the byte source
+	 * @param endAllowed whether or not the source may end before the line
+	 * @return the line, without terminator, or {@code null} if the source ends before the line and
+	 *         this is allowed
+	 * @throws ProtocolException if the line is too long
+	 * @throws IOException if there is an I/O related problem, or if the source ends within the
+	 *         line or before the line although this is not allowed
+	 */
+	static public String readLine (final InputStream source, final boolean endAllowed) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		for (int value = source.read(); value != '\n'; value = source.read()) {
+			if (value == -1) {
+				if (endAllowed & builder.length() == 0) return null;
+				throw new EOFException();
+			}
+			if (builder.length() == MAX_LINE_LENGTH) throw new ProtocolException("line too long");
+			builder.append((char) value);
+		}
+
+		final int length = builder.length();
+		if (length > 0 && builder.charAt(length - 1) == '\r') builder.setLength(length - 1);
+		return builder.toString();
+	}
+
+
+	/**
+	 * Writes the given line into the given sink, terminated by a carriage return and a line feed.
+	 * @param sink the byte sink
+	 * @param line the line
+	 * @return the number of bytes written
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public long writeLine (final OutputStream sink, final String line) throws IOException {
+		final byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+		sink.write(bytes);
+		sink.write(LINE_SEPARATOR);
+		return bytes.length + LINE_SEPARATOR.length;
+	}
+}
@@ -0,0 +1,91 @@
+package de.htw.ds.tcp;
+
+import java.util.concurrent.atomic.LongAdder;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class count latency samples within fixed buckets, whose upper bounds grow
+ * roughly exponentially from 100µs to 10s, plus an overflow bucket. All counters are based on
+ * striped adders, which allows concurrent threads to record samples without contending for a
+ * shared memory location. Note that this class is thread safe.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class LatencyHistogram {
+	static private final long[] BUCKET_BOUNDS = {
+		100000L, 250000L, 500000L, 1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L,
+		100000000L, 250000000L, 500000000L, 1000000000L, 2500000000L, 5000000000L, 10000000000L
+	};
+
+	private final LongAdder[] bucketCounts;
+	private final LongAdder sum;
+
+
+	/**
+	 * Creates a new instance.
+	 */
+	public LatencyHistogram () {
+		this.bucketCounts = new LongAdder[BUCKET_BOUNDS.length + 1];
+		for (int index = 0; index < this.bucketCounts.length; ++index) {
+			this.bucketCounts[index] = new LongAdder();
+		}
+		this.sum = new LongAdder();
+	}
+
+
+	/**
+	 * Returns the inclusive upper bounds of all buckets except the overflow bucket.
+	 * @return the bucket bounds in nanoseconds
+	 */
+	static public long[] getBucketBounds () {
+		return BUCKET_BOUNDS.clone();
+	}
+
+
+	/**
+	 * Returns the number of samples per bucket, with the overflow bucket last.
+	 * @return the bucket counts
+	 */
+	public long[] getBucketCounts () {
+		final long[] bucketCounts = new long[this.bucketCounts.length];
+		for (int index = 0; index < bucketCounts.length; ++index) {
+			bucketCounts[index] = this.bucketCounts[index].sum();
+		}
+		return bucketCounts;
+	}
+
+
+	/**
+	 * Returns the number of samples.
+	 * @return the sample count
+	 */
+	public long getCount () {
+		long count = 0;
+		for (final LongAdder bucketCount : this.bucketCounts) {
+			count += bucketCount.sum();
+		}
+		return count;
+	}
+
+
+	/**
+	 * Returns the sum of all samples.
+	 * @return the sample sum in nanoseconds
+	 */
+	public long getSum () {
+		return this.sum.sum();
+	}
+
+
+	/**
+	 * Records the given latency sample.
+	 * @param latency the latency in nanoseconds
+	 */
+	public void record (final long latency) {
+		int index = 0;
+		while (index < BUCKET_BOUNDS.length && latency > BUCKET_BOUNDS[index]) ++index;
+
+		this.bucketCounts[index].increment();
+		this.sum.add(latency);
+	}
+}
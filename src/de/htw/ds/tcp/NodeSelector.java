@@ -0,0 +1,23 @@
+package de.htw.ds.tcp;
+
+import java.net.InetAddress;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Node selectors determine which node a TCP switch connects a client to. Selectors may take
+ * node weights and live node statistics into account, see {@linkplain TcpSwitchNode}. Note that
+ * implementations must be thread safe, as selections may be performed concurrently.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public interface NodeSelector {
+
+	/**
+	 * Selects a node for a connection from the given client address.
+	 * @param nodes the nodes to select from, never empty
+	 * @param clientAddress the client address
+	 * @return the node selected
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	TcpSwitchNode select (TcpSwitchNode[] nodes, InetAddress clientAddress);
+}
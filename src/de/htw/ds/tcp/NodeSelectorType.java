@@ -0,0 +1,208 @@
+package de.htw.ds.tcp;
+
+import java.net.InetAddress;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * This enum defines the types of node selectors available to TCP switches:
+ * <ul>
+ * <li>{@linkplain #RANDOM} selects nodes randomly, with probabilities proportional to their
+ * weights.</li>
+ * <li>{@linkplain #CLIENT_HASH} selects nodes pseudo-randomly, but repeatably for each client
+ * address, which is used for session awareness. Weighted rendezvous hashing scores each node by
+ * hashing it's key together with the client address, and selects the node with the highest score;
+ * therefore, adding or removing a node only moves the clients gained or lost by it, which is
+ * roughly it's share of the total weight, while all other clients keep their nodes.</li>
+ * <li>{@linkplain #LEAST_CONNECTIONS} selects the node with the least active connections per
+ * weight.</li>
+ * <li>{@linkplain #WEIGHTED_ROUND_ROBIN} selects nodes in turn, as often as their weights demand,
+ * and interleaved as smoothly as possible.</li>
+ * <li>{@linkplain #POWER_OF_TWO_CHOICES} selects the node with less active connections per weight
+ * among two random ones, which approaches least connections without scanning all nodes, and
+ * without multiple switches herding onto the same node.</li>
+ * <li>{@linkplain #LATENCY_EWMA} selects the node with the least expected latency per weight,
+ * i.e. the sum of it's average connect and first byte latencies multiplied by it's active
+ * connections plus one. Nodes without latency samples are preferred, in order to probe them.</li>
+ * </ul>
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public enum NodeSelectorType {
+	RANDOM,
+	CLIENT_HASH,
+	LEAST_CONNECTIONS,
+	WEIGHTED_ROUND_ROBIN,
+	POWER_OF_TWO_CHOICES,
+	LATENCY_EWMA;
+
+
+	/**
+	 * Returns a new node selector of this type.
+	 * @return the node selector
+	 */
+	public NodeSelector newNodeSelector () {
+		switch (this) {
+			case RANDOM:
+				return (nodes, clientAddress) -> selectWeighted(nodes, ThreadLocalRandom.current());
+			case CLIENT_HASH:
+				return (nodes, clientAddress) -> selectRendezvous(nodes, clientAddress);
+			case LEAST_CONNECTIONS:
+				return (nodes, clientAddress) -> selectCheapest(nodes, node -> node.getActiveCount());
+			case WEIGHTED_ROUND_ROBIN:
+				return new WeightedRoundRobinSelector();
+			case POWER_OF_TWO_CHOICES:
+				return (nodes, clientAddress) -> {
+					if (nodes.length == 1) return nodes[0];
+					final int leftIndex = ThreadLocalRandom.current().nextInt(nodes.length);
+					final int rightIndex = (leftIndex + 1 + ThreadLocalRandom.current().nextInt(nodes.length - 1)) % nodes.length;
+					final TcpSwitchNode left = nodes[leftIndex], right = nodes[rightIndex];
+					return (long) left.getActiveCount() * right.getWeight() <= (long) right.getActiveCount() * left.getWeight() ? left : right;
+				};
+			case LATENCY_EWMA:
+				return (nodes, clientAddress) -> selectCheapest(nodes, node -> (node.getConnectLatency() + node.getFirstByteLatency()) * (node.getActiveCount() + 1));
+			default:
+				throw new AssertionError();
+		}
+	}
+
+
+	/**
+	 * Selects a node randomly, with probabilities proportional to the node weights.
+	 * @param nodes the nodes
+	 * @param random the random generator
+	 * @return the node selected
+	 */
+	static private TcpSwitchNode selectWeighted (final TcpSwitchNode[] nodes, final Random random) {
+		int totalWeight = 0;
+		for (final TcpSwitchNode node : nodes) totalWeight += node.getWeight();
+
+		int weight = random.nextInt(totalWeight);
+		for (final TcpSwitchNode node : nodes) {
+			weight -= node.getWeight();
+			if (weight < 0) return node;
+		}
+		throw new AssertionError();
+	}
+
+
+	/**
+	 * Selects a node using weighted rendezvous hashing: Each node's score is it's weight divided by
+	 * the negative logarithm of a uniform hash in range ]0, 1[, derived from the client address
+	 * and the node key. The node with the highest score is selected, which happens with a
+	 * probability proportional to it's weight.
+	 * @param nodes the nodes
+	 * @param clientAddress the client address
+	 * @return the node selected
+	 */
+	static private TcpSwitchNode selectRendezvous (final TcpSwitchNode[] nodes, final InetAddress clientAddress) {
+		long clientHash = 0xcbf29ce484222325L;
+		for (final byte value : clientAddress.getAddress()) {
+			clientHash = (clientHash ^ (value & 0xFF)) * 0x100000001b3L;
+		}
+
+		TcpSwitchNode selectedNode = null;
+		double selectedScore = Double.NEGATIVE_INFINITY;
+		for (final TcpSwitchNode node : nodes) {
+			final double hash = ((mix(clientHash ^ mix(node.getKey())) >>> 11) + 0.5) * 0x1.0p-53;
+			final double score = -node.getWeight() / Math.log(hash);
+			if (score > selectedScore) {
+				selectedNode = node;
+				selectedScore = score;
+			}
+		}
+		return selectedNode;
+	}
+
+
+	/**
+	 * Returns the given value with it's bits thoroughly mixed, using the finalizer of the
+	 * SplitMix64 generator.
+	 * @param value the value
+	 * @return the mixed value
+	 */
+	static private long mix (long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+
+	/**
+	 * Selects the node with the least cost per weight, starting the scan at a random node in
+	 * order to break ties randomly.
+	 * @param nodes the nodes
+	 * @param costFunction the node cost function
+	 * @return the node selected
+	 */
+	static private TcpSwitchNode selectCheapest (final TcpSwitchNode[] nodes, final CostFunction costFunction) {
+		final int offset = ThreadLocalRandom.current().nextInt(nodes.length);
+
+		TcpSwitchNode cheapestNode = null;
+		double cheapestCost = Double.POSITIVE_INFINITY;
+		for (int index = 0; index < nodes.length; ++index) {
+			final TcpSwitchNode node = nodes[(offset + index) % nodes.length];
+			final double cost = costFunction.cost(node) / node.getWeight();
+			if (cost < cheapestCost | cheapestNode == null) {
+				cheapestNode = node;
+				cheapestCost = cost;
+			}
+		}
+		return cheapestNode;
+	}
+
+
+
+	/**
+	 * Node cost functions calculate the cost of selecting a node, before taking it's weight into
+	 * account.
+	 */
+	@FunctionalInterface
+	static private interface CostFunction {
+
+		/**
+		 * Returns the cost of selecting the given node.
+		 * @param node the node
+		 * @return the cost
+		 */
+		double cost (TcpSwitchNode node);
+	}
+
+
+
+	/**
+	 * Instances of this static inner class select nodes using smooth weighted round robin: Each
+	 * selection raises every node's current weight by it's configured weight, selects the node
+	 * with the highest current weight, and lowers the latter by the total weight. Nodes not
+	 * selected before start with a current weight of zero.
+	 */
+	static private final class WeightedRoundRobinSelector implements NodeSelector {
+		private final Map<TcpSwitchNode,Integer> currentWeights = new IdentityHashMap<>();
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public synchronized TcpSwitchNode select (final TcpSwitchNode[] nodes, final InetAddress clientAddress) {
+			if (this.currentWeights.size() > nodes.length) this.currentWeights.clear();
+
+			TcpSwitchNode selectedNode = null;
+			int selectedWeight = Integer.MIN_VALUE, totalWeight = 0;
+			for (final TcpSwitchNode node : nodes) {
+				final int currentWeight = this.currentWeights.getOrDefault(node, 0) + node.getWeight();
+				this.currentWeights.put(node, currentWeight);
+				totalWeight += node.getWeight();
+				if (currentWeight > selectedWeight) {
+					selectedNode = node;
+					selectedWeight = currentWeight;
+				}
+			}
+
+			this.currentWeights.put(selectedNode, selectedWeight - totalWeight);
+			return selectedNode;
+		}
+	}
+}
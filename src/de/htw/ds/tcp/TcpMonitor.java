@@ -2,9 +2,13 @@ package de.htw.ds.tcp;
 
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -13,8 +17,6 @@ import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 import de.sb.java.TypeMetadata;
-import de.sb.java.io.MultiOutputStream;
-import de.sb.java.io.Streams;
 import de.sb.java.net.SocketAddress;
 
 
@@ -25,18 +27,23 @@ import de.sb.java.net.SocketAddress;
  */
 @TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
 public final class TcpMonitor implements Runnable, AutoCloseable {
+	static private final String BUFFER_SIZE_PROPERTY = "de.htw.ds.tcp.monitor.bufferSize";
+	static private final int DEFAULT_BUFFER_SIZE = 0x4000;
+	static private final int BUFFER_POOL_CAPACITY = 256;
 
 	/**
 	 * Instances of this static inner class handle TCP client connections accepted by a TCP monitor.
+	 * Data is relayed through pooled direct buffers using socket channels, and mirrored into a log
+	 * buffer for each direction.
 	 */
-	// TODO: Remove
-	@SuppressWarnings("unused")
 	static private class ConnectionHandler implements Runnable {
-		private static final int BUFFER_SIZE = 1024;
+		static private final int SCATTER_COUNT = 4;
+
 		private final Socket clientConnection;
 		private final ExecutorService executorService;
 		private final InetSocketAddress forwardAddress;
 		private final TcpMonitorWatcher watcher;
+		private final ByteBufferPool bufferPool;
 
 
 		/**
@@ -45,64 +52,90 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 		 * @param executorService the executor service
 		 * @param forwardAddress the forward address
 		 * @param watcher the watcher
+		 * @param bufferPool the buffer pool
 		 * @throws NullPointerException if any of the given arguments is {@code null}
 		 */
-		public ConnectionHandler (final Socket clientConnection, final ExecutorService executorService, final InetSocketAddress forwardAddress, final TcpMonitorWatcher watcher) {
-	
-			if (clientConnection == null | executorService == null | forwardAddress == null | watcher == null) throw new NullPointerException();
+		public ConnectionHandler (final Socket clientConnection, final ExecutorService executorService, final InetSocketAddress forwardAddress, final TcpMonitorWatcher watcher, final ByteBufferPool bufferPool) {
+			if (clientConnection == null | executorService == null | forwardAddress == null | watcher == null | bufferPool == null) throw new NullPointerException();
 
 			this.clientConnection = clientConnection;
 			this.executorService = executorService;
 			this.forwardAddress = forwardAddress;
 			this.watcher = watcher;
+			this.bufferPool = bufferPool;
 		}
 
 
 		/**
 		 * Handles the client connection by transporting all data to a new server connection, and
-		 * vice versa. Closes all connections upon completion.
+		 * vice versa. The upstream transport is performed by a pooled thread, while the downstream
+		 * transport is performed by the current thread. Closes all connections upon completion.
 		 */
 		public void run () {
-			try (Socket serverConnection = new Socket(this.forwardAddress.getHostName(), this.forwardAddress.getPort())) {
-				try (Socket clientConnection = this.clientConnection) {
-					try (ByteArrayOutputStream upstreamLogBuffer = new ByteArrayOutputStream()) {
-						try (ByteArrayOutputStream downstreamLogBuffer = new ByteArrayOutputStream()) {
-							long connectionOpenTime = System.currentTimeMillis();
-							try (MultiOutputStream monitoredUpstream =
-										 new MultiOutputStream(serverConnection.getOutputStream(), upstreamLogBuffer)) {
-								try (MultiOutputStream monitoredDownstream =
-											 new MultiOutputStream(clientConnection.getOutputStream(), downstreamLogBuffer)) {
-
-									Callable<?> transporter1 = () -> Streams.copy(clientConnection.getInputStream(), monitoredUpstream, BUFFER_SIZE);
-									Callable<?> transporter2 = () -> Streams.copy(serverConnection.getInputStream(), monitoredDownstream, BUFFER_SIZE);
-									Future<?> future1 = executorService.submit(transporter1);
-									Future<?> future2 = executorService.submit(transporter2);
-
-									try {
-										future1.get();
-										future2.get();
-									}
-									catch (ExecutionException e) {
-										Throwable t = e.getCause();
-										if (t instanceof Error)
-											throw (Error)t;
-										throw (Exception)t;
-									}
-									long connectionCloseTime = System.currentTimeMillis();
-									this.watcher.recordCreated(new TcpMonitorRecord(connectionOpenTime, connectionCloseTime, upstreamLogBuffer.toByteArray(), downstreamLogBuffer.toByteArray()));
-								}
-							}
-						}
+			try (SocketChannel serverChannel = SocketChannel.open(this.forwardAddress)) {
+				try (SocketChannel clientChannel = this.clientConnection.getChannel()) {
+					final ByteArrayOutputStream upstreamLogBuffer = new ByteArrayOutputStream();
+					final ByteArrayOutputStream downstreamLogBuffer = new ByteArrayOutputStream();
+					final long connectionOpenTime = System.currentTimeMillis();
+
+					final Future<?> future = this.executorService.submit(() -> this.transport(clientChannel, serverChannel, upstreamLogBuffer));
+					this.transport(serverChannel, clientChannel, downstreamLogBuffer);
+					try {
+						future.get();
+					} catch (final ExecutionException exception) {
+						final Throwable cause = exception.getCause();
+						if (cause instanceof Error) throw (Error) cause;
+						throw (Exception) cause;
 					}
+
+					final long connectionCloseTime = System.currentTimeMillis();
+					this.watcher.recordCreated(new TcpMonitorRecord(connectionOpenTime, connectionCloseTime, upstreamLogBuffer.toByteArray(), downstreamLogBuffer.toByteArray()));
 				}
 			} catch (final Exception exception) {
+				try { this.clientConnection.close(); } catch (final Exception nestedException) {}
 				this.watcher.exceptionCatched(exception);
 			}
 		}
+
+
+		/**
+		 * Transports all data from the given source channel into the given sink channel, mirrors
+		 * it into the given log buffer, and shuts down the sink's output afterwards, which
+		 * propagates the end of the data.
+		 * @param sourceChannel the source channel
+		 * @param sinkChannel the sink channel
+		 * @param logBuffer the log buffer
+		 * @return the number of bytes transported
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private long transport (final SocketChannel sourceChannel, final SocketChannel sinkChannel, final OutputStream logBuffer) throws IOException {
+			final ByteBuffer[] buffers = new ByteBuffer[SCATTER_COUNT];
+			for (int index = 0; index < buffers.length; ++index) {
+				buffers[index] = this.bufferPool.acquire();
+			}
+
+			try {
+				final long bytesCopied = ByteChannels.copy(sourceChannel, sinkChannel, Channels.newChannel(logBuffer), buffers);
+				try {
+					sinkChannel.shutdownOutput();
+				} catch (final IOException exception) {
+					// already closed by the other side
+				}
+				return bytesCopied;
+			} finally {
+				for (final ByteBuffer buffer : buffers) {
+					this.bufferPool.release(buffer);
+				}
+			}
+		}
 	}
+
+
 	/**
 	 * Application entry point. The given runtime parameters must be a service port, a server
-	 * context directory, and the forward socket-address as address:port combination.
+	 * context directory, and the forward socket-address as address:port combination. The system
+	 * property {@value #BUFFER_SIZE_PROPERTY} optionally defines the relay buffer size; it
+	 * defaults to {@value #DEFAULT_BUFFER_SIZE}.
 	 * @param args the given runtime arguments
 	 * @throws IllegalArgumentException if the given service port is outside range [0, 0xFFFF]
 	 * @throws IOException if the given port is already in use or cannot be bound, if the given
@@ -115,6 +148,7 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 		final int servicePort = Integer.parseInt(args[0]);
 		final Path contextPath = Paths.get(args[1]).normalize();
 		final InetSocketAddress forwardAddress = new SocketAddress(args[2]).toInetSocketAddress();
+		final int bufferSize = Integer.parseInt(System.getProperty(BUFFER_SIZE_PROPERTY, Integer.toString(DEFAULT_BUFFER_SIZE)));
 
 		final TcpMonitorWatcher watcher = new TcpMonitorWatcher() {
 			public void exceptionCatched (final Exception exception) {
@@ -135,12 +169,13 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 			}
 		};
 
-		try (TcpMonitor server = new TcpMonitor(servicePort, forwardAddress, watcher)) {
+		try (TcpMonitor server = new TcpMonitor(servicePort, forwardAddress, watcher, bufferSize)) {
 			// print welcome message
 			System.out.println("TCP monitor running on one acceptor thread, enter \"quit\" to stop.");
 			System.out.format("Service port is %s.\n", server.getServicePort());
 			System.out.format("Forward socket address is %s:%s.\n", server.getForwardAddress().getHostName(), server.getForwardAddress().getPort());
 			System.out.format("Context directory is %s.\n", contextPath);
+			System.out.format("Relay buffer size is %s.\n", server.getBufferSize());
 			System.out.format("Startup time is %sms.\n", System.currentTimeMillis() - timestamp);
 
 			// wait for stop signal on System.in
@@ -148,8 +183,9 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 			while (!"quit".equals(charSource.readLine()));
 		}
 	}
-	private final ServerSocket serviceSocket;
+	private final ServerSocketChannel serviceChannel;
 	private final ExecutorService executorService;
+	private final ByteBufferPool bufferPool;
 
 
 	private final InetSocketAddress forwardAddress;
@@ -159,7 +195,7 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 
 
 	/**
-	 * Public constructor.
+	 * Public constructor, using relay buffers of default size.
 	 * @param servicePort the service port
 	 * @param forwardAddress the forward address
 	 * @param watcher the monitor watcher that is notified of connection activity
@@ -168,10 +204,27 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 	 * @throws IOException if the given port is already in use, or cannot be bound
 	 */
 	public TcpMonitor (final int servicePort, final InetSocketAddress forwardAddress, final TcpMonitorWatcher watcher) throws IOException {
+		this(servicePort, forwardAddress, watcher, DEFAULT_BUFFER_SIZE);
+	}
+
+
+	/**
+	 * Public constructor.
+	 * @param servicePort the service port
+	 * @param forwardAddress the forward address
+	 * @param watcher the monitor watcher that is notified of connection activity
+	 * @param bufferSize the size of the direct buffers used for relaying
+	 * @throws NullPointerException if the given address or watcher is {@code null}
+	 * @throws IllegalArgumentException if the given service port is outside range [0, 0xFFFF], or
+	 *         if the given buffer size is negative
+	 * @throws IOException if the given port is already in use, or cannot be bound
+	 */
+	public TcpMonitor (final int servicePort, final InetSocketAddress forwardAddress, final TcpMonitorWatcher watcher, final int bufferSize) throws IOException {
 		if (forwardAddress == null | watcher == null) throw new NullPointerException();
 
+		this.bufferPool = new ByteBufferPool(bufferSize, BUFFER_POOL_CAPACITY);
 		this.executorService = Executors.newCachedThreadPool();
-		this.serviceSocket = new ServerSocket(servicePort);
+		this.serviceChannel = ServerSocketChannel.open().bind(new InetSocketAddress(servicePort));
 		this.forwardAddress = forwardAddress;
 		this.watcher = watcher;
 
@@ -186,7 +239,7 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 	 */
 	public void close () {
 		try {
-			this.serviceSocket.close();
+			this.serviceChannel.close();
 		} catch (final Throwable exception) {}
 		this.executorService.shutdown();
 	}
@@ -207,7 +260,16 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 	 * @return the service port
 	 */
 	public int getServicePort () {
-		return this.serviceSocket.getLocalPort();
+		return this.serviceChannel.socket().getLocalPort();
+	}
+
+
+	/**
+	 * Returns the size of the direct buffers used for relaying.
+	 * @return the buffer size
+	 */
+	public int getBufferSize () {
+		return this.bufferPool.getBufferSize();
 	}
 
 
@@ -218,11 +280,11 @@ public final class TcpMonitor implements Runnable, AutoCloseable {
 		while (true) {
 			Socket clientConnection = null;
 			try {
-				clientConnection = this.serviceSocket.accept();
+				clientConnection = this.serviceChannel.accept().socket();
 
-				final ConnectionHandler connectionHandler = new ConnectionHandler(clientConnection, this.executorService, this.forwardAddress, this.watcher);
+				final ConnectionHandler connectionHandler = new ConnectionHandler(clientConnection, this.executorService, this.forwardAddress, this.watcher, this.bufferPool);
 				this.executorService.execute(connectionHandler);
-			} catch (final SocketException exception) {
+			} catch (final SocketException | ClosedChannelException exception) {
 				break;
 			} catch (final Exception exception) {
 				try {
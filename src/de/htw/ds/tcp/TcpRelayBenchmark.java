@@ -0,0 +1,151 @@
+package de.htw.ds.tcp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import de.sb.java.Threads;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Benchmark comparing the relay paths of a TCP switch: Stream based relaying in blocking mode,
+ * channel based relaying in blocking mode, and non-blocking mode. Each configuration relays the
+ * same amount of data through a number of concurrent connections to a local echo server, after a
+ * warm-up round that is not measured; the result is reported as throughput per configuration.
+ * Note that this class is declared final because it provides an application entry point, and is
+ * therefore not supposed to be extended by subclassing.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class TcpRelayBenchmark {
+	static private final int PROCESSOR_COUNT = Runtime.getRuntime().availableProcessors();
+	static private final int ECHO_BUFFER_SIZE = 0x10000;
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private TcpRelayBenchmark () {}
+
+
+	/**
+	 * Application entry point. The given arguments are optionally the number of megabytes relayed
+	 * per connection and round (default is 64), the number of concurrent connections (default is
+	 * 4), and the relay buffer size for channel based relaying (default is 16384).
+	 * @param args the runtime arguments
+	 * @throws NumberFormatException if any of the given numbers is not a number
+	 * @throws IllegalArgumentException if any of the given numbers is negative
+	 * @throws IOException if there is an I/O related problem
+	 * @throws ExecutionException if a connection fails
+	 * @throws InterruptedException if the benchmark is interrupted by another thread
+	 */
+	static public void main (final String[] args) throws IOException, ExecutionException, InterruptedException {
+		final int megabyteCount = args.length <= 0 ? 64 : Integer.parseInt(args[0]);
+		final int connectionCount = args.length <= 1 ? 4 : Integer.parseInt(args[1]);
+		final int bufferSize = args.length <= 2 ? 0x4000 : Integer.parseInt(args[2]);
+		if (megabyteCount <= 0 | connectionCount <= 0 | bufferSize <= 0) throw new IllegalArgumentException();
+
+		final ExecutorService threadPool = Executors.newCachedThreadPool(Threads.newDaemonThreadFactory());
+		try (ServerSocketChannel echoChannel = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			threadPool.execute(() -> echo(echoChannel, threadPool));
+			final InetSocketAddress echoAddress = (InetSocketAddress) echoChannel.getLocalAddress();
+
+			System.out.format("Relaying %dMB through each of %d connections.\n", megabyteCount, connectionCount);
+			final String[] labels = { "blocking/streams", "blocking/channels", "non-blocking" };
+			final int[][] configurations = { { 0, 0 }, { 0, bufferSize }, { PROCESSOR_COUNT, bufferSize } };
+			for (int index = 0; index < configurations.length; ++index) {
+				try (TcpSwitch tcpSwitch = new TcpSwitch(0, false, configurations[index][0], configurations[index][1], new TcpSwitchNode(echoAddress))) {
+					final InetSocketAddress switchAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), tcpSwitch.getServicePort());
+					relay(switchAddress, threadPool, 1, connectionCount);
+
+					final long before = System.nanoTime();
+					final long byteCount = relay(switchAddress, threadPool, megabyteCount, connectionCount);
+					final long elapsed = System.nanoTime() - before;
+					System.out.format("%s: %.1fMB/s\n", labels[index], 1E9 * byteCount / elapsed / (1 << 20));
+				}
+			}
+		} finally {
+			threadPool.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Relays the given number of megabytes through each of the given number of concurrent
+	 * connections to the given address, and verifies they are echoed completely.
+	 * @param address the switch address
+	 * @param threadPool the thread pool
+	 * @param megabyteCount the number of megabytes per connection
+	 * @param connectionCount the number of concurrent connections
+	 * @return the number of bytes echoed
+	 * @throws ExecutionException if a connection fails
+	 * @throws InterruptedException if the relay is interrupted by another thread
+	 */
+	static private long relay (final InetSocketAddress address, final ExecutorService threadPool, final int megabyteCount, final int connectionCount) throws ExecutionException, InterruptedException {
+		final List<Future<Long>> futures = new ArrayList<>();
+		for (int index = 0; index < connectionCount; ++index) {
+			futures.add(threadPool.submit(() -> {
+				try (SocketChannel channel = SocketChannel.open(address)) {
+					final Future<?> future = threadPool.submit(() -> {
+						final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+						for (int count = 0; count < megabyteCount; ++count) {
+							buffer.clear();
+							while (buffer.hasRemaining()) channel.write(buffer);
+						}
+						channel.shutdownOutput();
+						return null;
+					});
+
+					long byteCount = 0;
+					final ByteBuffer buffer = ByteBuffer.allocateDirect(ECHO_BUFFER_SIZE);
+					for (int bytesRead = channel.read(buffer); bytesRead != -1; bytesRead = channel.read(buffer)) {
+						byteCount += bytesRead;
+						buffer.clear();
+					}
+					future.get();
+
+					if (byteCount != (long) megabyteCount << 20) throw new IOException("incomplete echo");
+					return byteCount;
+				}
+			}));
+		}
+
+		long byteCount = 0;
+		for (final Future<Long> future : futures) {
+			byteCount += future.get();
+		}
+		return byteCount;
+	}
+
+
+	/**
+	 * Accepts connections from the given service channel, and echoes all data received on each
+	 * of them until their client shuts down it's output.
+	 * @param serviceChannel the service channel
+	 * @param threadPool the thread pool
+	 */
+	static private void echo (final ServerSocketChannel serviceChannel, final ExecutorService threadPool) {
+		try {
+			while (true) {
+				final SocketChannel channel = serviceChannel.accept();
+				threadPool.execute(() -> {
+					try (SocketChannel echoChannel = channel) {
+						ByteChannels.copy(echoChannel, echoChannel, null, ByteBuffer.allocateDirect(ECHO_BUFFER_SIZE));
+					} catch (final IOException exception) {
+						// connection reset by the other side
+					}
+				});
+			}
+		} catch (final IOException exception) {
+			// service channel closed
+		}
+	}
+}
@@ -1,18 +1,34 @@
 package de.htw.ds.tcp;
 
+import de.sb.java.Threads;
 import de.sb.java.TypeMetadata;
 import de.sb.java.io.Streams;
 import de.sb.java.net.SocketAddress;
 
 import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
+import java.net.ProtocolException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Random;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -21,32 +37,92 @@ import java.util.logging.Logger;
 /**
  * This class models a TCP switch, i.e. a "spray router" for all kinds of TCP oriented protocol
  * connections. It routes incoming client requests to it's given set of protocol servers, either
- * randomly selected, or determined by known session association. Note that while this
- * implementation routes all kinds of TCP protocols, a single instance is only able to route one
- * protocol type unless it's child servers support multi-protocol requests.<br />
+ * selected by a configurable strategy, or determined by known session association, see
+ * {@linkplain NodeSelectorType}. Note that while this implementation routes all kinds of TCP
+ * protocols, a single instance is only able to route one protocol type unless it's child servers
+ * support multi-protocol requests.<br />
  * Session association is determined by receiving subsequent requests from the same client, which
  * may or may not be interpreted as being part of the same session by the protocol server selected.
  * However, two requests cannot be part of the same session if they do not share the same request
  * client address! Note that this algorithm allows for protocol independence, but does not work with
- * clients that dynamically change their IP-address during a session's lifetime. Also note that this
- * class is declared final because it provides an application entry point, and therefore not
- * supposed to be extended.
+ * clients that dynamically change their IP-address during a session's lifetime.<br />
+ * A switch operates either in blocking mode, using one acceptor thread and up to three threads per
+ * connection, or in non-blocking mode, using a fixed number of event loop threads that multiplex
+ * all connections, see {@linkplain TcpSwitchEventLoop}. The latter scales to large numbers of
+ * mostly idle connections, like those of keep-alive clients. In both modes, connections to nodes
+ * may be taken from per-node pools of pre-connected channels, see {@linkplain TcpSwitchNode}, which
+ * are maintained periodically by a separate thread. The latter also optionally probes each node's
+ * health using a short connect timeout, which is disabled by default as failures reported by client
+ * connections suffice unless connections are pooled; nodes failing repeatedly are ejected for a
+ * while, and connections failing to connect to a node are retried with another one. Nodes may be
+ * added, drained and removed at runtime, either directly, via admin console commands, or by editing
+ * a node file watched by the maintenance thread. The node table is replaced as a whole upon each
+ * change, which allows node selection to proceed without locking; draining and removed nodes
+ * receive no new connections, while their existing connections remain open until they close. The
+ * number of concurrent connections, both overall and per client address, as well as the accept rate
+ * may be limited, see {@linkplain ConnectionLimiter}; excess clients are kept waiting by pausing
+ * accepts.<br />
+ * Optionally, a switch operates in HTTP mode, which relays HTTP/1.x connections request by request
+ * using one thread per client connection, regardless of the number of event loops. This way, each
+ * request of a persistent client connection is balanced individually, and relayed over a pooled
+ * node connection that is returned into it's node's pool once the response is complete. In HTTP
+ * mode, session association is based on an affinity cookie set by the switch, instead of the client
+ * address. Also note that this class is declared final because it provides an application entry
+ * point, and therefore not supposed to be extended.
  */
 @TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
 public final class TcpSwitch implements Runnable, AutoCloseable {
-	static private final int MAX_PACKET_SIZE = 0xFFFF;
+	static private final String EVENT_LOOP_COUNT_PROPERTY = "de.htw.ds.tcp.switch.eventLoops";
+	static private final String BUFFER_SIZE_PROPERTY = "de.htw.ds.tcp.switch.bufferSize";
+	static private final String NODE_SELECTOR_PROPERTY = "de.htw.ds.tcp.switch.selector";
+	static private final String CONNECT_RETRIES_PROPERTY = "de.htw.ds.tcp.switch.connectRetries";
+	static private final String METRICS_PORT_PROPERTY = "de.htw.ds.tcp.switch.metricsPort";
+	static private final String METRICS_PATH = "/metrics";
+	static private final String NODE_FILE_PROPERTY = "de.htw.ds.tcp.switch.nodeFile";
+	static private final String MAX_CONNECTIONS_PROPERTY = "de.htw.ds.tcp.switch.maxConnections";
+	static private final String MAX_CLIENT_CONNECTIONS_PROPERTY = "de.htw.ds.tcp.switch.maxClientConnections";
+	static private final String ACCEPT_RATE_PROPERTY = "de.htw.ds.tcp.switch.acceptRate";
+	static private final String HTTP_MODE_PROPERTY = "de.htw.ds.tcp.switch.http";
+	static private final String AFFINITY_COOKIE_NAME = "TCPSWITCH";
+	static private final int DEFAULT_BUFFER_SIZE = 0x4000;
+	static private final int BUFFER_POOL_CAPACITY = 1024;
+	static private final String POOL_MIN_IDLE_PROPERTY = "de.htw.ds.tcp.switch.pool.minIdle";
+	static private final String POOL_MAX_IDLE_PROPERTY = "de.htw.ds.tcp.switch.pool.maxIdle";
+	static private final String POOL_IDLE_TIMEOUT_PROPERTY = "de.htw.ds.tcp.switch.pool.idleTimeout";
+	static private final String PROBE_INTERVAL_PROPERTY = "de.htw.ds.tcp.switch.probeInterval";
+	static private final long DEFAULT_IDLE_TIMEOUT = 30000;
+	static private final int CONNECT_TIMEOUT = 5000;
+	static private final int PROBE_TIMEOUT = 500;
+	static private final int DEFAULT_CONNECT_RETRIES = 2;
+	static private final long MAINTENANCE_PERIOD = 1000;
 
-	// TODO: solution is possible without further instance variables. However, here such an
-	// alteration is allowed if required, for example to cache clientAddress->serverSocketAddress
-	// combinations within a map ...
-	private final ServerSocket serviceSocket;
+	private final ServerSocketChannel serviceChannel;
 	private final ExecutorService threadPool;
-	private final InetSocketAddress[] nodeAddresses;
+	private final ScheduledExecutorService maintenanceService;
+	private volatile TcpSwitchNode[] nodes;
+	private volatile Path nodeFile;
+	private long nodeFileTimestamp;
 	private final boolean sessionAware;
+	private final NodeSelector sessionSelector;
+	private volatile NodeSelectorType nodeSelectorType;
+	private volatile NodeSelector nodeSelector;
+	private final ByteBufferPool bufferPool;
+	private final TcpSwitchEventLoop[] eventLoops;
+	private final AtomicInteger eventLoopSequence;
+	private volatile int minIdleCount;
+	private volatile int maxIdleCount;
+	private volatile long idleTimeout;
+	private volatile long probeInterval;
+	private long probeTimestamp;
+	private volatile int connectRetries;
+	private volatile boolean httpMode;
+	private final ConnectionLimiter limiter;
+	private final TcpSwitchStatistics statistics;
 
 
 	/**
-	 * Public constructor.
+	 * Public constructor for blocking mode, using channel based relaying with buffers of default
+	 * size.
 	 * @param servicePort the service port
 	 * @param nodeAddresses the node addresses
 	 * @param sessionAware true if the server is aware of sessions, false otherwise
@@ -56,17 +132,65 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 	 * @throws IOException if the given port is already in use, or cannot be bound
 	 */
 	public TcpSwitch(final int servicePort, final boolean sessionAware, final InetSocketAddress... nodeAddresses) throws IOException {
-		if (nodeAddresses.length == 0) throw new IllegalArgumentException();
+		this(servicePort, sessionAware, 0, DEFAULT_BUFFER_SIZE, newNodes(nodeAddresses));
+	}
+
+
+	/**
+	 * Public constructor.
+	 * @param servicePort the service port
+	 * @param nodes the nodes
+	 * @param sessionAware true if the server is aware of sessions, false otherwise
+	 * @param eventLoopCount the number of event loops for non-blocking mode, or zero for blocking
+	 *        mode
+	 * @param bufferSize the size of the direct buffers used for relaying, or zero for stream based
+	 *        relaying in blocking mode
+	 * @throws NullPointerException if the given nodes array is {@code null}
+	 * @throws IllegalArgumentException if the given service port is outside range [0, 0xFFFF], if
+	 *         the given nodes array is empty, if the given event loop count or buffer
+	 *         size is negative, or if the buffer size is zero in non-blocking mode
+	 * @throws IOException if the given port is already in use, or cannot be bound
+	 */
+	public TcpSwitch(final int servicePort, final boolean sessionAware, final int eventLoopCount, final int bufferSize, final TcpSwitchNode... nodes) throws IOException {
+		if (nodes.length == 0 | eventLoopCount < 0 | bufferSize < 0 | (eventLoopCount > 0 & bufferSize == 0)) throw new IllegalArgumentException();
 
-		this.serviceSocket = new ServerSocket(servicePort);
+		this.serviceChannel = ServerSocketChannel.open();
 		this.threadPool = Executors.newCachedThreadPool();
-		this.nodeAddresses = nodeAddresses;
+		this.maintenanceService = Executors.newSingleThreadScheduledExecutor(Threads.newDaemonThreadFactory());
+		this.nodes = nodes;
 		this.sessionAware = sessionAware;
+		this.sessionSelector = NodeSelectorType.CLIENT_HASH.newNodeSelector();
+		this.nodeSelectorType = NodeSelectorType.RANDOM;
+		this.nodeSelector = NodeSelectorType.RANDOM.newNodeSelector();
+		this.connectRetries = DEFAULT_CONNECT_RETRIES;
+		this.bufferPool = bufferSize == 0 ? null : new ByteBufferPool(bufferSize, BUFFER_POOL_CAPACITY);
+		this.eventLoops = new TcpSwitchEventLoop[eventLoopCount];
+		this.eventLoopSequence = new AtomicInteger();
+		this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+		this.limiter = new ConnectionLimiter();
+		this.statistics = new TcpSwitchStatistics(this, (ThreadPoolExecutor) this.threadPool, this.eventLoops);
+
+		try {
+			this.serviceChannel.bind(new InetSocketAddress(servicePort));
+			for (int index = 0; index < eventLoopCount; ++index) {
+				this.eventLoops[index] = new TcpSwitchEventLoop(this, index, new ByteBufferPool(bufferSize, BUFFER_POOL_CAPACITY));
+			}
+		} catch (final IOException exception) {
+			this.close();
+			throw exception;
+		}
 
-		// start acceptor thread
-		final Thread thread = new Thread(this, "tcp-acceptor");
-		thread.setDaemon(true);
-		thread.start();
+		if (eventLoopCount == 0) {
+			// start acceptor thread
+			final Thread thread = new Thread(this, "tcp-acceptor");
+			thread.setDaemon(true);
+			thread.start();
+		} else {
+			this.serviceChannel.configureBlocking(false);
+			this.eventLoops[0].registerService(this.serviceChannel);
+		}
+		this.statistics.register();
+		this.maintenanceService.scheduleWithFixedDelay(this::maintain, MAINTENANCE_PERIOD, MAINTENANCE_PERIOD, TimeUnit.MILLISECONDS);
 	}
 
 
@@ -75,9 +199,35 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 	 */
 	public void close () {
 		try {
-			this.serviceSocket.close();
+			this.serviceChannel.close();
 		} catch (final Throwable exception) {}
+		for (final TcpSwitchEventLoop eventLoop : this.eventLoops) {
+			if (eventLoop != null) eventLoop.close();
+		}
+		this.maintenanceService.shutdown();
 		this.threadPool.shutdown();
+		for (final TcpSwitchNode node : this.nodes) {
+			node.close();
+		}
+		this.statistics.unregister();
+	}
+
+
+	/**
+	 * Returns the connection limiter, which allows the connection limits to be changed at runtime.
+	 * @return the connection limiter
+	 */
+	public ConnectionLimiter getConnectionLimiter () {
+		return this.limiter;
+	}
+
+
+	/**
+	 * Returns the statistics.
+	 * @return the switch statistics
+	 */
+	public TcpSwitchStatistics getStatistics () {
+		return this.statistics;
 	}
 
 
@@ -86,7 +236,247 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 	 * @return the node addresses
 	 */
 	public InetSocketAddress[] getNodeAddresses () {
-		return this.nodeAddresses;
+		final TcpSwitchNode[] nodes = this.nodes;
+		final InetSocketAddress[] nodeAddresses = new InetSocketAddress[nodes.length];
+		for (int index = 0; index < nodeAddresses.length; ++index) {
+			nodeAddresses[index] = nodes[index].getAddress();
+		}
+		return nodeAddresses;
+	}
+
+
+	/**
+	 * Returns the nodes. Note that the array returned is a snapshot of the node table, and must not
+	 * be modified.
+	 * @return the nodes
+	 */
+	public TcpSwitchNode[] getNodes () {
+		return this.nodes;
+	}
+
+
+	/**
+	 * Returns the node with the given address.
+	 * @param address the node address
+	 * @return the node, or {@code null} for none
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public TcpSwitchNode getNode (final InetSocketAddress address) {
+		for (final TcpSwitchNode node : this.nodes) {
+			if (node.matches(address)) return node;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Adds the given node, which receives new connections immediately unless it is draining.
+	 * @param node the node
+	 * @throws NullPointerException if the given node is {@code null}
+	 * @throws IllegalArgumentException if there is already a node with the same address
+	 */
+	public synchronized void addNode (final TcpSwitchNode node) {
+		if (this.getNode(node.getAddress()) != null) throw new IllegalArgumentException();
+
+		final TcpSwitchNode[] nodes = Arrays.copyOf(this.nodes, this.nodes.length + 1);
+		nodes[nodes.length - 1] = node;
+		this.nodes = nodes;
+		this.statistics.register(node);
+	}
+
+
+	/**
+	 * Removes the node with the given address, and closes it's idle channels. The node's existing
+	 * connections remain open until they close.
+	 * @param address the node address
+	 * @return the node removed, or {@code null} for none
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public synchronized TcpSwitchNode removeNode (final InetSocketAddress address) {
+		final TcpSwitchNode node = this.getNode(address);
+		if (node == null) return null;
+
+		this.nodes = filter(this.nodes, other -> other != node);
+		this.statistics.unregister(node);
+		node.setDraining(true);
+		node.close();
+		return node;
+	}
+
+
+	/**
+	 * Reconfigures this switch's nodes to match the given ones: Nodes not present yet are added,
+	 * existing nodes adopt the given weight and draining state, and nodes not given are removed.
+	 * @param nodes the nodes
+	 * @throws NullPointerException if the given array is {@code null}
+	 */
+	public synchronized void reconfigure (final TcpSwitchNode... nodes) {
+		for (final TcpSwitchNode node : nodes) {
+			final TcpSwitchNode existingNode = this.getNode(node.getAddress());
+			if (existingNode == null) {
+				this.addNode(node);
+			} else {
+				existingNode.setWeight(node.getWeight());
+				existingNode.setDraining(node.isDraining());
+			}
+		}
+
+		for (final TcpSwitchNode existingNode : this.nodes) {
+			if (filter(nodes, node -> existingNode.matches(node.getAddress())).length == 0) {
+				this.removeNode(existingNode.getAddress());
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the node file.
+	 * @return the node file watched, or {@code null} for none
+	 */
+	public Path getNodeFile () {
+		return this.nodeFile;
+	}
+
+
+	/**
+	 * Sets the node file, which is watched by the maintenance thread: Whenever it is modified, the
+	 * nodes are reconfigured to match it's content, see {@linkplain #reconfigure(TcpSwitchNode...)}
+	 * and {@linkplain #readNodes(Path)}.
+	 * @param nodeFile the node file to watch, or {@code null} for none
+	 */
+	public void setNodeFile (final Path nodeFile) {
+		this.nodeFile = nodeFile;
+	}
+
+
+	/**
+	 * Returns the node selector type, which is ignored in session aware mode.
+	 * @return the node selector type
+	 */
+	public NodeSelectorType getNodeSelectorType () {
+		return this.nodeSelectorType;
+	}
+
+
+	/**
+	 * Sets the node selector type, which is ignored in session aware mode.
+	 * @param nodeSelectorType the node selector type
+	 * @throws NullPointerException if the given type is {@code null}
+	 */
+	public void setNodeSelectorType (final NodeSelectorType nodeSelectorType) {
+		this.nodeSelector = nodeSelectorType.newNodeSelector();
+		this.nodeSelectorType = nodeSelectorType;
+	}
+
+
+	/**
+	 * Returns the maximum number of times a connection is retried with another node after
+	 * failing to connect.
+	 * @return the connect retry count
+	 */
+	public int getConnectRetries () {
+		return this.connectRetries;
+	}
+
+
+	/**
+	 * Sets the maximum number of times a connection is retried with another node after failing
+	 * to connect.
+	 * @param connectRetries the connect retry count
+	 * @throws IllegalArgumentException if the given count is negative
+	 */
+	public void setConnectRetries (final int connectRetries) {
+		if (connectRetries < 0) throw new IllegalArgumentException();
+
+		this.connectRetries = connectRetries;
+	}
+
+
+	/**
+	 * Returns whether or not this switch operates in HTTP mode.
+	 * @return {@code true} for HTTP mode, {@code false} for TCP mode
+	 */
+	public boolean getHttpMode () {
+		return this.httpMode;
+	}
+
+
+	/**
+	 * Sets whether or not this switch operates in HTTP mode, which affects connections accepted
+	 * from then on.
+	 * @param httpMode {@code true} for HTTP mode, {@code false} for TCP mode
+	 */
+	public void setHttpMode (final boolean httpMode) {
+		this.httpMode = httpMode;
+	}
+
+
+	/**
+	 * Returns the minimum number of idle pooled channels per node.
+	 * @return the minimum idle count
+	 */
+	public int getMinIdleCount () {
+		return this.minIdleCount;
+	}
+
+
+	/**
+	 * Returns the maximum number of idle pooled channels per node.
+	 * @return the maximum idle count
+	 */
+	public int getMaxIdleCount () {
+		return this.maxIdleCount;
+	}
+
+
+	/**
+	 * Returns the idle timeout of pooled channels.
+	 * @return the idle timeout in milliseconds
+	 */
+	public long getIdleTimeout () {
+		return this.idleTimeout;
+	}
+
+
+	/**
+	 * Sets the connection pooling parameters. Each node's pool is replenished periodically up to
+	 * the number of connections requested from it during the preceding period, bounded by the
+	 * given minimum and maximum idle counts; a maximum idle count of zero disables pooling.
+	 * @param minIdleCount the minimum number of idle pooled channels per node
+	 * @param maxIdleCount the maximum number of idle pooled channels per node
+	 * @param idleTimeout the idle timeout of pooled channels in milliseconds
+	 * @throws IllegalArgumentException if any of the given values is negative, or if the
+	 *         minimum idle count exceeds the maximum idle count
+	 */
+	public void setConnectionPooling (final int minIdleCount, final int maxIdleCount, final long idleTimeout) {
+		if (minIdleCount < 0 | maxIdleCount < minIdleCount | idleTimeout <= 0) throw new IllegalArgumentException();
+
+		this.minIdleCount = minIdleCount;
+		this.maxIdleCount = maxIdleCount;
+		this.idleTimeout = idleTimeout;
+	}
+
+
+	/**
+	 * Returns the interval between health probes of the nodes.
+	 * @return the probe interval in milliseconds, or zero if probing is disabled
+	 */
+	public long getProbeInterval () {
+		return this.probeInterval;
+	}
+
+
+	/**
+	 * Sets the interval between health probes of the nodes, which is rounded up to the
+	 * maintenance period of {@value #MAINTENANCE_PERIOD}ms. Each probe connects to every node that
+	 * is neither ejected nor draining, using a connect timeout of {@value #PROBE_TIMEOUT}ms.
+	 * @param probeInterval the probe interval in milliseconds, or zero to disable probing
+	 * @throws IllegalArgumentException if the given interval is negative
+	 */
+	public void setProbeInterval (final long probeInterval) {
+		if (probeInterval < 0) throw new IllegalArgumentException();
+
+		this.probeInterval = probeInterval;
 	}
 
 
@@ -95,7 +485,25 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 	 * @return the service port
 	 */
 	public int getServicePort () {
-		return this.serviceSocket.getLocalPort();
+		return this.serviceChannel.socket().getLocalPort();
+	}
+
+
+	/**
+	 * Returns the size of the direct buffers used for relaying.
+	 * @return the buffer size, or zero for stream based relaying
+	 */
+	public int getBufferSize () {
+		return this.bufferPool == null ? 0 : this.bufferPool.getBufferSize();
+	}
+
+
+	/**
+	 * Returns the number of event loops.
+	 * @return the event loop count, or zero for blocking mode
+	 */
+	public int getEventLoopCount () {
+		return this.eventLoops.length;
 	}
 
 
@@ -110,17 +518,160 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 
 
 	/**
-	 * Periodically blocks until a request arrives, handles the latter subsequently.
+	 * Returns the next event loop in round robin order.
+	 * @return the event loop
+	 * @throws ArithmeticException if this switch operates in blocking mode
+	 */
+	TcpSwitchEventLoop nextEventLoop () {
+		return this.eventLoops[(this.eventLoopSequence.getAndIncrement() & Integer.MAX_VALUE) % this.eventLoops.length];
+	}
+
+
+	/**
+	 * Selects a node for a connection from the given client address, and records the connection
+	 * as opened with it. In session aware mode, the selection is pseudo-random but repeatable for
+	 * each client address, and remains so for most clients when nodes are added or removed, see
+	 * {@linkplain NodeSelectorType#CLIENT_HASH}; otherwise it is performed by the current node
+	 * selector. Draining nodes are never selected, while nodes that are ejected or excluded are
+	 * only selected if there are no others.
+	 * @param clientAddress the client address
+	 * @param excludedNodes the nodes that failed to connect before
+	 * @return the node selected
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws ConnectException if all nodes are draining
+	 */
+	TcpSwitchNode selectNode (final InetAddress clientAddress, final Set<TcpSwitchNode> excludedNodes) throws ConnectException {
+		return this.selectNode(clientAddress, excludedNodes, this.sessionAware ? this.sessionSelector : this.nodeSelector);
+	}
+
+
+	/**
+	 * Selects a node for an HTTP request from the given client address, and records the request
+	 * as opened with it. In session aware mode, the node identified by the given affinity key is
+	 * selected unless it is draining, ejected or excluded; otherwise, the selection is performed by
+	 * the current node selector.
+	 * @param clientAddress the client address
+	 * @param affinityKey the affinity key sent by the client, or {@code null} for none
+	 * @param excludedNodes the nodes that failed to connect before
+	 * @return the node selected
+	 * @throws NullPointerException if the given address or set is {@code null}
+	 * @throws ConnectException if all nodes are draining
+	 */
+	TcpSwitchNode selectHttpNode (final InetAddress clientAddress, final String affinityKey, final Set<TcpSwitchNode> excludedNodes) throws ConnectException {
+		if (this.sessionAware & affinityKey != null) {
+			for (final TcpSwitchNode node : this.nodes) {
+				if (affinityKey.equals(affinityKey(node)) && !node.isDraining() && !node.isEjected() && !excludedNodes.contains(node)) {
+					node.connectionOpened();
+					return node;
+				}
+			}
+		}
+		return this.selectNode(clientAddress, excludedNodes, this.nodeSelector);
+	}
+
+
+	/**
+	 * Selects a node using the given selector, see {@linkplain #selectNode(InetAddress, Set)}.
+	 * @param clientAddress the client address
+	 * @param excludedNodes the nodes that failed to connect before
+	 * @param nodeSelector the node selector
+	 * @return the node selected
+	 * @throws ConnectException if all nodes are draining
+	 */
+	private TcpSwitchNode selectNode (final InetAddress clientAddress, final Set<TcpSwitchNode> excludedNodes, final NodeSelector nodeSelector) throws ConnectException {
+		final TcpSwitchNode[] nodes = filter(this.nodes, node -> !node.isDraining());
+		if (nodes.length == 0) throw new ConnectException("no node available");
+
+		TcpSwitchNode[] candidates = filter(nodes, node -> !node.isEjected() && !excludedNodes.contains(node));
+		if (candidates.length == 0) candidates = filter(nodes, node -> !excludedNodes.contains(node));
+		if (candidates.length == 0) candidates = nodes;
+
+		final TcpSwitchNode node = nodeSelector.select(candidates, clientAddress);
+		node.connectionOpened();
+		return node;
+	}
+
+
+	/**
+	 * Relays the given client connection in HTTP mode, using a pooled thread.
+	 * @param clientChannel the blocking client channel
+	 */
+	void relayHttp (final SocketChannel clientChannel) {
+		this.threadPool.execute(new HttpConnectionHandler(clientChannel.socket(), this));
+	}
+
+
+	/**
+	 * Returns a channel connected to the given node, either taken from the node's pool, or
+	 * connected on demand in blocking mode. Pending data received from the node by a pooled
+	 * channel is written to the given client channel.
+	 * @param node the node
+	 * @param clientChannel the blocking client channel
+	 * @return the blocking server channel
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static SocketChannel connect (final TcpSwitchNode node, final SocketChannel clientChannel) throws IOException {
+		final TcpSwitchNode.PooledChannel pooledChannel = node.acquire();
+		if (pooledChannel == null) return node.connect(CONNECT_TIMEOUT);
+
+		try {
+			for (final ByteBuffer buffer = ByteBuffer.wrap(pooledChannel.getPendingData()); buffer.hasRemaining(); clientChannel.write(buffer));
+			return pooledChannel.getChannel();
+		} catch (final IOException exception) {
+			try { pooledChannel.getChannel().close(); } catch (final Exception nestedException) {}
+			throw exception;
+		}
+	}
+
+
+	/**
+	 * Maintains the nodes, see {@linkplain TcpSwitchNode#maintain(int, int, long, int, int)}, and
+	 * probes their health once the probe interval has elapsed.
+	 */
+	private void maintain () {
+		this.statistics.update();
+		this.reloadNodeFile();
+
+		final long probeInterval = this.probeInterval, timestamp = System.currentTimeMillis();
+		final boolean probing = probeInterval > 0 && timestamp - this.probeTimestamp >= probeInterval;
+		if (probing) this.probeTimestamp = timestamp;
+
+		final int maxIdleCount = this.maxIdleCount;
+		for (final TcpSwitchNode node : this.nodes) {
+			try {
+				node.maintain(this.minIdleCount, maxIdleCount, this.idleTimeout, CONNECT_TIMEOUT, probing ? PROBE_TIMEOUT : 0);
+			} catch (final Exception exception) {
+				Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+			}
+		}
+	}
+
+
+	/**
+	 * Periodically blocks until a request arrives, handles the latter subsequently. Accepting is
+	 * paused while the connection limiter requires it, and connections exceeding their client's
+	 * limit are closed immediately. Note that this method is only used in blocking mode, as event
+	 * loops accept connections themselves in non-blocking mode.
+	 * @throws IllegalStateException if this switch operates in non-blocking mode
 	 */
 	public void run () {
+		if (this.eventLoops.length > 0) throw new IllegalStateException();
+
 		while (true) {
 			Socket clientConnection = null;
 			try {
-				clientConnection = this.serviceSocket.accept();
+				this.limiter.awaitAccept();
+				clientConnection = this.serviceChannel.accept().socket();
+				if (!this.limiter.open(clientConnection.getInetAddress())) {
+					clientConnection.close();
+					continue;
+				}
 
-				final ConnectionHandler connectionHandler = new ConnectionHandler(clientConnection, this.threadPool, this.nodeAddresses, this.sessionAware);
+				final Runnable connectionHandler = this.httpMode
+					? new HttpConnectionHandler(clientConnection, this)
+					: new ConnectionHandler(clientConnection, this.threadPool, this, this.bufferPool);
 				this.threadPool.execute(connectionHandler);
-			} catch (final SocketException exception) {
+			} catch (final SocketException | ClosedChannelException | InterruptedException exception) {
 				break;
 			} catch (final Exception exception) {
 				try { clientConnection.close(); } catch (final Exception nestedException) {}
@@ -130,14 +681,151 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 	}
 
 
+	/**
+	 * Reconfigures the nodes from the node file if it has been modified since the last reload.
+	 * Note that this method is not thread safe, and should only be called by the maintenance
+	 * thread.
+	 */
+	private void reloadNodeFile () {
+		final Path nodeFile = this.nodeFile;
+		if (nodeFile == null) return;
+
+		try {
+			final long timestamp = Files.getLastModifiedTime(nodeFile).toMillis();
+			if (timestamp == this.nodeFileTimestamp) return;
+
+			this.reconfigure(readNodes(nodeFile));
+			this.nodeFileTimestamp = timestamp;
+			Logger.getGlobal().log(Level.INFO, String.format("nodes reconfigured from %s.", nodeFile));
+		} catch (final IOException | IllegalArgumentException exception) {
+			Logger.getGlobal().log(Level.WARNING, String.format("cannot reload %s: %s", nodeFile, exception.getMessage()));
+		}
+	}
+
+
+	/**
+	 * Returns the given nodes that match the given predicate.
+	 * @param nodes the nodes
+	 * @param predicate the predicate
+	 * @return the given nodes array if all nodes match, otherwise a new array of matching nodes
+	 */
+	static private TcpSwitchNode[] filter (final TcpSwitchNode[] nodes, final Predicate<TcpSwitchNode> predicate) {
+		int count = 0;
+		for (final TcpSwitchNode node : nodes) {
+			if (predicate.test(node)) ++count;
+		}
+		if (count == nodes.length) return nodes;
+
+		final TcpSwitchNode[] result = new TcpSwitchNode[count];
+		count = 0;
+		for (final TcpSwitchNode node : nodes) {
+			if (predicate.test(node)) result[count++] = node;
+		}
+		return result;
+	}
+
+
+	/**
+	 * Returns the affinity key of the given node, which identifies the latter within HTTP
+	 * affinity cookies without revealing it's address.
+	 * @param node the node
+	 * @return the affinity key
+	 */
+	static private String affinityKey (final TcpSwitchNode node) {
+		return Long.toHexString(node.getKey());
+	}
+
+
+	/**
+	 * Returns a new node parsed from the given text, which must consist of the node's address and
+	 * port, optionally followed by a hash sign and the node's weight, and optionally by a space and
+	 * the word {@code drain} for a draining node, as in {@code localhost:8001#2 drain}.
+	 * @param text the text
+	 * @return the node
+	 * @throws NullPointerException if the given text is {@code null}
+	 * @throws IllegalArgumentException if the given text is malformed
+	 */
+	static public TcpSwitchNode parseNode (final String text) {
+		final String[] tokens = text.trim().split("\\s+");
+		if (tokens.length > 2 || (tokens.length == 2 && !"drain".equals(tokens[1]))) throw new IllegalArgumentException(text);
+
+		final int weightOffset = tokens[0].indexOf('#');
+		final InetSocketAddress address = new SocketAddress(weightOffset == -1 ? tokens[0] : tokens[0].substring(0, weightOffset)).toInetSocketAddress();
+		final int weight = weightOffset == -1 ? 1 : Integer.parseInt(tokens[0].substring(weightOffset + 1));
+		final TcpSwitchNode node = new TcpSwitchNode(address, weight);
+		node.setDraining(tokens.length == 2);
+		return node;
+	}
+
+
+	/**
+	 * Returns new nodes parsed from the given node file, which contains one node per line, see
+	 * {@linkplain #parseNode(String)}. Empty lines, and lines starting with a hash sign, are
+	 * ignored.
+	 * @param nodeFile the node file
+	 * @return the nodes
+	 * @throws NullPointerException if the given file is {@code null}
+	 * @throws IllegalArgumentException if any of the lines is malformed
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public TcpSwitchNode[] readNodes (final Path nodeFile) throws IOException {
+		final List<TcpSwitchNode> nodes = new ArrayList<>();
+		for (final String line : Files.readAllLines(nodeFile, StandardCharsets.UTF_8)) {
+			if (!line.trim().isEmpty() && !line.trim().startsWith("#")) nodes.add(parseNode(line));
+		}
+		return nodes.toArray(new TcpSwitchNode[0]);
+	}
+
+
+	/**
+	 * Returns new nodes with weight one for the given node addresses.
+	 * @param nodeAddresses the node addresses
+	 * @return the nodes
+	 * @throws NullPointerException if any of the given addresses is {@code null}
+	 */
+	static private TcpSwitchNode[] newNodes (final InetSocketAddress[] nodeAddresses) {
+		final TcpSwitchNode[] nodes = new TcpSwitchNode[nodeAddresses.length];
+		for (int index = 0; index < nodeAddresses.length; ++index) {
+			nodes[index] = new TcpSwitchNode(nodeAddresses[index]);
+		}
+		return nodes;
+	}
+
+
 	/**
 	 * Application entry point. The given runtime parameters must be a service port, the session
-	 * awareness, and the list of address:port combinations for the cluster nodes.
+	 * awareness, and the list of address:port combinations for the cluster nodes, each optionally
+	 * followed by a hash sign and the node weight, as in {@code localhost:8001#2}. The system
+	 * property {@value #NODE_FILE_PROPERTY} optionally defines a node file, which replaces the
+	 * given nodes, and is watched for changes, see {@linkplain #readNodes(Path)}. The system
+	 * property {@value #NODE_SELECTOR_PROPERTY} optionally defines the node selector type used
+	 * unless session aware; it defaults to {@code RANDOM}. The system property
+	 * {@value #CONNECT_RETRIES_PROPERTY} optionally defines how often connections failing to
+	 * connect are retried with another node; it defaults to {@value #DEFAULT_CONNECT_RETRIES}. The
+	 * system property {@value #EVENT_LOOP_COUNT_PROPERTY} optionally defines the number of event
+	 * loops for non-blocking mode; it defaults to zero, i.e. blocking mode. The system property
+	 * {@value #BUFFER_SIZE_PROPERTY} optionally defines the relay buffer size, with zero selecting
+	 * stream based relaying in blocking mode; it defaults to {@value #DEFAULT_BUFFER_SIZE}. The
+	 * system properties {@value #POOL_MIN_IDLE_PROPERTY}, {@value #POOL_MAX_IDLE_PROPERTY} and
+	 * {@value #POOL_IDLE_TIMEOUT_PROPERTY} optionally define the connection pooling parameters;
+	 * they default to zero, i.e. no pooling, and {@value #DEFAULT_IDLE_TIMEOUT}ms. The system
+	 * property {@value #PROBE_INTERVAL_PROPERTY} optionally defines the interval between node
+	 * health probes in milliseconds; it defaults to {@value #MAINTENANCE_PERIOD}ms if connections
+	 * are pooled, and to zero, i.e. no probing, otherwise. The system properties
+	 * {@value #MAX_CONNECTIONS_PROPERTY}, {@value #MAX_CLIENT_CONNECTIONS_PROPERTY} and
+	 * {@value #ACCEPT_RATE_PROPERTY} optionally limit the number of concurrent connections overall
+	 * and per client address, and the number of connections accepted per second; they default to
+	 * zero, i.e. unlimited. The system property {@value #HTTP_MODE_PROPERTY} optionally enables
+	 * HTTP mode; it defaults to {@code false}. The system property {@value #METRICS_PORT_PROPERTY}
+	 * optionally defines a local port on which the switch statistics are served via HTTP at path
+	 * {@value #METRICS_PATH}; they are always exposed via JMX. Once running, the switch executes
+	 * admin commands entered on the console until "quit" is entered, see
+	 * {@linkplain #execute(TcpSwitch, String)}.
 	 * @param args the given runtime arguments
 	 * @throws IllegalArgumentException if the given service port is outside range [0, 0xFFFF], or
 	 *         there are no cluster nodes
 	 * @throws IOException if the given port is already in use or cannot be bound, or if there is a
-	 *         problem waiting for the quit signal
+	 *         problem reading the node file or the console
 	 */
 	static public void main (final String[] args) throws IOException {
 		LogManager.getLogManager();
@@ -145,121 +833,775 @@ public final class TcpSwitch implements Runnable, AutoCloseable {
 		final long timestamp = System.currentTimeMillis();
 		final int servicePort = Integer.parseInt(args[0]);
 		final boolean sessionAware = Boolean.parseBoolean(args[1]);
+		final int eventLoopCount = Integer.parseInt(System.getProperty(EVENT_LOOP_COUNT_PROPERTY, "0"));
+		final int bufferSize = Integer.parseInt(System.getProperty(BUFFER_SIZE_PROPERTY, Integer.toString(DEFAULT_BUFFER_SIZE)));
+		final int minIdleCount = Integer.parseInt(System.getProperty(POOL_MIN_IDLE_PROPERTY, "0"));
+		final int maxIdleCount = Integer.parseInt(System.getProperty(POOL_MAX_IDLE_PROPERTY, Integer.toString(minIdleCount)));
+		final long idleTimeout = Long.parseLong(System.getProperty(POOL_IDLE_TIMEOUT_PROPERTY, Long.toString(DEFAULT_IDLE_TIMEOUT)));
+		final long probeInterval = Long.parseLong(System.getProperty(PROBE_INTERVAL_PROPERTY, maxIdleCount == 0 ? "0" : Long.toString(MAINTENANCE_PERIOD)));
+		final int connectRetries = Integer.parseInt(System.getProperty(CONNECT_RETRIES_PROPERTY, Integer.toString(DEFAULT_CONNECT_RETRIES)));
+		final NodeSelectorType nodeSelectorType = NodeSelectorType.valueOf(System.getProperty(NODE_SELECTOR_PROPERTY, NodeSelectorType.RANDOM.name()).toUpperCase());
+		final String metricsPort = System.getProperty(METRICS_PORT_PROPERTY);
+		final Path nodeFile = System.getProperty(NODE_FILE_PROPERTY) == null ? null : Paths.get(System.getProperty(NODE_FILE_PROPERTY));
+		final int maxConnectionCount = Integer.parseInt(System.getProperty(MAX_CONNECTIONS_PROPERTY, "0"));
+		final int maxClientConnectionCount = Integer.parseInt(System.getProperty(MAX_CLIENT_CONNECTIONS_PROPERTY, "0"));
+		final double acceptRate = Double.parseDouble(System.getProperty(ACCEPT_RATE_PROPERTY, "0"));
+		final boolean httpMode = Boolean.parseBoolean(System.getProperty(HTTP_MODE_PROPERTY, "false"));
 
-		final Set<InetSocketAddress> nodeAddresses = new HashSet<>();
-		for (int index = 2; index < args.length; ++index) {
-			nodeAddresses.add(new SocketAddress(args[index]).toInetSocketAddress());
+		final TcpSwitchNode[] nodes;
+		if (nodeFile == null) {
+			nodes = new TcpSwitchNode[args.length - 2];
+			for (int index = 0; index < nodes.length; ++index) {
+				nodes[index] = parseNode(args[index + 2]);
+			}
+		} else {
+			nodes = readNodes(nodeFile);
 		}
 
-		try (TcpSwitch server = new TcpSwitch(servicePort, sessionAware, nodeAddresses.toArray(new InetSocketAddress[0]))) {
-			// print welcome message
-			System.out.println("TCP switch running on one acceptor thread, enter \"quit\" to stop.");
-			System.out.format("Service port is %s.\n", server.getServicePort());
-			System.out.format("Session awareness is %s.\n", server.getSessionAware());
-			System.out.println("The following node addresses have been registered:");
-			for (final InetSocketAddress nodeAddress : server.getNodeAddresses()) {
-				System.out.println(nodeAddress);
+		try (TcpSwitch server = new TcpSwitch(servicePort, sessionAware, eventLoopCount, bufferSize, nodes)) {
+			server.setNodeFile(nodeFile);
+			server.setNodeSelectorType(nodeSelectorType);
+			server.setConnectRetries(connectRetries);
+			server.setHttpMode(httpMode);
+			server.setConnectionPooling(minIdleCount, maxIdleCount, idleTimeout);
+			server.setProbeInterval(probeInterval);
+			server.getConnectionLimiter().setLimits(maxConnectionCount, maxClientConnectionCount, acceptRate);
+
+			// not imported, as the package contains a class of the same name
+			final com.sun.net.httpserver.HttpServer metricsServer;
+			if (metricsPort == null) {
+				metricsServer = null;
+			} else {
+				metricsServer = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(metricsPort)), 0);
+				metricsServer.createContext(METRICS_PATH, server.getStatistics());
+				metricsServer.start();
 			}
-			System.out.format("Startup time is %sms.\n", System.currentTimeMillis() - timestamp);
 
-			// wait for stop signal on System.in
-			final BufferedReader charSource = new BufferedReader(new InputStreamReader(System.in));
-			while (!"quit".equals(charSource.readLine()));
+			try {
+				// print welcome message
+				if (server.getEventLoopCount() == 0) {
+					System.out.println("TCP switch running on one acceptor thread, enter \"quit\" to stop, or \"help\" for commands.");
+				} else {
+					System.out.format("TCP switch running on %s event loop threads, enter \"quit\" to stop, or \"help\" for commands.\n", server.getEventLoopCount());
+				}
+				System.out.format("Service port is %s.\n", server.getServicePort());
+				System.out.format("Session awareness is %s.\n", server.getSessionAware());
+				System.out.format("HTTP mode is %s.\n", server.getHttpMode());
+				System.out.format("Node selector type is %s.\n", server.getNodeSelectorType());
+				System.out.format("Connections are retried up to %s times with other nodes.\n", server.getConnectRetries());
+				System.out.format("Relay buffer size is %s.\n", server.getBufferSize());
+				System.out.format("Connection pool holds %s to %s idle channels per node, idle timeout is %sms.\n", server.getMinIdleCount(), server.getMaxIdleCount(), server.getIdleTimeout());
+				System.out.format("Node health probe interval is %sms (0 = disabled).\n", server.getProbeInterval());
+				System.out.format("Connections are limited to %s overall and %s per client, accept rate to %s per second (0 = unlimited).\n", maxConnectionCount, maxClientConnectionCount, acceptRate);
+				System.out.println("The following nodes have been registered:");
+				for (final TcpSwitchNode node : server.getNodes()) {
+					System.out.format("%s with weight %s\n", node, node.getWeight());
+				}
+				if (nodeFile != null) System.out.format("Node file %s is watched for changes.\n", nodeFile);
+				if (metricsServer != null) System.out.format("Statistics are served at http://localhost:%s%s.\n", metricsServer.getAddress().getPort(), METRICS_PATH);
+				System.out.format("Startup time is %sms.\n", System.currentTimeMillis() - timestamp);
+
+				// execute admin commands from System.in until stop signal
+				final BufferedReader charSource = new BufferedReader(new InputStreamReader(System.in));
+				for (String command = charSource.readLine(); command != null && !"quit".equals(command.trim()); command = charSource.readLine()) {
+					try {
+						execute(server, command);
+					} catch (final IllegalArgumentException exception) {
+						System.out.format("Illegal command \"%s\".\n", command.trim());
+					}
+				}
+			} finally {
+				if (metricsServer != null) metricsServer.stop(0);
+			}
 		}
 	}
 
 
 	/**
-	 * Instances of this inner class handle TCP client connections accepted by a TCP switch.
+	 * Executes the given admin command, and prints the result:
+	 * <ul>
+	 * <li>{@code nodes} lists all nodes and their state.</li>
+	 * <li>{@code stats} prints the statistics, see {@linkplain TcpSwitchStatistics}.</li>
+	 * <li>{@code add <node>} adds a node as specified by {@linkplain #parseNode(String)}, or
+	 * updates the weight and draining state of an existing one.</li>
+	 * <li>{@code drain <address:port>} drains the node with the given address.</li>
+	 * <li>{@code remove <address:port>} removes the node with the given address.</li>
+	 * </ul>
+	 * @param server the TCP switch
+	 * @param command the admin command
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given command is illegal
+	 */
+	static private void execute (final TcpSwitch server, final String command) {
+		final String[] tokens = command.trim().split("\\s+", 2);
+		final String argument = tokens.length == 2 ? tokens[1] : null;
+		if (tokens[0].matches("add|drain|remove") == (argument == null)) throw new IllegalArgumentException();
+
+		switch (tokens[0]) {
+			case "":
+				break;
+			case "nodes":
+				for (final TcpSwitchNode node : server.getNodes()) {
+					System.out.format("%s with weight %s, %s active connections%s%s\n", node, node.getWeight(), node.getActiveCount(), node.isDraining() ? ", draining" : "", node.isEjected() ? ", ejected" : "");
+				}
+				break;
+			case "stats":
+				System.out.print(server.getStatistics());
+				break;
+			case "add": {
+				final TcpSwitchNode node = parseNode(argument);
+				final TcpSwitchNode existingNode = server.getNode(node.getAddress());
+				if (existingNode == null) {
+					server.addNode(node);
+					System.out.format("Node %s added.\n", node);
+				} else {
+					existingNode.setWeight(node.getWeight());
+					existingNode.setDraining(node.isDraining());
+					System.out.format("Node %s updated.\n", existingNode);
+				}
+				break;
+			}
+			case "drain": {
+				final TcpSwitchNode node = server.getNode(new SocketAddress(argument).toInetSocketAddress());
+				if (node == null) throw new IllegalArgumentException();
+				node.setDraining(true);
+				System.out.format("Node %s draining, %s active connections.\n", node, node.getActiveCount());
+				break;
+			}
+			case "remove": {
+				final TcpSwitchNode node = server.removeNode(new SocketAddress(argument).toInetSocketAddress());
+				if (node == null) throw new IllegalArgumentException();
+				System.out.format("Node %s removed, %s active connections.\n", node, node.getActiveCount());
+				break;
+			}
+			default:
+				System.out.println("Commands are: nodes, stats, add <address:port[#weight] [drain]>, drain <address:port>, remove <address:port>, quit");
+				break;
+		}
+	}
+
+
+	/**
+	 * Instances of this inner class handle TCP client connections accepted by a TCP switch in
+	 * blocking mode. Data is relayed either through heap buffers using socket streams, or through
+	 * pooled direct buffers using socket channels.
 	 */
 	static private class ConnectionHandler implements Runnable {
+		static private final int STREAM_BUFFER_SIZE = 1024;
+		static private final int SCATTER_COUNT = 4;
+
 		private final Socket clientConnection;
 		private final ExecutorService executorService;
-		private final InetSocketAddress[] nodeAddresses;
-		private final boolean sessionAware;
+		private final TcpSwitch parent;
+		private final ByteBufferPool bufferPool;
 
 
 		/**
 		 * Creates a new instance from a given client connection.
 		 * @param clientConnection the connection
 		 * @param threadPool the thread pool for transporter execution
-		 * @param nodeAddresses the node addresses
-		 * @param sessionAware the session awareness
-		 * @throws NullPointerException if any of the given arguments is {@code null}
+		 * @param parent the TCP switch that accepted the connection
+		 * @param bufferPool the buffer pool for channel based relaying, or {@code null} for stream
+		 *        based relaying
+		 * @throws NullPointerException if any of the given arguments except the buffer pool is
+		 *         {@code null}
 		 */
-		public ConnectionHandler (final Socket clientConnection, final ExecutorService threadPool, final InetSocketAddress[] nodeAddresses, final boolean sessionAware) {
-
-			if (clientConnection == null | threadPool == null | nodeAddresses == null) throw new NullPointerException();
+		public ConnectionHandler (final Socket clientConnection, final ExecutorService threadPool, final TcpSwitch parent, final ByteBufferPool bufferPool) {
+			if (clientConnection == null | threadPool == null | parent == null) throw new NullPointerException();
 
 			this.clientConnection = clientConnection;
 			this.executorService = threadPool;
-			this.nodeAddresses = nodeAddresses;
-			this.sessionAware = sessionAware;
+			this.parent = parent;
+			this.bufferPool = bufferPool;
 		}
 
 
 		/**
 		 * Handles the client connection by transporting all data to a new server connection, and
-		 * vice versa. Closes all connections upon completion.
+		 * vice versa. The upstream transport is performed by a pooled thread, while the downstream
+		 * transport is performed by the current thread. Closes all connections upon completion,
+		 * and releases the client connection from the connection limiter.
 		 */
 		public void run () {
-			try(Socket localClientConn = clientConnection){
-				String clientIP = localClientConn.getInetAddress().getHostAddress();
-				int serverIndex;
-
-				/**
-				 * not using ThreadLocalRandom because setting a seed is not supported
-				 * //Random random = ThreadLocalRandom.current();
-				 */
-
-				if(this.sessionAware)
-				{
-					Random random = new Random(clientIP.hashCode());
-					serverIndex = random.nextInt(this.nodeAddresses.length);
+			final InetAddress clientAddress = this.clientConnection.getInetAddress();
+			try (Socket clientConnection = this.clientConnection) {
+				final Set<TcpSwitchNode> failedNodes = new HashSet<>();
+				TcpSwitchNode candidateNode;
+				SocketChannel serverChannel;
+				for (int attempt = 0; true; ++attempt) {
+					candidateNode = this.parent.selectNode(clientAddress, failedNodes);
+					try {
+						serverChannel = connect(candidateNode, clientConnection.getChannel());
+						break;
+					} catch (final IOException exception) {
+						candidateNode.connectionClosed();
+						if (attempt >= this.parent.getConnectRetries()) throw exception;
+						failedNodes.add(candidateNode);
+						Logger.getGlobal().log(Level.WARNING, String.format("cannot connect to %s, retrying: %s", candidateNode, exception.getMessage()));
+					}
+				}
+
+				final TcpSwitchNode node = candidateNode;
+				try (Socket serverConnection = serverChannel.socket()) {
+					final Future<?> future = this.executorService.submit(() -> this.transport(clientConnection, serverConnection, node, false));
+					this.transport(serverConnection, clientConnection, node, true);
+
+					try {
+						future.get();
+					} catch (final ExecutionException exception) {
+						final Throwable cause = exception.getCause();
+						if (cause instanceof Error) throw (Error) cause;
+						throw (Exception) cause;
+					}
+				} catch (final Exception exception) {
+					node.recordError();
+					throw exception;
+				} finally {
+					node.connectionClosed();
+				}
+			} catch (final Exception exception) {
+				Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+			} finally {
+				this.parent.getConnectionLimiter().close(clientAddress);
+			}
+		}
+
+
+		/**
+		 * Transports all data from the given source connection into the given sink connection, and
+		 * shuts down the latter's output afterwards, which propagates the end of the data. The bytes
+		 * transported are recorded with the given node; when relaying through channels, they are
+		 * recorded as they arrive, together with the latency of the first byte received from the
+		 * node.
+		 * @param sourceConnection the source connection
+		 * @param sinkConnection the sink connection
+		 * @param node the node
+		 * @param downstream {@code true} if the source is connected to the node, {@code false} if
+		 *        the sink is
+		 * @return the number of bytes transported
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private long transport (final Socket sourceConnection, final Socket sinkConnection, final TcpSwitchNode node, final boolean downstream) throws IOException {
+			final long bytesCopied;
+			if (this.bufferPool == null) {
+				bytesCopied = Streams.copy(sourceConnection.getInputStream(), sinkConnection.getOutputStream(), STREAM_BUFFER_SIZE);
+				if (downstream) {
+					node.recordBytesReceived(bytesCopied);
+				} else {
+					node.recordBytesSent(bytesCopied);
+				}
+			} else {
+				final ByteBuffer[] buffers = new ByteBuffer[SCATTER_COUNT];
+				for (int index = 0; index < buffers.length; ++index) {
+					buffers[index] = this.bufferPool.acquire();
+				}
+
+				try {
+					final ScatteringByteChannel source = new MeteredChannel(sourceConnection.getChannel(), node, downstream);
+					bytesCopied = ByteChannels.copy(source, sinkConnection.getChannel(), null, buffers);
+				} finally {
+					for (final ByteBuffer buffer : buffers) {
+						this.bufferPool.release(buffer);
+					}
+				}
+			}
+
+			try {
+				sinkConnection.shutdownOutput();
+			} catch (final IOException exception) {
+				// already closed by the other side
+			}
+			return bytesCopied;
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class relay client connections in HTTP mode. Request heads are read
+	 * one at a time, and each request is relayed to a node selected individually, using a pooled
+	 * node connection if available. Message bodies are streamed as they arrive, delimited either
+	 * by their content length, by chunked transfer coding, or by the node closing it's connection;
+	 * pipelined requests remain buffered until the preceding response is complete. Node
+	 * connections are returned into their node's pool if they remain persistent, while client
+	 * connections are kept open as long as both the client and the node agree. Requests relayed
+	 * over a pooled connection that turns out to be closed by the node are retried if they are
+	 * safe as defined by RFC 7231, and carry no body, as the latter has already been consumed;
+	 * other requests may already have been processed by the node, and are therefore not repeated,
+	 * see RFC 7230 section 6.3.1. Connections switching protocols are relayed unchanged in both
+	 * directions until closed.
+	 */
+	static private class HttpConnectionHandler implements Runnable {
+		static private final int STREAM_BUFFER_SIZE = 0x2000;
+		static private final long CHUNKED = -1;
+		static private final long UNTIL_CLOSE = -2;
+		static private final Set<String> RETRYABLE_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE"));
+		static private final byte[] CONTINUE_RESPONSE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+		static private final byte[] BAD_REQUEST_RESPONSE = "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+		static private final byte[] BAD_GATEWAY_RESPONSE = "HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+		private final Socket clientConnection;
+		private final TcpSwitch parent;
+
+
+		/**
+		 * Creates a new instance from a given client connection.
+		 * @param clientConnection the connection
+		 * @param parent the TCP switch that accepted the connection
+		 * @throws NullPointerException if any of the given arguments is {@code null}
+		 */
+		public HttpConnectionHandler (final Socket clientConnection, final TcpSwitch parent) {
+			if (clientConnection == null | parent == null) throw new NullPointerException();
+
+			this.clientConnection = clientConnection;
+			this.parent = parent;
+		}
+
+
+		/**
+		 * Relays requests from the client connection, and their responses, until either side
+		 * closes it's connection, or a request is malformed. Closes the client connection upon
+		 * completion, and releases it from the connection limiter.
+		 */
+		public void run () {
+			final InetAddress clientAddress = this.clientConnection.getInetAddress();
+			try (Socket clientConnection = this.clientConnection) {
+				final InputStream clientSource = new BufferedInputStream(clientConnection.getInputStream(), STREAM_BUFFER_SIZE);
+				final OutputStream clientSink = new BufferedOutputStream(clientConnection.getOutputStream(), STREAM_BUFFER_SIZE);
+
+				while (true) {
+					final HttpMessageHead request;
+					final long requestLength;
+					try {
+						request = HttpMessageHead.read(clientSource);
+						if (request == null) break;
+						requestLength = requestLength(request);
+					} catch (final ProtocolException exception) {
+						clientSink.write(BAD_REQUEST_RESPONSE);
+						clientSink.flush();
+						break;
+					}
+
+					if (!this.exchange(clientAddress, request, requestLength, clientSource, clientSink)) break;
+				}
+			} catch (final Exception exception) {
+				Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+			} finally {
+				this.parent.getConnectionLimiter().close(clientAddress);
+			}
+		}
+
+
+		/**
+		 * Relays the given request to a selected node, and it's response to the client. Answers the
+		 * request with status 502 if no node can be connected.
+		 * @param clientAddress the client address
+		 * @param request the request head
+		 * @param requestLength the request body length, or {@value #CHUNKED}
+		 * @param clientSource the client source, positioned at the request body
+		 * @param clientSink the client sink
+		 * @return {@code true} if the client connection remains open for further requests,
+		 *         {@code false} otherwise
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private boolean exchange (final InetAddress clientAddress, final HttpMessageHead request, final long requestLength, final InputStream clientSource, final OutputStream clientSink) throws IOException {
+			final String[] requestTokens = request.getStartLine().split(" ");
+			final boolean clientPersistent = isPersistent(request, requestTokens[2]);
+			if (request.containsToken("Expect", "100-continue")) {
+				// answered here, as the node won't see the request before it's body has been relayed
+				request.removeHeaders("Expect");
+				clientSink.write(CONTINUE_RESPONSE);
+				clientSink.flush();
+			}
+
+			final String affinityKey = request.getCookie(AFFINITY_COOKIE_NAME);
+			final Set<TcpSwitchNode> failedNodes = new HashSet<>();
+			int attempt = 0;
+			while (true) {
+				final TcpSwitchNode node = this.parent.selectHttpNode(clientAddress, affinityKey, failedNodes);
+				final TcpSwitchNode.PooledChannel pooledChannel = node.acquire();
+				final SocketChannel serverChannel;
+				if (pooledChannel != null && pooledChannel.getPendingData().length == 0) {
+					serverChannel = pooledChannel.getChannel();
+				} else {
+					if (pooledChannel != null) try { pooledChannel.getChannel().close(); } catch (final Exception exception) {}
+					try {
+						serverChannel = node.connect(CONNECT_TIMEOUT);
+					} catch (final IOException exception) {
+						node.connectionClosed();
+						if (attempt++ >= this.parent.getConnectRetries()) {
+							clientSink.write(BAD_GATEWAY_RESPONSE);
+							clientSink.flush();
+							return false;
+						}
+						failedNodes.add(node);
+						Logger.getGlobal().log(Level.WARNING, String.format("cannot connect to %s, retrying: %s", node, exception.getMessage()));
+						continue;
+					}
+				}
+
+				boolean serverPersistent = false;
+				try {
+					final InputStream serverSource = new BufferedInputStream(serverChannel.socket().getInputStream(), STREAM_BUFFER_SIZE);
+					final OutputStream serverSink = new BufferedOutputStream(serverChannel.socket().getOutputStream(), STREAM_BUFFER_SIZE);
+
+					long timestamp = 0;
+					HttpMessageHead response;
+					try {
+						long bytesSent = request.write(serverSink);
+						bytesSent += copyBody(clientSource, serverSink, requestLength);
+						serverSink.flush();
+						node.recordBytesSent(bytesSent);
+
+						timestamp = System.nanoTime();
+						response = HttpMessageHead.read(serverSource);
+						if (response == null) throw new EOFException("connection closed by " + node);
+					} catch (final IOException exception) {
+						// pooled connections may have been closed by the node meanwhile
+						if (pooledChannel == null | requestLength != 0 || !RETRYABLE_METHODS.contains(requestTokens[0])) throw exception;
+						continue;
+					}
+					node.recordFirstByteLatency(System.nanoTime() - timestamp);
+
+					int status = status(response);
+					long bytesReceived = 0;
+					while (status >= 100 & status < 200 & status != 101) {
+						bytesReceived += response.write(clientSink);
+						clientSink.flush();
+						response = HttpMessageHead.read(serverSource);
+						if (response == null) throw new EOFException("connection closed by " + node);
+						status = status(response);
+					}
+
+					if (this.parent.getSessionAware() && !affinityKey(node).equals(affinityKey)) {
+						response.addHeader("Set-Cookie", AFFINITY_COOKIE_NAME + "=" + affinityKey(node) + "; Path=/; HttpOnly");
+					}
+					bytesReceived += response.write(clientSink);
+
+					if (status == 101 | ("CONNECT".equals(requestTokens[0]) & status >= 200 & status < 300)) {
+						clientSink.flush();
+						bytesReceived += this.tunnel(clientSource, serverSource, serverChannel.socket(), node);
+						node.recordBytesReceived(bytesReceived);
+						return false;
+					}
+
+					final long responseLength = "HEAD".equals(requestTokens[0]) | status == 204 | status == 304 ? 0 : responseLength(response);
+					bytesReceived += copyBody(serverSource, clientSink, responseLength);
+					clientSink.flush();
+					node.recordBytesReceived(bytesReceived);
+
+					final boolean responsePersistent = responseLength != UNTIL_CLOSE && isPersistent(response, response.getStartLine().substring(0, response.getStartLine().indexOf(' ')));
+					serverPersistent = responsePersistent & clientPersistent & serverSource.available() == 0;
+					return responsePersistent & clientPersistent;
+				} catch (final Exception exception) {
+					node.recordError();
+					throw exception;
+				} finally {
+					if (serverPersistent) {
+						node.release(serverChannel);
+					} else {
+						try { serverChannel.close(); } catch (final Exception exception) {}
+					}
+					node.connectionClosed();
 				}
-				else
-				{
-					Random random = ThreadLocalRandom.current();
-					serverIndex = random.nextInt(this.nodeAddresses.length);
+			}
+		}
+
+
+		/**
+		 * Relays all remaining data between the client and the given node connection in both
+		 * directions, until both sides have closed their connections.
+		 * @param clientSource the client source
+		 * @param serverSource the server source
+		 * @param serverConnection the server connection
+		 * @param node the node
+		 * @return the number of bytes received from the node
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private long tunnel (final InputStream clientSource, final InputStream serverSource, final Socket serverConnection, final TcpSwitchNode node) throws IOException {
+			final Future<Long> future = this.parent.threadPool.submit(() -> {
+				final long byteCount = Streams.copy(clientSource, serverConnection.getOutputStream(), STREAM_BUFFER_SIZE);
+				node.recordBytesSent(byteCount);
+				try { serverConnection.shutdownOutput(); } catch (final IOException exception) {}
+				return byteCount;
+			});
+
+			final long byteCount = Streams.copy(serverSource, this.clientConnection.getOutputStream(), STREAM_BUFFER_SIZE);
+			try { this.clientConnection.shutdownOutput(); } catch (final IOException exception) {}
+
+			try {
+				future.get();
+			} catch (final InterruptedException exception) {
+				throw new InterruptedIOException();
+			} catch (final ExecutionException exception) {
+				final Throwable cause = exception.getCause();
+				if (cause instanceof IOException) throw (IOException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw (RuntimeException) cause;
+			}
+			return byteCount;
+		}
+
+
+		/**
+		 * Returns the body length of the given request, as defined by RFC 7230. Content length
+		 * headers are removed if the request is chunked, in order to prevent nodes from
+		 * interpreting it differently.
+		 * @param request the request head
+		 * @return the request body length, or {@value #CHUNKED}
+		 * @throws ProtocolException if the request line or the framing headers are malformed
+		 */
+		static private long requestLength (final HttpMessageHead request) throws ProtocolException {
+			final String[] requestTokens = request.getStartLine().split(" ");
+			if (requestTokens.length != 3 || !requestTokens[2].startsWith("HTTP/1.")) throw new ProtocolException("malformed request line: " + request.getStartLine());
+
+			if (!request.getHeaders("Transfer-Encoding").isEmpty()) {
+				if (!isChunked(request)) throw new ProtocolException("unsupported transfer coding");
+				request.removeHeaders("Content-Length");
+				return CHUNKED;
+			}
+
+			final long contentLength = contentLength(request);
+			return contentLength == -1 ? 0 : contentLength;
+		}
+
+
+		/**
+		 * Returns the body length of the given response, as defined by RFC 7230 for responses to
+		 * requests other than HEAD, and with status codes other than 1xx, 204 and 304.
+		 * @param response the response head
+		 * @return the response body length, {@value #CHUNKED}, or {@value #UNTIL_CLOSE}
+		 * @throws ProtocolException if the framing headers are malformed
+		 */
+		static private long responseLength (final HttpMessageHead response) throws ProtocolException {
+			if (!response.getHeaders("Transfer-Encoding").isEmpty()) return isChunked(response) ? CHUNKED : UNTIL_CLOSE;
+
+			final long contentLength = contentLength(response);
+			return contentLength == -1 ? UNTIL_CLOSE : contentLength;
+		}
+
+
+		/**
+		 * Returns whether or not chunked is the final transfer coding of the given message.
+		 * @param message the message head
+		 * @return {@code true} if chunked, {@code false} otherwise
+		 */
+		static private boolean isChunked (final HttpMessageHead message) {
+			final List<String> values = message.getHeaders("Transfer-Encoding");
+			final String[] codings = values.get(values.size() - 1).split(",");
+			return codings[codings.length - 1].trim().equalsIgnoreCase("chunked");
+		}
+
+
+		/**
+		 * Returns the content length of the given message.
+		 * @param message the message head
+		 * @return the content length, or {@code -1} for none
+		 * @throws ProtocolException if the content length headers are malformed or contradictory
+		 */
+		static private long contentLength (final HttpMessageHead message) throws ProtocolException {
+			long contentLength = -1;
+			for (final String value : message.getHeaders("Content-Length")) {
+				for (final String element : value.split(",")) {
+					final long length;
+					try {
+						length = Long.parseLong(element.trim());
+					} catch (final NumberFormatException exception) {
+						throw new ProtocolException("malformed content length: " + value);
+					}
+					if (length < 0 | (contentLength != -1 & contentLength != length)) throw new ProtocolException("malformed content length: " + value);
+					contentLength = length;
 				}
-				InetSocketAddress target = this.nodeAddresses[serverIndex];
+			}
+			return contentLength;
+		}
+
+
+		/**
+		 * Returns the status code of the given response.
+		 * @param response the response head
+		 * @return the status code
+		 * @throws ProtocolException if the status line is malformed
+		 */
+		static private int status (final HttpMessageHead response) throws ProtocolException {
+			final String[] statusTokens = response.getStartLine().split(" ", 3);
+			if (statusTokens.length < 2 || !statusTokens[0].startsWith("HTTP/1.")) throw new ProtocolException("malformed status line: " + response.getStartLine());
+
+			try {
+				return Integer.parseInt(statusTokens[1]);
+			} catch (final NumberFormatException exception) {
+				throw new ProtocolException("malformed status line: " + response.getStartLine());
+			}
+		}
+
+
+		/**
+		 * Returns whether or not the connection transporting the given message remains open
+		 * afterwards, which is the default for HTTP/1.1, but requires a keep-alive token for
+		 * HTTP/1.0.
+		 * @param message the message head
+		 * @param version the message's protocol version
+		 * @return {@code true} if persistent, {@code false} otherwise
+		 */
+		static private boolean isPersistent (final HttpMessageHead message, final String version) {
+			if (message.containsToken("Connection", "close")) return false;
+			return "HTTP/1.0".equals(version) ? message.containsToken("Connection", "keep-alive") : true;
+		}
 
-				try(Socket targetConnection = new Socket(target.getHostName(),target.getPort())){
-					forwardConnectionToSelectedTarget(localClientConn, targetConnection);
+
+		/**
+		 * Copies a message body from the given source into the given sink.
+		 * @param source the byte source
+		 * @param sink the byte sink
+		 * @param length the body length, {@value #CHUNKED}, or {@value #UNTIL_CLOSE}
+		 * @return the number of bytes copied
+		 * @throws ProtocolException if a chunk is malformed
+		 * @throws IOException if there is an I/O related problem, or if the source ends
+		 *         prematurely
+		 */
+		static private long copyBody (final InputStream source, final OutputStream sink, final long length) throws IOException {
+			if (length == UNTIL_CLOSE) return Streams.copy(source, sink, STREAM_BUFFER_SIZE);
+			if (length != CHUNKED) return copy(source, sink, length);
+
+			long byteCount = 0;
+			while (true) {
+				final String sizeLine = HttpMessageHead.readLine(source, false);
+				byteCount += HttpMessageHead.writeLine(sink, sizeLine);
+
+				final int extensionOffset = sizeLine.indexOf(';');
+				final long chunkSize;
+				try {
+					chunkSize = Long.parseLong((extensionOffset == -1 ? sizeLine : sizeLine.substring(0, extensionOffset)).trim(), 16);
+				} catch (final NumberFormatException exception) {
+					throw new ProtocolException("malformed chunk size: " + sizeLine);
 				}
+				if (chunkSize < 0) throw new ProtocolException("malformed chunk size: " + sizeLine);
+				if (chunkSize == 0) break;
+
+				byteCount += copy(source, sink, chunkSize);
+				if (!HttpMessageHead.readLine(source, false).isEmpty()) throw new ProtocolException("malformed chunk");
+				byteCount += HttpMessageHead.writeLine(sink, "");
+			}
+
+			// trailer section, terminated by an empty line
+			for (String line = HttpMessageHead.readLine(source, false); true; line = HttpMessageHead.readLine(source, false)) {
+				byteCount += HttpMessageHead.writeLine(sink, line);
+				if (line.isEmpty()) break;
 			}
-			catch (Exception e)
-			{
-				// blackjack and hookers
-				System.out.println(e.toString());
+			return byteCount;
+		}
+
+
+		/**
+		 * Copies the given number of bytes from the given source into the given sink.
+		 * @param source the byte source
+		 * @param sink the byte sink
+		 * @param length the number of bytes
+		 * @return the number of bytes copied
+		 * @throws IOException if there is an I/O related problem, or if the source ends
+		 *         prematurely
+		 */
+		static private long copy (final InputStream source, final OutputStream sink, final long length) throws IOException {
+			final byte[] buffer = new byte[(int) Math.min(length, STREAM_BUFFER_SIZE)];
+			for (long remaining = length; remaining > 0; ) {
+				final int bytesRead = source.read(buffer, 0, (int) Math.min(remaining, buffer.length));
+				if (bytesRead == -1) throw new EOFException();
+				sink.write(buffer, 0, bytesRead);
+				remaining -= bytesRead;
 			}
+			return length;
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class wrap the source channels of relays, and record the bytes read
+	 * from them with a node as they arrive. Additionally, the latency between their creation and
+	 * the first byte read is recorded if the source is connected to the node.
+	 */
+	static private class MeteredChannel implements ScatteringByteChannel {
+		private final ScatteringByteChannel delegate;
+		private final TcpSwitchNode node;
+		private final boolean downstream;
+		private final long timestamp;
+		private boolean firstByteReceived;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param delegate the source channel
+		 * @param node the node
+		 * @param downstream {@code true} if the source channel is connected to the node,
+		 *        {@code false} otherwise
+		 */
+		public MeteredChannel (final ScatteringByteChannel delegate, final TcpSwitchNode node, final boolean downstream) {
+			this.delegate = delegate;
+			this.node = node;
+			this.downstream = downstream;
+			this.timestamp = System.nanoTime();
+		}
+
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean isOpen () {
+			return this.delegate.isOpen();
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void close () throws IOException {
+			this.delegate.close();
 		}
 
-		private void forwardConnectionToSelectedTarget(Socket clientConnection, Socket targetConnection) throws IOException {
-			int BUFFER_SIZE = 1024;
-
-			//long connectionOpenTime = System.currentTimeMillis();
-			try (Socket _targetConnection = targetConnection) {
-				try (Socket _clientConnection = clientConnection) {
-					Callable<?> transporter1 = () -> Streams.copy(_clientConnection.getInputStream(), _targetConnection.getOutputStream(), BUFFER_SIZE);
-					Callable<?> transporter2 = () -> Streams.copy(_targetConnection.getInputStream(), _clientConnection.getOutputStream(), BUFFER_SIZE);
-					Future<?> future1 = executorService.submit(transporter1);
-					Future<?> future2 = executorService.submit(transporter2);
-
-					/*try {
-						future1.get();
-						future2.get();
-					} catch (ExecutionException e) {
-						future1.cancel(true);
-						future2.cancel(true);
-						Throwable t = e.getCause();
-						if (t instanceof Error) throw (Error) t;
-						if (t instanceof RuntimeException) throw (RuntimeException) t;
-						if (t instanceof IOException) throw (IOException) t;
-						throw new AssertionError();
-					}*/
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int read (final ByteBuffer buffer) throws IOException {
+			return (int) this.record(this.delegate.read(buffer));
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public long read (final ByteBuffer[] buffers) throws IOException {
+			return this.record(this.delegate.read(buffers));
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public long read (final ByteBuffer[] buffers, final int offset, final int length) throws IOException {
+			return this.record(this.delegate.read(buffers, offset, length));
+		}
+
+
+		/**
+		 * Records the given number of bytes read, plus the first byte latency if applicable.
+		 * @param bytesRead the number of bytes read
+		 * @return the number of bytes read
+		 */
+		private long record (final long bytesRead) {
+			if (bytesRead <= 0) return bytesRead;
+
+			if (!this.downstream) {
+				this.node.recordBytesSent(bytesRead);
+			} else {
+				this.node.recordBytesReceived(bytesRead);
+				if (!this.firstByteReceived) {
+					this.firstByteReceived = true;
+					this.node.recordFirstByteLatency(System.nanoTime() - this.timestamp);
 				}
 			}
+			return bytesRead;
 		}
 	}
-}
\ No newline at end of file
+}
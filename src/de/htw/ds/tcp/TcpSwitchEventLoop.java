@@ -0,0 +1,557 @@
+package de.htw.ds.tcp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model the event loops of a TCP switch operating in non-blocking mode.
+ * Each event loop runs a single thread that multiplexes any number of connections using a
+ * selector: The event loop owning the service channel accepts client connections and distributes
+ * them among all event loops of it's switch, which then connect each client to a node selected by
+ * the switch, and relay data in both directions until both sides have closed their connections.
+ * Relaying uses direct buffers acquired from a pool whenever data arrives, which are released as
+ * soon as the data has been written, so idle connections hold no buffers at all. Note that other
+ * threads may only interact with an event loop using {@linkplain #register(SocketChannel)},
+ * {@linkplain #registerService(ServerSocketChannel)} and {@linkplain #close()}.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+final class TcpSwitchEventLoop implements Runnable, AutoCloseable {
+	static private final int MAX_ACCEPTS_PER_SELECT = 64;
+	static private final int MAX_READS_PER_SELECT = 16;
+
+	private final TcpSwitch parent;
+	private final Selector selector;
+	private final ByteBufferPool bufferPool;
+	private final Queue<Runnable> tasks;
+	private volatile boolean closed;
+	private volatile long idleTime;
+	private SelectionKey pausedKey;
+	private long resumeTime;
+	private boolean acceptPaused;
+
+
+	/**
+	 * Creates a new instance, and starts it's thread.
+	 * @param parent the TCP switch owning this event loop
+	 * @param index the event loop index, used to name the event loop thread
+	 * @param bufferPool the buffer pool used for relaying
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public TcpSwitchEventLoop (final TcpSwitch parent, final int index, final ByteBufferPool bufferPool) throws IOException {
+		if (parent == null | bufferPool == null) throw new NullPointerException();
+
+		this.parent = parent;
+		this.selector = Selector.open();
+		this.bufferPool = bufferPool;
+		this.tasks = new ConcurrentLinkedQueue<>();
+
+		final Thread thread = new Thread(this, "tcp-event-loop-" + index);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+	/**
+	 * Closes this event loop, and all connections it handles.
+	 */
+	public void close () {
+		this.closed = true;
+		this.selector.wakeup();
+	}
+
+
+	/**
+	 * Returns the accumulated time this event loop's thread has spent waiting for events.
+	 * @return the idle time in nanoseconds
+	 */
+	public long getIdleTime () {
+		return this.idleTime;
+	}
+
+
+	/**
+	 * Registers the given service channel with this event loop, which accepts client connections
+	 * from it from then on.
+	 * @param serviceChannel the non-blocking service channel
+	 */
+	public void registerService (final ServerSocketChannel serviceChannel) {
+		this.execute(() -> {
+			try {
+				serviceChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+			} catch (final IOException exception) {
+				Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+			}
+		});
+	}
+
+
+	/**
+	 * Registers the given client channel with this event loop, which connects it to a node and
+	 * relays it's data from then on.
+	 * @param clientChannel the client channel
+	 */
+	public void register (final SocketChannel clientChannel) {
+		this.execute(() -> this.open(clientChannel));
+	}
+
+
+	/**
+	 * Repeatedly waits for channels to become ready, and handles them subsequently, until this
+	 * event loop is closed. Closes all channels registered upon completion.
+	 */
+	public void run () {
+		try {
+			while (!this.closed) {
+				final long timestamp = System.nanoTime();
+				if (this.pausedKey == null) {
+					this.selector.select();
+				} else {
+					this.selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(this.resumeTime - timestamp)));
+				}
+				this.idleTime += System.nanoTime() - timestamp;
+				this.resumeAccept();
+				for (Runnable task = this.tasks.poll(); task != null; task = this.tasks.poll()) {
+					task.run();
+				}
+
+				final Set<SelectionKey> keys = this.selector.selectedKeys();
+				for (final SelectionKey key : keys) {
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable()) {
+						this.accept(key);
+					} else {
+						((Relay) key.attachment()).handle(key);
+					}
+				}
+				keys.clear();
+			}
+		} catch (final ClosedSelectorException exception) {
+			// treat as close
+		} catch (final Exception exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		} finally {
+			try {
+				for (final SelectionKey key : this.selector.keys()) {
+					if (key.attachment() instanceof Relay) {
+						((Relay) key.attachment()).close();
+					} else {
+						try { key.channel().close(); } catch (final Exception exception) {}
+					}
+				}
+				this.selector.close();
+			} catch (final Exception exception) {}
+		}
+	}
+
+
+	/**
+	 * Queues the given task for execution by this event loop's thread.
+	 * @param task the task
+	 */
+	private void execute (final Runnable task) {
+		this.tasks.add(task);
+		this.selector.wakeup();
+	}
+
+
+	/**
+	 * Accepts pending client connections from the given service key's channel, and distributes them
+	 * among the event loops of this event loop's switch, or hands them over to the switch's threads
+	 * in HTTP mode, see {@linkplain TcpSwitch#relayHttp(SocketChannel)}. The number of connections
+	 * accepted at once is limited, in order not to starve the connections already established. If
+	 * the switch's connection limiter requires a pause, the service key's interest in accepting is
+	 * cleared until the pause has passed, see {@linkplain #resumeAccept()}; connections exceeding
+	 * their client's limit are closed immediately.
+	 * @param serviceKey the service key
+	 */
+	private void accept (final SelectionKey serviceKey) {
+		final ServerSocketChannel serviceChannel = (ServerSocketChannel) serviceKey.channel();
+		final ConnectionLimiter limiter = this.parent.getConnectionLimiter();
+		for (int count = 0; count < MAX_ACCEPTS_PER_SELECT; ++count) {
+			final long pauseTime = limiter.pauseTime();
+			if (pauseTime > 0) {
+				serviceKey.interestOps(0);
+				this.pausedKey = serviceKey;
+				this.resumeTime = System.nanoTime() + pauseTime;
+				if (!this.acceptPaused) limiter.recordPause();
+				this.acceptPaused = true;
+				break;
+			}
+			this.acceptPaused = false;
+
+			try {
+				final SocketChannel clientChannel = serviceChannel.accept();
+				if (clientChannel == null) break;
+				if (!limiter.open(clientChannel.socket().getInetAddress())) {
+					clientChannel.close();
+				} else if (this.parent.getHttpMode()) {
+					this.parent.relayHttp(clientChannel);
+				} else {
+					this.parent.nextEventLoop().register(clientChannel);
+				}
+			} catch (final IOException exception) {
+				Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+				break;
+			}
+		}
+	}
+
+
+	/**
+	 * Restores the paused service key's interest in accepting once the pause has passed.
+	 */
+	private void resumeAccept () {
+		if (this.pausedKey == null || System.nanoTime() - this.resumeTime < 0) return;
+
+		if (this.pausedKey.isValid()) this.pausedKey.interestOps(SelectionKey.OP_ACCEPT);
+		this.pausedKey = null;
+	}
+
+
+	/**
+	 * Initiates a connection between the given client channel and a selected node, using a pooled
+	 * channel if available. Once the relay is created, it is responsible for releasing the node
+	 * and the client connection, even if initiating fails afterwards. Note that the client channel
+	 * is still in blocking mode.
+	 * @param clientChannel the client channel
+	 */
+	private void open (final SocketChannel clientChannel) {
+		final InetAddress clientAddress = clientChannel.socket().getInetAddress();
+		SocketChannel serverChannel = null;
+		TcpSwitchNode node = null;
+		Relay relay = null;
+		try {
+			node = this.parent.selectNode(clientAddress, Collections.emptySet());
+			final TcpSwitchNode.PooledChannel pooledChannel = node.acquire();
+			if (pooledChannel == null) {
+				serverChannel = SocketChannel.open();
+				serverChannel.configureBlocking(false);
+				serverChannel.connect(node.getAddress());
+			} else {
+				serverChannel = pooledChannel.getChannel();
+				serverChannel.configureBlocking(false);
+				// greetings are tiny, and the client's send buffer is still empty
+				for (final ByteBuffer buffer = ByteBuffer.wrap(pooledChannel.getPendingData()); buffer.hasRemaining(); clientChannel.write(buffer));
+			}
+			clientChannel.configureBlocking(false);
+
+			relay = new Relay(node, clientAddress, clientChannel, serverChannel);
+			relay.updateInterest();
+		} catch (final Exception exception) {
+			if (relay != null) {
+				relay.close();
+			} else {
+				if (node != null) node.connectionClosed();
+				this.parent.getConnectionLimiter().close(clientAddress);
+				try { clientChannel.close(); } catch (final Exception nestedException) {}
+				try { if (serverChannel != null) serverChannel.close(); } catch (final Exception nestedException) {}
+			}
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class relay data between a client and a server channel. Each
+	 * channel's interest set is derived from the state of both transfer directions, which allows
+	 * either channel to be half closed independently of the other. Additionally, the connect and
+	 * first byte latencies of the node are recorded. If the server channel fails to connect, it is
+	 * replaced by one connecting to another node, until the connect retries are exhausted.
+	 */
+	private final class Relay {
+		private final InetAddress clientAddress;
+		private final SocketChannel clientChannel;
+		private final SelectionKey clientKey;
+		private final Set<TcpSwitchNode> failedNodes;
+		private TcpSwitchNode node;
+		private SocketChannel serverChannel;
+		private SelectionKey serverKey;
+		private Transfer upstream;
+		private Transfer downstream;
+		private int retryCount;
+		private long timestamp;
+		private boolean firstByteReceived;
+		private boolean closed;
+
+
+		/**
+		 * Creates a new instance, and registers both channels with the selector. Note that the
+		 * server channel is expected to be either connected or connecting.
+		 * @param node the node the server channel is connected to
+		 * @param clientAddress the client address
+		 * @param clientChannel the non-blocking client channel
+		 * @param serverChannel the non-blocking server channel
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public Relay (final TcpSwitchNode node, final InetAddress clientAddress, final SocketChannel clientChannel, final SocketChannel serverChannel) throws IOException {
+			this.clientAddress = clientAddress;
+			this.clientChannel = clientChannel;
+			this.clientKey = clientChannel.register(TcpSwitchEventLoop.this.selector, 0, this);
+			this.failedNodes = new HashSet<>();
+			this.node = node;
+			this.attach(serverChannel);
+		}
+
+
+		/**
+		 * Registers the given server channel with the selector, and sets up the transfers for it.
+		 * @param serverChannel the non-blocking server channel, either connected or connecting
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private void attach (final SocketChannel serverChannel) throws IOException {
+			this.serverChannel = serverChannel;
+			this.serverKey = serverChannel.register(TcpSwitchEventLoop.this.selector, serverChannel.isConnectionPending() ? SelectionKey.OP_CONNECT : 0, this);
+			this.upstream = new Transfer(this.clientChannel, serverChannel);
+			this.downstream = new Transfer(serverChannel, this.clientChannel);
+			this.timestamp = System.nanoTime();
+		}
+
+
+		/**
+		 * Replaces the server channel after it failed to connect with a new one connecting to
+		 * another node, unless the connect retries are exhausted. Note that no client data has
+		 * been relayed at this point, as the client channel is not read from before the server
+		 * channel is connected.
+		 * @return {@code true} if a new server channel is connecting, {@code false} if the
+		 *         connect retries are exhausted
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private boolean reconnect () throws IOException {
+			if (this.retryCount >= TcpSwitchEventLoop.this.parent.getConnectRetries()) return false;
+
+			this.retryCount += 1;
+			this.failedNodes.add(this.node);
+			final TcpSwitchNode node = TcpSwitchEventLoop.this.parent.selectNode(this.clientAddress, this.failedNodes);
+			this.node.connectionClosed();
+			this.node = node;
+
+			this.serverKey.cancel();
+			this.serverChannel.close();
+			final SocketChannel serverChannel = SocketChannel.open();
+			try {
+				serverChannel.configureBlocking(false);
+				serverChannel.connect(node.getAddress());
+				this.attach(serverChannel);
+			} catch (final IOException exception) {
+				try { serverChannel.close(); } catch (final Exception nestedException) {}
+				throw exception;
+			}
+			return true;
+		}
+
+
+		/**
+		 * Handles the given ready key of either channel, and closes both channels once both
+		 * transfer directions are complete, once the connect retries are exhausted, or if there is
+		 * any other problem. Note that connect failures are reported to the node instead of being
+		 * counted as errors, as in blocking mode.
+		 * @param key the selection key
+		 */
+		public void handle (final SelectionKey key) {
+			try {
+				if (key.isConnectable()) {
+					try {
+						if (!this.serverChannel.finishConnect()) return;
+						final long timestamp = System.nanoTime();
+						this.node.recordConnectLatency(timestamp - this.timestamp);
+						this.node.reportSuccess();
+						this.timestamp = timestamp;
+					} catch (final IOException exception) {
+						this.node.reportFailure();
+						Logger.getGlobal().log(Level.WARNING, String.format("cannot connect to %s: %s", this.node, exception.getMessage()));
+						if (!this.reconnect()) {
+							this.close();
+							return;
+						}
+					}
+				} else {
+					final boolean client = key == this.clientKey;
+					if (key.isReadable()) {
+						final Transfer transfer = client ? this.upstream : this.downstream;
+						final long byteCount = transfer.getByteCount();
+						transfer.read();
+						if (client) {
+							this.node.recordBytesSent(transfer.getByteCount() - byteCount);
+						} else {
+							this.node.recordBytesReceived(transfer.getByteCount() - byteCount);
+						}
+					}
+					if (key.isWritable()) (client ? this.downstream : this.upstream).write();
+
+					if (!this.firstByteReceived && this.downstream.getByteCount() > 0) {
+						this.firstByteReceived = true;
+						this.node.recordFirstByteLatency(System.nanoTime() - this.timestamp);
+					}
+				}
+
+				if (this.upstream.isComplete() & this.downstream.isComplete()) {
+					this.close();
+				} else {
+					this.updateInterest();
+				}
+			} catch (final Exception exception) {
+				this.node.recordError();
+				this.close();
+			}
+		}
+
+
+		/**
+		 * Updates the interest sets of both channels once the server channel is connected: Each
+		 * channel is read from while it's transfer has no pending data, and written to while the
+		 * opposite transfer has pending data.
+		 */
+		public void updateInterest () {
+			if (!this.serverChannel.isConnected()) return;
+
+			this.clientKey.interestOps((this.upstream.isReading() ? SelectionKey.OP_READ : 0) | (this.downstream.isWriting() ? SelectionKey.OP_WRITE : 0));
+			this.serverKey.interestOps((this.downstream.isReading() ? SelectionKey.OP_READ : 0) | (this.upstream.isWriting() ? SelectionKey.OP_WRITE : 0));
+		}
+
+
+		/**
+		 * Closes both channels, releases any buffers still held, and records the connection as
+		 * closed with the node and the connection limiter unless this has happened before.
+		 */
+		public void close () {
+			if (this.closed) return;
+			this.closed = true;
+			this.node.connectionClosed();
+			TcpSwitchEventLoop.this.parent.getConnectionLimiter().close(this.clientAddress);
+
+			try { this.clientChannel.close(); } catch (final Exception exception) {}
+			try { this.serverChannel.close(); } catch (final Exception exception) {}
+			this.upstream.release();
+			this.downstream.release();
+		}
+	}
+
+
+
+	/**
+	 * Instances of this inner class transfer data from a source channel into a sink channel. A
+	 * buffer is held only while data read from the source remains to be written into the sink.
+	 */
+	private final class Transfer {
+		private final SocketChannel source;
+		private final SocketChannel sink;
+		private ByteBuffer buffer;
+		private boolean sourceClosed;
+		private long byteCount;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param source the source channel
+		 * @param sink the sink channel
+		 */
+		public Transfer (final SocketChannel source, final SocketChannel sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+
+
+		/**
+		 * Returns the number of bytes read from the source so far.
+		 * @return the byte count
+		 */
+		public long getByteCount () {
+			return this.byteCount;
+		}
+
+
+		/**
+		 * Returns whether or not this transfer awaits data from it's source.
+		 * @return {@code true} if reading, {@code false} otherwise
+		 */
+		public boolean isReading () {
+			return !this.sourceClosed & this.buffer == null;
+		}
+
+
+		/**
+		 * Returns whether or not this transfer has data pending to be written into it's sink.
+		 * @return {@code true} if writing, {@code false} otherwise
+		 */
+		public boolean isWriting () {
+			return this.buffer != null;
+		}
+
+
+		/**
+		 * Returns whether or not this transfer is complete, i.e. it's source has been closed and
+		 * all data has been written into it's sink.
+		 * @return {@code true} if complete, {@code false} otherwise
+		 */
+		public boolean isComplete () {
+			return this.sourceClosed & this.buffer == null;
+		}
+
+
+		/**
+		 * Reads available data from the source, and writes as much of it as possible into the
+		 * sink, repeatedly until either no more data is available, or the sink cannot take all of
+		 * it. Shuts down the sink's output once the source is closed.
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public void read () throws IOException {
+			for (int count = 0; count < MAX_READS_PER_SELECT && this.isReading(); ++count) {
+				this.buffer = TcpSwitchEventLoop.this.bufferPool.acquire();
+				final int bytesRead = this.source.read(this.buffer);
+				if (bytesRead == -1) {
+					this.sourceClosed = true;
+					this.release();
+					this.sink.shutdownOutput();
+				} else {
+					this.byteCount += bytesRead;
+					this.buffer.flip();
+					this.write();
+					if (bytesRead == 0) break;
+				}
+			}
+		}
+
+
+		/**
+		 * Writes as much pending data as possible into the sink, and releases the buffer once all
+		 * of it has been written.
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public void write () throws IOException {
+			if (!this.isWriting()) return;
+
+			this.sink.write(this.buffer);
+			if (!this.buffer.hasRemaining()) this.release();
+		}
+
+
+		/**
+		 * Releases the buffer, if any.
+		 */
+		public void release () {
+			if (this.buffer == null) return;
+
+			TcpSwitchEventLoop.this.bufferPool.release(this.buffer);
+			this.buffer = null;
+		}
+	}
+}
@@ -0,0 +1,659 @@
+package de.htw.ds.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class model the nodes of a TCP switch. Each node has a weight, and tracks
+ * it's active connections, plus exponentially weighted moving averages of it's connect latency
+ * and first byte latency, which allows node selectors to balance load according to the node's
+ * capacity and current state, see {@linkplain NodeSelector}.<br />
+ * Each node resolves it's address once, and only re-resolves it after connection failures have been
+ * reported. Nodes are ejected after {@value #FAILURE_THRESHOLD} consecutive connection failures,
+ * either reported passively by client connections or detected by the optional active health probe
+ * performed during maintenance. Ejected nodes are re-admitted on probation once their ejection
+ * period expires, which doubles with each ejection until a connection succeeds, and during which a
+ * single failure ejects them again. Additionally, each node maintains a pool of pre-connected idle
+ * channels, which spares client connections the TCP handshake with the node: Pooled channels are
+ * handed out in the order they were connected, and are regularly validated, evicted once their idle
+ * timeout expires, and replenished according to recent demand. As switches relay raw TCP
+ * connections, pooled channels are usually not returned into the pool after use; only in HTTP mode,
+ * channels of persistent connections are returned after each complete response. Finally, each node
+ * counts it's connections, relayed bytes and errors using striped adders, which are exposed as a
+ * JMX MBean by the switch's statistics, see {@linkplain TcpSwitchStatistics}. Note that this class
+ * is thread safe.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class TcpSwitchNode implements TcpSwitchNodeMBean, AutoCloseable {
+	static private final int VALIDATION_BUFFER_SIZE = 0x200;
+	static private final double AVERAGE_WEIGHT = 0.2;
+	static private final int FAILURE_THRESHOLD = 3;
+	static private final long MIN_EJECTION_PERIOD = 1000;
+	static private final long MAX_EJECTION_PERIOD = 300000;
+
+	private final String hostName;
+	private final int port;
+	private volatile int weight;
+	private volatile boolean draining;
+	private final AtomicInteger activeCount;
+	private final AtomicLong connectLatency;
+	private final AtomicLong firstByteLatency;
+	private final LongAdder connectionCount;
+	private final LongAdder bytesReceived;
+	private final LongAdder bytesSent;
+	private final LongAdder errorCount;
+	private final LatencyHistogram connectLatencies;
+	private volatile double bytesReceivedRate;
+	private volatile double bytesSentRate;
+	private long rateTimestamp;
+	private long rateBytesReceived;
+	private long rateBytesSent;
+	private volatile InetSocketAddress address;
+	private volatile boolean addressStale;
+	private volatile int failureCount;
+	private volatile int ejectionCount;
+	private volatile long ejectionTimestamp;
+	private final Deque<PooledChannel> idleChannels;
+	private final AtomicInteger idleCount;
+	private final AtomicInteger demandCount;
+
+
+	/**
+	 * Creates a new instance with weight one.
+	 * @param address the node address, resolved if necessary
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public TcpSwitchNode (final InetSocketAddress address) {
+		this(address, 1);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * @param address the node address, resolved if necessary
+	 * @param weight the node weight
+	 * @throws NullPointerException if the given address is {@code null}
+	 * @throws IllegalArgumentException if the given weight is not positive
+	 */
+	public TcpSwitchNode (final InetSocketAddress address, final int weight) {
+		if (weight <= 0) throw new IllegalArgumentException();
+
+		this.hostName = address.getHostString();
+		this.port = address.getPort();
+		this.weight = weight;
+		this.activeCount = new AtomicInteger();
+		this.connectLatency = new AtomicLong();
+		this.firstByteLatency = new AtomicLong();
+		this.connectionCount = new LongAdder();
+		this.bytesReceived = new LongAdder();
+		this.bytesSent = new LongAdder();
+		this.errorCount = new LongAdder();
+		this.connectLatencies = new LatencyHistogram();
+		this.rateTimestamp = System.nanoTime();
+		this.address = address.isUnresolved() ? new InetSocketAddress(this.hostName, this.port) : address;
+		this.idleChannels = new ConcurrentLinkedDeque<>();
+		this.idleCount = new AtomicInteger();
+		this.demandCount = new AtomicInteger();
+	}
+
+
+	/**
+	 * Closes all idle channels of this node.
+	 */
+	public void close () {
+		for (PooledChannel pooledChannel = this.idleChannels.pollFirst(); pooledChannel != null; pooledChannel = this.idleChannels.pollFirst()) {
+			this.idleCount.decrementAndGet();
+			pooledChannel.close();
+		}
+	}
+
+
+	/**
+	 * Returns the resolved node address.
+	 * @return the node address, which may still be unresolved if resolution failed
+	 */
+	public InetSocketAddress getAddress () {
+		return this.address;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getWeight () {
+		return this.weight;
+	}
+
+
+	/**
+	 * Sets the weight.
+	 * @param weight the node weight
+	 * @throws IllegalArgumentException if the given weight is not positive
+	 */
+	public void setWeight (final int weight) {
+		if (weight <= 0) throw new IllegalArgumentException();
+
+		this.weight = weight;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isDraining () {
+		return this.draining;
+	}
+
+
+	/**
+	 * Sets whether or not this node is draining, i.e. receives no new connections while it's
+	 * existing connections remain open until they close.
+	 * @param draining {@code true} for draining, {@code false} otherwise
+	 */
+	public void setDraining (final boolean draining) {
+		this.draining = draining;
+	}
+
+
+	/**
+	 * Returns whether or not this node has the given address, i.e. the same host name or address
+	 * as given, and the same port.
+	 * @param address the address
+	 * @return {@code true} if the addresses match, {@code false} otherwise
+	 * @throws NullPointerException if the given address is {@code null}
+	 */
+	public boolean matches (final InetSocketAddress address) {
+		return this.port == address.getPort() && this.hostName.equals(address.getHostString());
+	}
+
+
+	/**
+	 * Returns a key identifying this node by it's host name and port, which unlike it's identity
+	 * hash code is stable across node instances and switch restarts.
+	 * @return the node key
+	 */
+	public long getKey () {
+		return ((long) this.hostName.hashCode() << 32) | this.port;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getActiveCount () {
+		return this.activeCount.get();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getConnectionCount () {
+		return this.connectionCount.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getBytesReceived () {
+		return this.bytesReceived.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getBytesSent () {
+		return this.bytesSent.sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getBytesReceivedRate () {
+		return this.bytesReceivedRate;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getBytesSentRate () {
+		return this.bytesSentRate;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getErrorCount () {
+		return this.errorCount.sum();
+	}
+
+
+	/**
+	 * Returns the average connect latency, which is zero if there is no sample yet.
+	 * @return the average connect latency in nanoseconds
+	 */
+	public double getConnectLatency () {
+		return Double.longBitsToDouble(this.connectLatency.get());
+	}
+
+
+	/**
+	 * Returns the average first byte latency, i.e. the time between connection establishment and
+	 * the first byte received from this node, which is zero if there is no sample yet.
+	 * @return the average first byte latency in nanoseconds
+	 */
+	public double getFirstByteLatency () {
+		return Double.longBitsToDouble(this.firstByteLatency.get());
+	}
+
+
+	/**
+	 * Returns the connect latency histogram.
+	 * @return the connect latency histogram
+	 */
+	public LatencyHistogram getConnectLatencies () {
+		return this.connectLatencies;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long[] getConnectLatencyCounts () {
+		return this.connectLatencies.getBucketCounts();
+	}
+
+
+	/**
+	 * Records that a connection to this node has been opened, which should happen right after it
+	 * has been selected.
+	 */
+	public void connectionOpened () {
+		this.activeCount.incrementAndGet();
+		this.connectionCount.increment();
+	}
+
+
+	/**
+	 * Records that a connection to this node has been closed.
+	 */
+	public void connectionClosed () {
+		this.activeCount.decrementAndGet();
+	}
+
+
+	/**
+	 * Records a connect latency sample.
+	 * @param latency the connect latency in nanoseconds
+	 */
+	public void recordConnectLatency (final long latency) {
+		updateAverage(this.connectLatency, latency);
+		this.connectLatencies.record(latency);
+	}
+
+
+	/**
+	 * Records a first byte latency sample.
+	 * @param latency the first byte latency in nanoseconds
+	 */
+	public void recordFirstByteLatency (final long latency) {
+		updateAverage(this.firstByteLatency, latency);
+	}
+
+
+	/**
+	 * Records the given number of bytes received from this node.
+	 * @param byteCount the byte count
+	 */
+	public void recordBytesReceived (final long byteCount) {
+		this.bytesReceived.add(byteCount);
+	}
+
+
+	/**
+	 * Records the given number of bytes sent to this node.
+	 * @param byteCount the byte count
+	 */
+	public void recordBytesSent (final long byteCount) {
+		this.bytesSent.add(byteCount);
+	}
+
+
+	/**
+	 * Records a failure while relaying data from or to this node.
+	 */
+	public void recordError () {
+		this.errorCount.increment();
+	}
+
+
+	/**
+	 * Updates the byte rates from the bytes received and sent since the last update. Note that
+	 * this method is not thread safe, and should only be called by the maintenance thread.
+	 */
+	void updateRates () {
+		final long timestamp = System.nanoTime(), bytesReceived = this.getBytesReceived(), bytesSent = this.getBytesSent();
+		final double seconds = 1E-9 * (timestamp - this.rateTimestamp);
+		if (seconds <= 0) return;
+
+		this.bytesReceivedRate = (bytesReceived - this.rateBytesReceived) / seconds;
+		this.bytesSentRate = (bytesSent - this.rateBytesSent) / seconds;
+		this.rateTimestamp = timestamp;
+		this.rateBytesReceived = bytesReceived;
+		this.rateBytesSent = bytesSent;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIdleCount () {
+		return this.idleCount.get();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getFailureCount () {
+		return this.failureCount;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getEjectionCount () {
+		return this.ejectionCount;
+	}
+
+
+	/**
+	 * Returns whether or not this node is currently ejected, i.e. must not be selected for new
+	 * connections unless no other node is available.
+	 * @return {@code true} if ejected, {@code false} otherwise
+	 */
+	public boolean isEjected () {
+		return System.currentTimeMillis() < this.ejectionTimestamp;
+	}
+
+
+	/**
+	 * Reports a failure to connect to this node, which causes it's address to be re-resolved
+	 * during the next maintenance, and ejects this node once the failure threshold is reached,
+	 * or immediately while on probation.
+	 */
+	public synchronized void reportFailure () {
+		this.errorCount.increment();
+		this.addressStale = true;
+		if (++this.failureCount < (this.ejectionCount == 0 ? FAILURE_THRESHOLD : 1)) return;
+
+		final long ejectionPeriod = Math.min(MIN_EJECTION_PERIOD << Math.min(this.ejectionCount, 20), MAX_EJECTION_PERIOD);
+		this.ejectionTimestamp = System.currentTimeMillis() + ejectionPeriod;
+		this.ejectionCount += 1;
+		this.failureCount = 0;
+		Logger.getGlobal().log(Level.WARNING, String.format("ejecting node %s for %sms.", this, ejectionPeriod));
+	}
+
+
+	/**
+	 * Reports a successful connection to this node, which resets it's failure and ejection counts.
+	 */
+	public void reportSuccess () {
+		if ((this.failureCount | this.ejectionCount) == 0) return;
+
+		synchronized (this) {
+			if (this.ejectionCount > 0) Logger.getGlobal().log(Level.INFO, String.format("node %s has recovered.", this));
+			this.failureCount = 0;
+			this.ejectionCount = 0;
+		}
+	}
+
+
+	/**
+	 * Returns a new blocking channel connected to this node, and records the connect latency.
+	 * Reports either a success, or a failure if the connection cannot be established.
+	 * @param connectTimeout the connect timeout in milliseconds, or zero for none
+	 * @return the channel
+	 * @throws IOException if the connection cannot be established
+	 */
+	public SocketChannel connect (final int connectTimeout) throws IOException {
+		final SocketChannel channel = SocketChannel.open();
+		try {
+			final long timestamp = System.nanoTime();
+			channel.socket().connect(this.address, connectTimeout);
+			this.recordConnectLatency(System.nanoTime() - timestamp);
+			this.reportSuccess();
+			return channel;
+		} catch (final IOException exception) {
+			try { channel.close(); } catch (final Exception nestedException) {}
+			this.reportFailure();
+			throw exception;
+		}
+	}
+
+
+	/**
+	 * Removes and returns the oldest idle channel of this node, and records the demand for it
+	 * regardless of whether or not there is one.
+	 * @return the pooled channel, or {@code null} for none
+	 */
+	public PooledChannel acquire () {
+		this.demandCount.incrementAndGet();
+
+		final PooledChannel pooledChannel = this.idleChannels.pollFirst();
+		if (pooledChannel != null) this.idleCount.decrementAndGet();
+		return pooledChannel;
+	}
+
+
+	/**
+	 * Returns the given channel into this node's pool of idle channels after use, where it is
+	 * preferred over the channels already idle, in order to keep as few channels busy as possible.
+	 * This requires the protocol to support reusing connections, like HTTP does with persistent
+	 * connections. The channel is closed instead if this node is ejected or draining.
+	 * @param channel the blocking connected channel
+	 */
+	public void release (final SocketChannel channel) {
+		if (this.isEjected() | this.draining) {
+			try { channel.close(); } catch (final Exception exception) {}
+			return;
+		}
+
+		this.idleChannels.offerFirst(new PooledChannel(channel));
+		this.idleCount.incrementAndGet();
+
+		// re-check, as the node may have been ejected or drained and closed meanwhile
+		if (this.isEjected() | this.draining) this.close();
+	}
+
+
+	/**
+	 * Maintains this node: Re-resolves it's address if a failure has been reported, and closes all
+	 * idle channels while ejected or draining. Otherwise, optionally probes the node's health by
+	 * connecting to it, evicts idle channels that have expired or fail validation, and replenishes
+	 * idle channels up to the demand since the last maintenance, bounded by the given minimum and
+	 * maximum idle counts.
+	 * @param minIdleCount the minimum number of idle channels
+	 * @param maxIdleCount the maximum number of idle channels
+	 * @param idleTimeout the idle timeout in milliseconds
+	 * @param connectTimeout the connect timeout for idle channels in milliseconds, or zero for none
+	 * @param probeTimeout the connect timeout for the health probe in milliseconds, or zero to
+	 *        skip the probe
+	 */
+	public void maintain (final int minIdleCount, final int maxIdleCount, final long idleTimeout, final int connectTimeout, final int probeTimeout) {
+		if (this.addressStale) {
+			this.addressStale = false;
+			this.address = new InetSocketAddress(this.hostName, this.port);
+		}
+
+		if (this.isEjected() | this.draining) {
+			this.close();
+			return;
+		}
+
+		if (probeTimeout > 0) {
+			try {
+				this.connect(probeTimeout).close();
+			} catch (final IOException exception) {
+				return;
+			}
+		}
+
+		final long now = System.currentTimeMillis();
+		for (int count = this.idleCount.get(); count > 0; --count) {
+			final PooledChannel pooledChannel = this.idleChannels.pollFirst();
+			if (pooledChannel == null) break;
+
+			if (now - pooledChannel.getTimestamp() < idleTimeout && pooledChannel.validate()) {
+				this.idleChannels.offerLast(pooledChannel);
+			} else {
+				this.idleCount.decrementAndGet();
+				pooledChannel.close();
+			}
+		}
+
+		final int targetCount = Math.max(minIdleCount, Math.min(maxIdleCount, this.demandCount.getAndSet(0)));
+		while (!this.draining & this.idleCount.get() < targetCount) {
+			try {
+				this.idleChannels.offerLast(new PooledChannel(this.connect(connectTimeout)));
+				this.idleCount.incrementAndGet();
+			} catch (final IOException exception) {
+				Logger.getGlobal().log(Level.WARNING, String.format("cannot pre-connect to %s: %s", this.address, exception.getMessage()));
+				break;
+			}
+		}
+
+		// re-check, as the node may have been ejected or drained and closed meanwhile
+		if (this.isEjected() | this.draining) this.close();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString () {
+		return this.hostName + ":" + this.port;
+	}
+
+
+	/**
+	 * Updates the given exponentially weighted moving average with the given sample, using a
+	 * lock-free compare-and-set loop; the first sample initializes the average.
+	 * @param average the average, as double bits
+	 * @param sample the sample
+	 */
+	static private void updateAverage (final AtomicLong average, final long sample) {
+		for (long bits = average.get(); true; bits = average.get()) {
+			final double value = Double.longBitsToDouble(bits);
+			final double newValue = bits == 0 ? sample : value + AVERAGE_WEIGHT * (sample - value);
+			if (average.compareAndSet(bits, Double.doubleToLongBits(newValue))) break;
+		}
+	}
+
+
+
+	/**
+	 * Instances of this static inner class model pooled channels, i.e. blocking channels that have
+	 * been connected to a node in advance. As servers of some protocols send data right after
+	 * accepting a connection, data received during validation is retained, and must be relayed
+	 * to the client before any other data.
+	 */
+	static public final class PooledChannel {
+		private final SocketChannel channel;
+		private final long timestamp;
+		private byte[] pendingData;
+
+
+		/**
+		 * Creates a new instance.
+		 * @param channel the blocking connected channel
+		 */
+		private PooledChannel (final SocketChannel channel) {
+			this.channel = channel;
+			this.timestamp = System.currentTimeMillis();
+			this.pendingData = new byte[0];
+		}
+
+
+		/**
+		 * Returns the channel.
+		 * @return the blocking connected channel
+		 */
+		public SocketChannel getChannel () {
+			return this.channel;
+		}
+
+
+		/**
+		 * Returns the connect timestamp.
+		 * @return the timestamp in milliseconds since 1/1/1970
+		 */
+		public long getTimestamp () {
+			return this.timestamp;
+		}
+
+
+		/**
+		 * Returns the data received from the node during validation.
+		 * @return the pending data, possibly empty
+		 */
+		public byte[] getPendingData () {
+			return this.pendingData;
+		}
+
+
+		/**
+		 * Closes the channel.
+		 */
+		private void close () {
+			try { this.channel.close(); } catch (final Exception exception) {}
+		}
+
+
+		/**
+		 * Validates the channel by reading any data available without blocking. Channels are
+		 * invalid if the node has closed them, or if they have received more data than is
+		 * reasonable for a protocol greeting.
+		 * @return {@code true} if the channel is valid, {@code false} otherwise
+		 */
+		private boolean validate () {
+			final ByteBuffer buffer = ByteBuffer.allocate(VALIDATION_BUFFER_SIZE);
+			buffer.put(this.pendingData);
+			try {
+				this.channel.configureBlocking(false);
+				try {
+					if (this.channel.read(buffer) == -1 | !buffer.hasRemaining()) return false;
+				} finally {
+					this.channel.configureBlocking(true);
+				}
+			} catch (final IOException exception) {
+				return false;
+			}
+
+			if (buffer.position() > this.pendingData.length) {
+				this.pendingData = new byte[buffer.position()];
+				buffer.flip();
+				buffer.get(this.pendingData);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package de.htw.ds.tcp;
+
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * JMX management interface for TCP switch nodes, see {@linkplain TcpSwitchNode}.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public interface TcpSwitchNodeMBean {
+
+	/**
+	 * Returns the weight.
+	 * @return the node weight
+	 */
+	int getWeight ();
+
+
+	/**
+	 * Returns whether or not this node is draining, i.e. receives no new connections.
+	 * @return {@code true} if draining, {@code false} otherwise
+	 */
+	boolean isDraining ();
+
+
+	/**
+	 * Returns the number of active connections.
+	 * @return the active connection count
+	 */
+	int getActiveCount ();
+
+
+	/**
+	 * Returns the number of connections opened since startup.
+	 * @return the total connection count
+	 */
+	long getConnectionCount ();
+
+
+	/**
+	 * Returns the number of bytes received from this node since startup.
+	 * @return the received byte count
+	 */
+	long getBytesReceived ();
+
+
+	/**
+	 * Returns the number of bytes sent to this node since startup.
+	 * @return the sent byte count
+	 */
+	long getBytesSent ();
+
+
+	/**
+	 * Returns the number of bytes received from this node per second, averaged over the last
+	 * maintenance period.
+	 * @return the receive rate in bytes per second
+	 */
+	double getBytesReceivedRate ();
+
+
+	/**
+	 * Returns the number of bytes sent to this node per second, averaged over the last
+	 * maintenance period.
+	 * @return the send rate in bytes per second
+	 */
+	double getBytesSentRate ();
+
+
+	/**
+	 * Returns the number of connect failures and relay failures since startup.
+	 * @return the error count
+	 */
+	long getErrorCount ();
+
+
+	/**
+	 * Returns the number of consecutive connection failures since the last success or ejection.
+	 * @return the failure count
+	 */
+	int getFailureCount ();
+
+
+	/**
+	 * Returns the number of consecutive ejections since the last connection success.
+	 * @return the ejection count
+	 */
+	int getEjectionCount ();
+
+
+	/**
+	 * Returns whether or not this node is currently ejected.
+	 * @return {@code true} if ejected, {@code false} otherwise
+	 */
+	boolean isEjected ();
+
+
+	/**
+	 * Returns the number of idle pooled channels.
+	 * @return the idle channel count
+	 */
+	int getIdleCount ();
+
+
+	/**
+	 * Returns the average connect latency.
+	 * @return the average connect latency in nanoseconds
+	 */
+	double getConnectLatency ();
+
+
+	/**
+	 * Returns the average first byte latency.
+	 * @return the average first byte latency in nanoseconds
+	 */
+	double getFirstByteLatency ();
+
+
+	/**
+	 * Returns the connect latency histogram's bucket counts, see
+	 * {@linkplain LatencyHistogram#getBucketBounds()}.
+	 * @return the connect latency bucket counts
+	 */
+	long[] getConnectLatencyCounts ();
+}
@@ -0,0 +1,357 @@
+package de.htw.ds.tcp;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * Instances of this class aggregate the statistics of a TCP switch and it's nodes. They expose
+ * themselves as a JMX MBean named {@value #OBJECT_NAME}, and each node as a JMX MBean named
+ * {@value #NODE_OBJECT_NAME}, see {@linkplain TcpSwitchNodeMBean}. Additionally, they handle HTTP
+ * GET requests by returning all statistics in Prometheus text format. The counters themselves
+ * are kept by the nodes using striped adders, which allows relay threads to record their progress
+ * without contending for a shared memory location; rates and utilization are calculated once per
+ * maintenance period.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public final class TcpSwitchStatistics implements TcpSwitchStatisticsMBean, HttpHandler {
+	static public final String OBJECT_NAME = "de.htw.ds.tcp:type=TcpSwitch,port=%s";
+	static public final String NODE_OBJECT_NAME = "de.htw.ds.tcp:type=TcpSwitchNode,port=%s,node=%s";
+	static private final short HTTP_OK = 200;
+	static private final short HTTP_METHOD_NOT_ALLOWED = 405;
+
+	private final TcpSwitch parent;
+	private final ThreadPoolExecutor threadPool;
+	private final TcpSwitchEventLoop[] eventLoops;
+	private volatile double eventLoopUtilization;
+	private long updateTimestamp;
+	private long updateIdleTime;
+
+
+	/**
+	 * Creates a new instance.
+	 * @param parent the TCP switch
+	 * @param threadPool the relay thread pool used in blocking mode
+	 * @param eventLoops the event loops used in non-blocking mode
+	 */
+	TcpSwitchStatistics (final TcpSwitch parent, final ThreadPoolExecutor threadPool, final TcpSwitchEventLoop[] eventLoops) {
+		this.parent = parent;
+		this.threadPool = threadPool;
+		this.eventLoops = eventLoops;
+		this.updateTimestamp = System.nanoTime();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getActiveCount () {
+		long count = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			count += node.getActiveCount();
+		}
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getConnectionCount () {
+		long count = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			count += node.getConnectionCount();
+		}
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getBytesReceivedRate () {
+		double rate = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			rate += node.getBytesReceivedRate();
+		}
+		return rate;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getBytesSentRate () {
+		double rate = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			rate += node.getBytesSentRate();
+		}
+		return rate;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getErrorCount () {
+		long count = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			count += node.getErrorCount();
+		}
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getEjectedCount () {
+		int count = 0;
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			if (node.isEjected()) ++count;
+		}
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getClientConnectionCount () {
+		return this.parent.getConnectionLimiter().getConnectionCount();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getRejectedCount () {
+		return this.parent.getConnectionLimiter().getRejectedCount();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getAcceptPauseCount () {
+		return this.parent.getConnectionLimiter().getPauseCount();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getActiveThreadCount () {
+		return this.threadPool.getActiveCount();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getEventLoopUtilization () {
+		return this.eventLoopUtilization;
+	}
+
+
+	/**
+	 * Registers this instance and the switch's nodes with the platform MBean server. Failures are
+	 * logged, but otherwise ignored.
+	 */
+	void register () {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(String.format(OBJECT_NAME, this.parent.getServicePort())));
+		} catch (final JMException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			this.register(node);
+		}
+	}
+
+
+	/**
+	 * Registers the given node with the platform MBean server. Failures are logged, but otherwise
+	 * ignored.
+	 * @param node the node
+	 */
+	void register (final TcpSwitchNode node) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(node, this.nodeObjectName(node));
+		} catch (final JMException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+	}
+
+
+	/**
+	 * Unregisters the given node from the platform MBean server. Failures are logged, but
+	 * otherwise ignored.
+	 * @param node the node
+	 */
+	void unregister (final TcpSwitchNode node) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.nodeObjectName(node));
+		} catch (final JMException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+	}
+
+
+	/**
+	 * Returns the JMX object name of the given node.
+	 * @param node the node
+	 * @return the object name
+	 * @throws MalformedObjectNameException if the object name is malformed
+	 */
+	private ObjectName nodeObjectName (final TcpSwitchNode node) throws MalformedObjectNameException {
+		return new ObjectName(String.format(NODE_OBJECT_NAME, this.parent.getServicePort(), ObjectName.quote(node.toString())));
+	}
+
+
+	/**
+	 * Unregisters this instance and the switch's nodes from the platform MBean server.
+	 */
+	void unregister () {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (final ObjectName name : server.queryNames(new ObjectName(String.format("de.htw.ds.tcp:port=%s,*", this.parent.getServicePort())), null)) {
+				server.unregisterMBean(name);
+			}
+		} catch (final JMException exception) {
+			Logger.getGlobal().log(Level.WARNING, exception.getMessage(), exception);
+		}
+	}
+
+
+	/**
+	 * Updates the node rates and the event loop utilization. Note that this method is not thread
+	 * safe, and should only be called by the maintenance thread.
+	 */
+	void update () {
+		for (final TcpSwitchNode node : this.parent.getNodes()) {
+			node.updateRates();
+		}
+		if (this.eventLoops.length == 0) return;
+
+		long idleTime = 0;
+		for (final TcpSwitchEventLoop eventLoop : this.eventLoops) {
+			idleTime += eventLoop.getIdleTime();
+		}
+		final long timestamp = System.nanoTime();
+		final double availableTime = (double) (timestamp - this.updateTimestamp) * this.eventLoops.length;
+		if (availableTime > 0) this.eventLoopUtilization = Math.max(0, Math.min(1, 1 - (idleTime - this.updateIdleTime) / availableTime));
+		this.updateTimestamp = timestamp;
+		this.updateIdleTime = idleTime;
+	}
+
+
+	/**
+	 * Handles the given HTTP exchange by returning all statistics in Prometheus text format.
+	 * @param exchange the HTTP exchange
+	 * @throws NullPointerException if the given exchange is {@code null}
+	 * @throws IOException if there is an I/O related problem
+	 */
+	public void handle (final HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(HTTP_METHOD_NOT_ALLOWED, -1);
+				return;
+			}
+
+			final byte[] body = this.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(HTTP_OK, body.length);
+			exchange.getResponseBody().write(body);
+		} finally {
+			exchange.close();
+		}
+	}
+
+
+	/**
+	 * Returns all statistics in Prometheus text format.
+	 * @return the text representation
+	 */
+	@Override
+	public String toString () {
+		final TcpSwitchNode[] nodes = this.parent.getNodes();
+		final StringBuilder builder = new StringBuilder();
+
+		builder.append("# TYPE tcp_switch_active_connections gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_active_connections", node, null, node.getActiveCount());
+		builder.append("# TYPE tcp_switch_connections_total counter\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_connections_total", node, null, node.getConnectionCount());
+		builder.append("# TYPE tcp_switch_received_bytes_total counter\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_received_bytes_total", node, null, node.getBytesReceived());
+		builder.append("# TYPE tcp_switch_sent_bytes_total counter\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_sent_bytes_total", node, null, node.getBytesSent());
+		builder.append("# TYPE tcp_switch_received_bytes_per_second gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_received_bytes_per_second", node, null, node.getBytesReceivedRate());
+		builder.append("# TYPE tcp_switch_sent_bytes_per_second gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_sent_bytes_per_second", node, null, node.getBytesSentRate());
+		builder.append("# TYPE tcp_switch_errors_total counter\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_errors_total", node, null, node.getErrorCount());
+		builder.append("# TYPE tcp_switch_ejected gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_ejected", node, null, node.isEjected() ? 1 : 0);
+		builder.append("# TYPE tcp_switch_draining gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_draining", node, null, node.isDraining() ? 1 : 0);
+		builder.append("# TYPE tcp_switch_idle_channels gauge\n");
+		for (final TcpSwitchNode node : nodes) appendSample(builder, "tcp_switch_idle_channels", node, null, node.getIdleCount());
+
+		final long[] bucketBounds = LatencyHistogram.getBucketBounds();
+		builder.append("# TYPE tcp_switch_connect_latency_seconds histogram\n");
+		for (final TcpSwitchNode node : nodes) {
+			final long[] bucketCounts = node.getConnectLatencies().getBucketCounts();
+			long count = 0;
+			for (int index = 0; index < bucketCounts.length; ++index) {
+				count += bucketCounts[index];
+				appendSample(builder, "tcp_switch_connect_latency_seconds_bucket", node, index < bucketBounds.length ? Double.toString(1E-9 * bucketBounds[index]) : "+Inf", count);
+			}
+			appendSample(builder, "tcp_switch_connect_latency_seconds_sum", node, null, 1E-9 * node.getConnectLatencies().getSum());
+			appendSample(builder, "tcp_switch_connect_latency_seconds_count", node, null, count);
+		}
+
+		builder.append("# TYPE tcp_switch_client_connections gauge\n");
+		appendSample(builder, "tcp_switch_client_connections", null, null, this.getClientConnectionCount());
+		builder.append("# TYPE tcp_switch_rejected_connections_total counter\n");
+		appendSample(builder, "tcp_switch_rejected_connections_total", null, null, this.getRejectedCount());
+		builder.append("# TYPE tcp_switch_accept_pauses_total counter\n");
+		appendSample(builder, "tcp_switch_accept_pauses_total", null, null, this.getAcceptPauseCount());
+		builder.append("# TYPE tcp_switch_active_threads gauge\n");
+		appendSample(builder, "tcp_switch_active_threads", null, null, this.getActiveThreadCount());
+		builder.append("# TYPE tcp_switch_event_loop_utilization gauge\n");
+		appendSample(builder, "tcp_switch_event_loop_utilization", null, null, this.getEventLoopUtilization());
+		return builder.toString();
+	}
+
+
+	/**
+	 * Appends a sample line in Prometheus text format to the given builder.
+	 * @param builder the string builder
+	 * @param name the metric name
+	 * @param node the node label, or {@code null} for none
+	 * @param bound the histogram bucket bound label, or {@code null} for none
+	 * @param value the sample value
+	 */
+	static private void appendSample (final StringBuilder builder, final String name, final TcpSwitchNode node, final String bound, final Number value) {
+		builder.append(name);
+		if (node != null) {
+			builder.append("{node=\"").append(node).append('"');
+			if (bound != null) builder.append(",le=\"").append(bound).append('"');
+			builder.append('}');
+		}
+		builder.append(' ').append(value).append('\n');
+	}
+}
@@ -0,0 +1,93 @@
+package de.htw.ds.tcp;
+
+import de.sb.java.TypeMetadata;
+
+
+/**
+ * JMX management interface for TCP switch statistics, see {@linkplain TcpSwitchStatistics}.
+ * Statistics per node are exposed separately, see {@linkplain TcpSwitchNodeMBean}.
+ */
+@TypeMetadata(copyright = "2008-2015 Sascha Baumeister, all rights reserved", version = "0.3.0", authors = "Sascha Baumeister")
+public interface TcpSwitchStatisticsMBean {
+
+	/**
+	 * Returns the number of active connections of all nodes.
+	 * @return the active connection count
+	 */
+	long getActiveCount ();
+
+
+	/**
+	 * Returns the number of connections opened since startup.
+	 * @return the total connection count
+	 */
+	long getConnectionCount ();
+
+
+	/**
+	 * Returns the number of bytes received from all nodes per second, averaged over the last
+	 * maintenance period.
+	 * @return the receive rate in bytes per second
+	 */
+	double getBytesReceivedRate ();
+
+
+	/**
+	 * Returns the number of bytes sent to all nodes per second, averaged over the last
+	 * maintenance period.
+	 * @return the send rate in bytes per second
+	 */
+	double getBytesSentRate ();
+
+
+	/**
+	 * Returns the number of connect failures and relay failures of all nodes since startup.
+	 * @return the error count
+	 */
+	long getErrorCount ();
+
+
+	/**
+	 * Returns the number of nodes currently ejected.
+	 * @return the ejected node count
+	 */
+	int getEjectedCount ();
+
+
+	/**
+	 * Returns the number of open client connections, see {@linkplain ConnectionLimiter}.
+	 * @return the client connection count
+	 */
+	int getClientConnectionCount ();
+
+
+	/**
+	 * Returns the number of client connections rejected since startup because their client
+	 * exceeded its connection limit.
+	 * @return the rejected connection count
+	 */
+	long getRejectedCount ();
+
+
+	/**
+	 * Returns the number of times accepting has been paused since startup because the overall
+	 * connection limit or the accept rate has been exceeded.
+	 * @return the accept pause count
+	 */
+	long getAcceptPauseCount ();
+
+
+	/**
+	 * Returns the number of relay threads currently busy in blocking mode.
+	 * @return the active thread count
+	 */
+	int getActiveThreadCount ();
+
+
+	/**
+	 * Returns the ratio of time the event loop threads spent handling events rather than waiting
+	 * for them during the last maintenance period; zero in blocking mode.
+	 * @return the event loop utilization within range {@code [0, 1]}
+	 */
+	double getEventLoopUtilization ();
+}